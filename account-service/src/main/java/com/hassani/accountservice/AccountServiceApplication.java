@@ -1,13 +1,17 @@
 package com.hassani.accountservice;
 
-import com.hassani.accountservice.entities.Account;
-import com.hassani.accountservice.repository.AccountRepository;
+import com.hassani.accountservice.service.AccountService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+@Slf4j
 @SpringBootApplication
+@EnableScheduling
 public class AccountServiceApplication {
 
     public static void main(String[] args) {
@@ -15,10 +19,24 @@ public class AccountServiceApplication {
     }
 
     @Bean
-    CommandLineRunner init(AccountRepository accountRepository) {
+    CommandLineRunner init(AccountService accountService,
+                           @Value("${saga.directory.republish-on-startup:true}") boolean republishDirectory,
+                           @Value("${saga.directory.republish-page-size:1000}") int republishPageSize) {
+        // The database outlives restarts, so existing accounts are left as they are
         return args -> {
-            accountRepository.save(new Account(null ,"1001", 500.00));
-            accountRepository.save(new Account(null ,"7812", 0.00));
+            if (republishDirectory) {
+                int announced = 0;
+                int page;
+                do {
+                    page = accountService.announceToDirectory(republishPageSize);
+                    announced += page;
+                } while (page > 0);
+                if (announced > 0) {
+                    log.info("Announced {} existing accounts to the account directory", announced);
+                }
+            }
+            accountService.openAccount("1001", 500.00);
+            accountService.openAccount("7812", 0.00);
         };
     }
 }
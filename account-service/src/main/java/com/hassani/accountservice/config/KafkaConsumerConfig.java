@@ -0,0 +1,58 @@
+package com.hassani.accountservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.config.ContainerCustomizer;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.Set;
+
+@Slf4j
+@Configuration
+public class KafkaConsumerConfig {
+    private static final Set<String> DISPATCH_MODES = Set.of("record", "ordered", "batch");
+
+    // Each mode starts its own listeners and stops the others, so an unknown mode would consume nothing
+    public KafkaConsumerConfig(@Value("${saga.kafka.dispatch-mode:record}") String dispatchMode) {
+        if (!DISPATCH_MODES.contains(dispatchMode)) {
+            throw new IllegalStateException("Unsupported saga.kafka.dispatch-mode " + dispatchMode
+                    + " for account-service, expected one of " + DISPATCH_MODES);
+        }
+    }
+
+    // Handlers are idempotent, so offsets can be committed asynchronously and a redelivery is harmless
+    @Bean
+    public ContainerCustomizer<Object, Object, ConcurrentMessageListenerContainer<Object, Object>> commitCustomizer(
+            @Value("${saga.kafka.sync-commits:true}") boolean syncCommits) {
+        return container -> container.getContainerProperties().setSyncCommits(syncCommits);
+    }
+
+    // A PROCESSED_EVENT key violation means the record was already applied, retrying it cannot succeed
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler() {
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler((record, e) -> {
+            if (isAlreadyProcessed(e)) {
+                log.warn("Skipping already processed record {}-{}@{}", record.topic(), record.partition(), record.offset());
+            } else {
+                log.error("Giving up on record {}-{}@{}: {}",
+                        record.topic(), record.partition(), record.offset(), e.getMessage());
+            }
+        }, new FixedBackOff(0L, 9L));
+        errorHandler.addNotRetryableExceptions(DataIntegrityViolationException.class);
+        return errorHandler;
+    }
+
+    private static boolean isAlreadyProcessed(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package com.hassani.accountservice.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+
+@Configuration
+public class KafkaTopicConfig {
+    @Value("${saga.kafka.partitions:1}")
+    private int partitions;
+
+    // Topics published by account-service, keyed by account number
+    @Bean
+    public KafkaAdmin.NewTopics accountServiceTopics() {
+        return new KafkaAdmin.NewTopics(
+                topic("account-debited"),
+                topic("account-credited"),
+                topic("transfer-failed"),
+                topic("credit-failed"),
+                topic("net-transfer-settled"),
+                // Latest open/close event per account number, read from the beginning by transaction-service
+                TopicBuilder.name("account-directory").partitions(partitions).compact().build());
+    }
+
+    private NewTopic topic(String name) {
+        return TopicBuilder.name(name).partitions(partitions).build();
+    }
+}
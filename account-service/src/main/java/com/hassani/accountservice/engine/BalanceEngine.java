@@ -0,0 +1,270 @@
+package com.hassani.accountservice.engine;
+
+import com.hassani.accountservice.entities.Account;
+import com.hassani.accountservice.ledger.LedgerEntryRepository;
+import com.hassani.accountservice.repository.AccountRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps account balances in memory behind striped locks. Debits and credits are checked and applied
+ * in memory, journaled to disk and written behind to the Account table in grouped flushes. Every
+ * journal entry is appended before its transaction commits and its seq is stored on the ledger row
+ * of that transaction, so recovery only replays the entries whose ledger row committed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "saga.balance-engine.enabled", havingValue = "true")
+public class BalanceEngine {
+    // Journal seqs looked up in the ledger per query during recovery
+    private static final int RECOVERY_PAGE_SIZE = 500;
+
+    private final AccountRepository accountRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path journalDirectory;
+    private final ReentrantLock[] stripes;
+    private final Map<String, Balance> balances = new ConcurrentHashMap<>();
+    private BalanceJournal journal;
+
+    public BalanceEngine(AccountRepository accountRepository,
+                         LedgerEntryRepository ledgerEntryRepository,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${saga.balance-engine.journal-dir:./data/balance-journal}") String journalDirectory,
+                         @Value("${saga.balance-engine.stripes:64}") int stripes) {
+        this.accountRepository = accountRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.journalDirectory = Path.of(journalDirectory);
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    void recover() {
+        List<BalanceJournal.Entry> entries = BalanceJournal.readAll(journalDirectory);
+        List<Path> files = BalanceJournal.journalFiles(journalDirectory);
+        long lastSeq = Math.max(accountRepository.findMaxJournalSeq(),
+                entries.isEmpty() ? 0 : entries.get(entries.size() - 1).seq());
+
+        if (!entries.isEmpty()) {
+            Map<String, Account> accounts = new HashMap<>();
+            Set<String> accountNumbers = new HashSet<>();
+            entries.forEach(entry -> accountNumbers.add(entry.accountNumber()));
+            accountRepository.findByAccountNumberIn(accountNumbers)
+                    .forEach(account -> accounts.put(account.getAccountNumber(), account));
+
+            // Only entries newer than the last flush of each account are still missing from the table
+            List<BalanceJournal.Entry> unflushed = new ArrayList<>();
+            for (BalanceJournal.Entry entry : entries) {
+                Account account = accounts.get(entry.accountNumber());
+                if (account == null) {
+                    log.warn("Skipping journal entry {} for unknown account {}", entry.seq(), entry.accountNumber());
+                } else if (account.getJournalSeq() == null || entry.seq() > account.getJournalSeq()) {
+                    unflushed.add(entry);
+                }
+            }
+            // and of those only the ones whose transaction committed; the rest died with the service
+            Set<Long> committed = committedSeqs(unflushed);
+            List<BalanceJournal.Entry> replayed = unflushed.stream()
+                    .filter(entry -> committed.contains(entry.seq()))
+                    .toList();
+            writeBehind(replayed);
+            log.info("Recovered {} of {} journal entries, skipping {} whose transaction never committed",
+                    replayed.size(), entries.size(), unflushed.size() - replayed.size());
+        }
+        BalanceJournal.delete(files);
+        journal = new BalanceJournal(journalDirectory, lastSeq);
+    }
+
+    // Returns the journal seq of the debit, to be stored on its ledger entry
+    public long debit(String accountNumber, double amount) {
+        long seq;
+        ReentrantLock lock = lockFor(accountNumber);
+        lock.lock();
+        try {
+            Balance balance = load(accountNumber);
+            if (balance.value < amount) {
+                log.error("Insufficient balance in account {}: balance={}, required={}",
+                        accountNumber, balance.value, amount);
+                throw new RuntimeException("Insufficient balance in account: " + accountNumber);
+            }
+            seq = journal.append(accountNumber, -amount);
+            balance.value -= amount;
+        } finally {
+            lock.unlock();
+        }
+        // Funds are reserved right away and handed back if the surrounding transaction rolls back
+        complete(seq, () -> { }, () -> {
+            log.warn("Restoring debit of {} on account {} after rollback", amount, accountNumber);
+            addLocked(accountNumber, amount);
+        });
+        return seq;
+    }
+
+    // Returns the journal seq of the credit, to be stored on its ledger entry
+    public long credit(String accountNumber, double amount) {
+        long seq;
+        ReentrantLock lock = lockFor(accountNumber);
+        lock.lock();
+        try {
+            load(accountNumber);
+            seq = journal.append(accountNumber, amount);
+        } finally {
+            lock.unlock();
+        }
+        // Credits only become spendable once the surrounding transaction has committed
+        complete(seq, () -> addLocked(accountNumber, amount), () -> { });
+        return seq;
+    }
+
+    public double balanceOf(String accountNumber) {
+        ReentrantLock lock = lockFor(accountNumber);
+        lock.lock();
+        try {
+            return load(accountNumber).value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Forgets a closed account once its deletion has committed, so later lookups miss it in the table
+    public void evict(String accountNumber) {
+        Runnable evict = () -> {
+            ReentrantLock lock = lockFor(accountNumber);
+            lock.lock();
+            try {
+                balances.remove(accountNumber);
+            } finally {
+                lock.unlock();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${saga.balance-engine.flush-interval-ms:200}")
+    public void flush() {
+        BalanceJournal.Checkpoint checkpoint = journal.rotate();
+        if (checkpoint.entries().isEmpty()) {
+            return;
+        }
+        try {
+            writeBehind(checkpoint.entries());
+            BalanceJournal.delete(checkpoint.files());
+            log.debug("Flushed {} balance journal entries", checkpoint.entries().size());
+        } catch (RuntimeException e) {
+            log.error("Failed to flush balance deltas, keeping them for the next flush: {}", e.getMessage());
+            journal.restore(checkpoint.entries());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+        journal.close();
+    }
+
+    // Each account row is moved to the newest seq written into it
+    private void writeBehind(List<BalanceJournal.Entry> entries) {
+        Map<String, Double> deltas = new HashMap<>();
+        Map<String, Long> seqs = new HashMap<>();
+        for (BalanceJournal.Entry entry : entries) {
+            deltas.merge(entry.accountNumber(), entry.delta(), Double::sum);
+            seqs.merge(entry.accountNumber(), entry.seq(), Math::max);
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                deltas.forEach((accountNumber, delta) ->
+                        accountRepository.applyBalanceDelta(accountNumber, delta, seqs.get(accountNumber))));
+    }
+
+    private Set<Long> committedSeqs(List<BalanceJournal.Entry> entries) {
+        Set<Long> committed = new HashSet<>();
+        List<Long> seqs = entries.stream().map(BalanceJournal.Entry::seq).toList();
+        for (int from = 0; from < seqs.size(); from += RECOVERY_PAGE_SIZE) {
+            committed.addAll(ledgerEntryRepository.findJournalSeqsIn(
+                    seqs.subList(from, Math.min(from + RECOVERY_PAGE_SIZE, seqs.size()))));
+        }
+        return committed;
+    }
+
+    private void complete(long seq, Runnable onCommit, Runnable onRollback) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        journal.commit(seq);
+                        onCommit.run();
+                    } else {
+                        journal.abort(seq);
+                        onRollback.run();
+                    }
+                }
+            });
+        } else {
+            journal.commit(seq);
+            onCommit.run();
+        }
+    }
+
+    private void addLocked(String accountNumber, double amount) {
+        ReentrantLock lock = lockFor(accountNumber);
+        lock.lock();
+        try {
+            load(accountNumber).value += amount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Callers hold the stripe lock, so an account is read from the table at most once
+    private Balance load(String accountNumber) {
+        Balance balance = balances.get(accountNumber);
+        if (balance == null) {
+            Account account = accountRepository.findByAccountNumber(accountNumber)
+                    .orElseThrow(() -> {
+                        log.error("Account not found: {}", accountNumber);
+                        return new RuntimeException("Account not found: " + accountNumber);
+                    });
+            balance = new Balance(account.getBalance());
+            balances.put(accountNumber, balance);
+        }
+        return balance;
+    }
+
+    private ReentrantLock lockFor(String accountNumber) {
+        return stripes[Math.floorMod(accountNumber.hashCode(), stripes.length)];
+    }
+
+    private static final class Balance {
+        private double value;
+
+        private Balance(double value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.hassani.accountservice.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of balance deltas not yet written to the Account table. Every append is a
+ * single sequential write made before the surrounding transaction commits, and the delta is only
+ * handed to the write-behind flush once {@link #commit(long)} confirms that transaction; per account
+ * the flush stops at the oldest entry still open, so the Account row never holds an uncommitted
+ * delta. {@link #rotate()} starts a new file and drops the files whose entries are all flushed or
+ * rolled back. Appends are handed to the operating system but not forced to disk, so a crash of the
+ * service loses nothing that was appended, while a power loss or operating system crash can lose the
+ * last writes.
+ */
+@Slf4j
+class BalanceJournal implements AutoCloseable {
+    private static final String PREFIX = "balance-journal-";
+    private static final String SUFFIX = ".log";
+
+    record Entry(long seq, String accountNumber, double delta) {
+    }
+
+    // The committed entries to write behind, and the journal files to drop once they are written
+    record Checkpoint(List<Entry> entries, List<Path> files) {
+    }
+
+    private final Path directory;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+    private FileChannel current;
+    private Path currentPath;
+    private long lastSeq;
+    // Appended entries not written behind yet, whether their transaction is still open or committed
+    private final NavigableMap<Long, Entry> unflushed = new TreeMap<>();
+    private final Set<Long> committed = new HashSet<>();
+
+    BalanceJournal(Path directory, long lastSeq) {
+        this.directory = directory;
+        this.lastSeq = lastSeq;
+        openNext();
+    }
+
+    synchronized long append(String accountNumber, double delta) {
+        long seq = ++lastSeq;
+        byte[] account = accountNumber.getBytes(StandardCharsets.UTF_8);
+        buffer.clear();
+        buffer.putLong(seq).putDouble(delta).putShort((short) account.length).put(account).flip();
+        try {
+            while (buffer.hasRemaining()) {
+                current.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to balance journal " + currentPath, e);
+        }
+        unflushed.put(seq, new Entry(seq, accountNumber, delta));
+        return seq;
+    }
+
+    synchronized void commit(long seq) {
+        committed.add(seq);
+    }
+
+    // A rolled back entry is never written behind; recovery skips it as it has no ledger row
+    synchronized void abort(long seq) {
+        unflushed.remove(seq);
+    }
+
+    // Takes the committed entries of every account up to its oldest open one, so a later commit of
+    // that open entry is still newer than the seq the account row was flushed to
+    synchronized Checkpoint rotate() {
+        List<Entry> entries = new ArrayList<>();
+        Set<String> blocked = new HashSet<>();
+        for (Iterator<Entry> it = unflushed.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (!committed.contains(entry.seq())) {
+                blocked.add(entry.accountNumber());
+            } else if (!blocked.contains(entry.accountNumber())) {
+                entries.add(entry);
+                committed.remove(entry.seq());
+                it.remove();
+            }
+        }
+        if (entries.isEmpty()) {
+            return new Checkpoint(List.of(), List.of());
+        }
+        closeCurrent();
+        openNext();
+        // A file can go once the file after it starts at or before the oldest entry still needed
+        long keepFrom = unflushed.isEmpty() ? lastSeq + 1 : unflushed.firstKey();
+        List<Path> closed = journalFiles(directory).stream()
+                .filter(file -> !file.equals(currentPath))
+                .toList();
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < closed.size(); i++) {
+            Path next = i + 1 < closed.size() ? closed.get(i + 1) : currentPath;
+            if (firstSeq(next) <= keepFrom) {
+                files.add(closed.get(i));
+            }
+        }
+        return new Checkpoint(entries, files);
+    }
+
+    // Puts back the entries of a flush that did not reach the database
+    synchronized void restore(List<Entry> entries) {
+        for (Entry entry : entries) {
+            unflushed.put(entry.seq(), entry);
+            committed.add(entry.seq());
+        }
+    }
+
+    static void delete(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete flushed balance journal {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    static List<Entry> readAll(Path directory) {
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : journalFiles(directory)) {
+            try {
+                ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+                while (data.remaining() >= Long.BYTES + Double.BYTES + Short.BYTES) {
+                    long seq = data.getLong();
+                    double delta = data.getDouble();
+                    int length = data.getShort();
+                    if (data.remaining() < length) {
+                        log.warn("Ignoring torn record at the end of balance journal {}", file);
+                        break;
+                    }
+                    byte[] account = new byte[length];
+                    data.get(account);
+                    entries.add(new Entry(seq, new String(account, StandardCharsets.UTF_8), delta));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read balance journal " + file, e);
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::seq));
+        return entries;
+    }
+
+    static List<Path> journalFiles(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(PREFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list balance journals in " + directory, e);
+        }
+    }
+
+    private static long firstSeq(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private void openNext() {
+        try {
+            Files.createDirectories(directory);
+            currentPath = directory.resolve(String.format("%s%020d%s", PREFIX, lastSeq + 1, SUFFIX));
+            current = FileChannel.open(currentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open balance journal in " + directory, e);
+        }
+    }
+
+    private void closeCurrent() {
+        try {
+            current.close();
+        } catch (IOException e) {
+            log.warn("Failed to close balance journal {}: {}", currentPath, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeCurrent();
+    }
+}
@@ -12,4 +12,11 @@ public class Account {
     @Column(unique = true)
     private String accountNumber;
     private Double balance;
+    // Last balance journal entry written behind into this row
+    private Long journalSeq;
+    // Set once AccountOpened was queued for the account-directory topic; null for older accounts
+    private Boolean announced;
+    // Concurrent read-modify-write of the same row fails on commit instead of losing an update
+    @Version
+    private Long version;
 }
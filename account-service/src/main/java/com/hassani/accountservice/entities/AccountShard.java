@@ -0,0 +1,17 @@
+package com.hassani.accountservice.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// One slice of a sharded account's balance; the logical balance is the sum over all shards
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"accountNumber", "shardIndex"}))
+@AllArgsConstructor @NoArgsConstructor @Getter @Setter @ToString
+public class AccountShard {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private String accountNumber;
+    private Integer shardIndex;
+    private Double balance;
+}
@@ -0,0 +1,43 @@
+package com.hassani.accountservice.idempotency;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded set of recently processed event keys. Entries are kept in insertion order, so the eldest
+ * entry is dropped first both when the cache is full and when it is older than the time to live.
+ */
+final class DedupCache {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>();
+
+    DedupCache(int maxSize, long ttlNanos) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlNanos;
+    }
+
+    synchronized boolean contains(String key) {
+        evict(System.nanoTime());
+        return entries.containsKey(key);
+    }
+
+    synchronized void add(String key) {
+        long now = System.nanoTime();
+        entries.remove(key);
+        entries.put(key, now);
+        evict(now);
+    }
+
+    private void evict(long now) {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entries.size() <= maxSize && now - entry.getValue() < ttlNanos) {
+                return;
+            }
+            eldest.remove();
+        }
+    }
+}
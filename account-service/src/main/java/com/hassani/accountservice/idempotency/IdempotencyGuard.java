@@ -0,0 +1,121 @@
+package com.hassani.accountservice.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Drops redelivered saga events. Keys of committed events are kept in a bounded in-memory cache, and
+ * a PROCESSED_EVENT row is inserted in the same transaction as the balance change. A redelivery the
+ * cache has already forgotten fails that insert on commit, which rolls the balance change back.
+ */
+@Slf4j
+@Component
+public class IdempotencyGuard {
+    private final ProcessedEventRepository processedEventRepository;
+    private final DedupCache cache;
+    private final Duration retention;
+
+    public IdempotencyGuard(ProcessedEventRepository processedEventRepository,
+                            @Value("${saga.idempotency.cache-size:100000}") int cacheSize,
+                            @Value("${saga.idempotency.cache-ttl:10m}") Duration cacheTtl,
+                            @Value("${saga.idempotency.retention:7d}") Duration retention) {
+        this.processedEventRepository = processedEventRepository;
+        this.cache = new DedupCache(cacheSize, cacheTtl.toNanos());
+        this.retention = retention;
+    }
+
+    public static String key(String topic, Long transactionId) {
+        return transactionId == null ? null : topic + ":" + transactionId;
+    }
+
+    /**
+     * Records the event as processed in the current transaction. Returns false when the cache already
+     * knows it; events without a transaction ID are always accepted.
+     */
+    public boolean claim(String topic, Long transactionId) {
+        String key = key(topic, transactionId);
+        if (key == null) {
+            return true;
+        }
+        if (cache.contains(key)) {
+            return false;
+        }
+        markProcessed(key);
+        return true;
+    }
+
+    /**
+     * Runs work that claims the event. If its commit failed because the event was processed before the
+     * cache forgot it, the key is loaded into the cache and the work runs again, now taking its
+     * duplicate path.
+     */
+    public void runClaimed(String topic, Long transactionId, Runnable work) {
+        try {
+            work.run();
+        } catch (DataIntegrityViolationException e) {
+            String key = key(topic, transactionId);
+            if (key == null || alreadyProcessed(List.of(key)).isEmpty()) {
+                throw e;
+            }
+            log.warn("Event {} was processed before the dedup cache forgot it", key);
+            work.run();
+        }
+    }
+
+    public void markProcessed(String key) {
+        processedEventRepository.save(new ProcessedEvent(key, Instant.now()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.add(key);
+                }
+            });
+        } else {
+            cache.add(key);
+        }
+    }
+
+    /**
+     * Returns the keys that were already processed, asking the table only for keys the cache does not hold.
+     */
+    public Set<String> alreadyProcessed(Collection<String> keys) {
+        Set<String> processed = new HashSet<>();
+        List<String> unknown = keys.stream().filter(key -> {
+            if (cache.contains(key)) {
+                processed.add(key);
+                return false;
+            }
+            return true;
+        }).toList();
+        if (!unknown.isEmpty()) {
+            for (ProcessedEvent event : processedEventRepository.findAllById(unknown)) {
+                processed.add(event.getEventKey());
+                cache.add(event.getEventKey());
+            }
+        }
+        return processed;
+    }
+
+    @Transactional
+    @Scheduled(fixedDelayString = "${saga.idempotency.purge-interval-ms:3600000}")
+    public void purge() {
+        int purged = processedEventRepository.deleteProcessedBefore(Instant.now().minus(retention));
+        if (purged > 0) {
+            log.info("Purged {} processed-event records older than {}", purged, retention);
+        }
+    }
+}
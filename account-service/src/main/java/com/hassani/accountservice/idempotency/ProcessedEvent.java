@@ -0,0 +1,27 @@
+package com.hassani.accountservice.idempotency;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+@Entity
+@Table(indexes = @Index(columnList = "processedAt"))
+@AllArgsConstructor @NoArgsConstructor @Getter @Setter @ToString
+public class ProcessedEvent implements Persistable<String> {
+    @Id
+    private String eventKey; // <topic>:<transactionId>
+    private Instant processedAt;
+
+    @Override
+    public String getId() {
+        return eventKey;
+    }
+
+    // Always inserted, never merged: a second insert of the same key is the duplicate signal
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
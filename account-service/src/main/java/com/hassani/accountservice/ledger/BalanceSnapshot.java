@@ -0,0 +1,18 @@
+package com.hassani.accountservice.ledger;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Balance of an account summed over every ledger entry created before coveredUntil
+@Entity
+@AllArgsConstructor @NoArgsConstructor @Getter @Setter @ToString
+public class BalanceSnapshot {
+    @Id
+    private String accountNumber;
+    private Double balance;
+    private Instant coveredUntil;
+    // Whether the OPENING entry of the account is folded in, so the balance covers its whole history
+    private Boolean opened;
+}
@@ -0,0 +1,18 @@
+package com.hassani.accountservice.ledger;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, String> {
+    @Query("select max(s.coveredUntil) from BalanceSnapshot s")
+    Optional<Instant> findCoveredUntil();
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update BalanceSnapshot s set s.coveredUntil = :coveredUntil")
+    int advanceCoveredUntil(@Param("coveredUntil") Instant coveredUntil);
+}
@@ -0,0 +1,184 @@
+package com.hassani.accountservice.ledger;
+
+import com.hassani.accountservice.entities.Account;
+import com.hassani.accountservice.entities.AccountShard;
+import com.hassani.accountservice.repository.AccountRepository;
+import com.hassani.accountservice.repository.AccountShardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only ledger of every balance change, inserted in the same transaction as the change. Every
+ * saga.ledger.snapshot-interval-ms the entries older than saga.ledger.snapshot-lag, and older than
+ * every entry whose transaction is still open, are folded into per-account BalanceSnapshot rows. On
+ * startup every account with entries since the latest snapshot has its balance restored to the
+ * snapshot plus those entries, so only the tail of the ledger and the accounts it names are read.
+ */
+@Slf4j
+@Component
+public class Ledger implements SmartInitializingSingleton {
+    // Balances are doubles summed in a different order than the Account row was updated in
+    private static final double TOLERANCE = 0.005;
+    // Accounts of the ledger tail read per query on startup
+    private static final int RESTORE_PAGE_SIZE = 1000;
+
+    private final LedgerEntryRepository entryRepository;
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final AccountRepository accountRepository;
+    private final AccountShardRepository shardRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration snapshotLag;
+    // createdAt of the entries whose transaction has not completed yet, keyed by an identity token
+    private final Map<Object, Instant> openEntries = new ConcurrentHashMap<>();
+
+    public Ledger(LedgerEntryRepository entryRepository,
+                  BalanceSnapshotRepository snapshotRepository,
+                  AccountRepository accountRepository,
+                  AccountShardRepository shardRepository,
+                  PlatformTransactionManager transactionManager,
+                  @Value("${saga.ledger.snapshot-lag:1m}") Duration snapshotLag) {
+        this.entryRepository = entryRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.accountRepository = accountRepository;
+        this.shardRepository = shardRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotLag = snapshotLag;
+    }
+
+    public void record(String accountNumber, Long transactionId, LedgerEntryType type, double delta) {
+        record(accountNumber, transactionId, type, delta, null);
+    }
+
+    public void record(String accountNumber, Long transactionId, LedgerEntryType type, double delta, Long journalSeq) {
+        Instant createdAt = Instant.now();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Object token = new Object();
+            openEntries.put(token, createdAt);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    openEntries.remove(token);
+                }
+            });
+        }
+        entryRepository.save(new LedgerEntry(null, accountNumber, transactionId, type, delta, createdAt, journalSeq));
+    }
+
+    // The change a transaction made to an account, so a redelivered command can be answered with its outcome again
+    public Optional<Double> recorded(Long transactionId, LedgerEntryType type, String accountNumber) {
+        if (transactionId == null) {
+            return Optional.empty();
+        }
+        return entryRepository.findFirstByTransactionIdAndTypeAndAccountNumber(transactionId, type, accountNumber)
+                .map(LedgerEntry::getDelta);
+    }
+
+    // An entry created before the oldest open one has committed or rolled back, however long its
+    // transaction took; the lag only covers the instant between taking createdAt and registering it
+    @Scheduled(fixedDelayString = "${saga.ledger.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        Instant until = Instant.now().minus(snapshotLag);
+        for (Instant open : openEntries.values()) {
+            if (open.isBefore(until)) {
+                until = open;
+            }
+        }
+        Instant coveredUntil = until;
+        transactionTemplate.executeWithoutResult(status -> {
+            Instant from = snapshotRepository.findCoveredUntil().orElse(Instant.EPOCH);
+            if (!coveredUntil.isAfter(from)) {
+                return;
+            }
+            List<LedgerEntryRepository.AccountDelta> deltas = entryRepository.sumDeltasBetween(from, coveredUntil);
+            Map<String, BalanceSnapshot> snapshots = new HashMap<>();
+            snapshotRepository.findAllById(deltas.stream().map(LedgerEntryRepository.AccountDelta::getAccountNumber).toList())
+                    .forEach(snapshot -> snapshots.put(snapshot.getAccountNumber(), snapshot));
+            for (LedgerEntryRepository.AccountDelta delta : deltas) {
+                BalanceSnapshot snapshot = snapshots.computeIfAbsent(delta.getAccountNumber(),
+                        accountNumber -> new BalanceSnapshot(accountNumber, 0.0, coveredUntil, false));
+                snapshot.setBalance(snapshot.getBalance() + delta.getTotal());
+                snapshot.setCoveredUntil(coveredUntil);
+                if (delta.getOpenings() > 0) {
+                    snapshot.setOpened(true);
+                }
+            }
+            snapshotRepository.saveAll(snapshots.values());
+            snapshotRepository.advanceCoveredUntil(coveredUntil);
+            if (!deltas.isEmpty()) {
+                log.info("Balance snapshot advanced to {} with changes to {} accounts", coveredUntil, deltas.size());
+            }
+        });
+    }
+
+    // Runs once every singleton is ready, the balance engine included, so its recovered journal is
+    // already written behind; Kafka listeners and scheduled work only start after this
+    @Override
+    public void afterSingletonsInstantiated() {
+        restore();
+    }
+
+    // An account opened before the ledger existed has no OPENING entry, so its ledger sum is only a
+    // part of its balance and the stored balance is kept
+    void restore() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Instant from = snapshotRepository.findCoveredUntil().orElse(Instant.EPOCH);
+            List<LedgerEntryRepository.AccountDelta> tail = entryRepository.sumDeltasSince(from);
+            int restored = 0;
+            int untracked = 0;
+            for (int start = 0; start < tail.size(); start += RESTORE_PAGE_SIZE) {
+                List<LedgerEntryRepository.AccountDelta> page = tail.subList(start, Math.min(start + RESTORE_PAGE_SIZE, tail.size()));
+                List<String> accountNumbers = page.stream().map(LedgerEntryRepository.AccountDelta::getAccountNumber).toList();
+                Map<String, BalanceSnapshot> snapshots = new HashMap<>();
+                snapshotRepository.findAllById(accountNumbers).forEach(snapshot -> snapshots.put(snapshot.getAccountNumber(), snapshot));
+                Map<String, Account> accounts = new HashMap<>();
+                accountRepository.findByAccountNumberIn(accountNumbers).forEach(account -> accounts.put(account.getAccountNumber(), account));
+                Map<String, Double> shardBalances = new HashMap<>();
+                for (AccountShard shard : shardRepository.findByAccountNumberIn(accountNumbers)) {
+                    shardBalances.merge(shard.getAccountNumber(), shard.getBalance(), Double::sum);
+                }
+
+                for (LedgerEntryRepository.AccountDelta delta : page) {
+                    Account account = accounts.get(delta.getAccountNumber());
+                    if (account == null) {
+                        continue;
+                    }
+                    BalanceSnapshot snapshot = snapshots.get(delta.getAccountNumber());
+                    if (delta.getOpenings() == 0 && (snapshot == null || !Boolean.TRUE.equals(snapshot.getOpened()))) {
+                        untracked++;
+                        continue;
+                    }
+                    double expected = (snapshot == null ? 0.0 : snapshot.getBalance()) + delta.getTotal();
+                    // Shards keep their balance; the difference goes to the Account row
+                    double shards = shardBalances.getOrDefault(delta.getAccountNumber(), 0.0);
+                    double stored = account.getBalance() + shards;
+                    if (Math.abs(stored - expected) > TOLERANCE) {
+                        log.error("Balance of account {} is {} but the ledger adds up to {}, restoring it from the ledger",
+                                account.getAccountNumber(), stored, expected);
+                        account.setBalance(expected - shards);
+                        restored++;
+                    }
+                }
+            }
+            if (untracked > 0) {
+                log.warn("{} accounts were opened before the ledger and keep their balance as stored", untracked);
+            }
+            log.info("Checked {} accounts with ledger entries since the snapshot at {}, {} restored",
+                    tail.size(), from, restored);
+        });
+    }
+}
@@ -0,0 +1,32 @@
+package com.hassani.accountservice.ledger;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+// Append-only: rows are inserted with the balance change they record and never updated
+@Entity
+@Table(indexes = {@Index(columnList = "createdAt"), @Index(columnList = "transactionId"),
+        @Index(columnList = "journalSeq")})
+@AllArgsConstructor @NoArgsConstructor @Getter @Setter @ToString
+public class LedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entry_seq")
+    @SequenceGenerator(name = "ledger_entry_seq", allocationSize = 50)
+    private Long id;
+    private String accountNumber;
+    private Long transactionId;
+    // VARCHAR rather than a native enum column, so adding an entry type needs no schema change
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    private LedgerEntryType type;
+    // Signed change of the logical balance
+    private Double delta;
+    private Instant createdAt;
+    // Balance journal entry of the same change when the balance engine made it; recovery replays
+    // a journal entry only if this row committed
+    private Long journalSeq;
+}
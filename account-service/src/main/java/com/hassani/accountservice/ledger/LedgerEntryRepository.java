@@ -0,0 +1,35 @@
+package com.hassani.accountservice.ledger;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+    String OPENINGS = "sum(case when e.type = com.hassani.accountservice.ledger.LedgerEntryType.OPENING then 1 else 0 end) as openings";
+
+    interface AccountDelta {
+        String getAccountNumber();
+        Double getTotal();
+        // OPENING entries among them; an account without one was opened before the ledger existed
+        Long getOpenings();
+    }
+
+    @Query("select e.accountNumber as accountNumber, sum(e.delta) as total, " + OPENINGS + " from LedgerEntry e "
+            + "where e.createdAt >= :from and e.createdAt < :until group by e.accountNumber")
+    List<AccountDelta> sumDeltasBetween(@Param("from") Instant from, @Param("until") Instant until);
+
+    @Query("select e.accountNumber as accountNumber, sum(e.delta) as total, " + OPENINGS + " from LedgerEntry e "
+            + "where e.createdAt >= :from group by e.accountNumber")
+    List<AccountDelta> sumDeltasSince(@Param("from") Instant from);
+
+    @Query("select e.journalSeq from LedgerEntry e where e.journalSeq in :seqs")
+    List<Long> findJournalSeqsIn(@Param("seqs") Collection<Long> seqs);
+
+    Optional<LedgerEntry> findFirstByTransactionIdAndTypeAndAccountNumber(Long transactionId, LedgerEntryType type,
+                                                                         String accountNumber);
+}
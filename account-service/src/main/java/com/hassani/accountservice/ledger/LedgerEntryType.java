@@ -0,0 +1,10 @@
+package com.hassani.accountservice.ledger;
+
+public enum LedgerEntryType {
+    OPENING,
+    DEBIT,
+    CREDIT,
+    REVERT,
+    CLOSING,
+    NET_SETTLEMENT
+}
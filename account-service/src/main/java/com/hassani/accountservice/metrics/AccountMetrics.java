@@ -0,0 +1,59 @@
+package com.hassani.accountservice.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+@Component
+public class AccountMetrics {
+    private final Timer lookupTimer;
+    private final Timer saveTimer;
+    private final Counter revertsApplied;
+    private final Counter revertsFailed;
+    private final Counter optimisticRetries;
+
+    public AccountMetrics(MeterRegistry registry) {
+        this.lookupTimer = Timer.builder("saga.account.db")
+                .description("Account row access inside debit and credit")
+                .tag("operation", "lookup")
+                .register(registry);
+        this.saveTimer = Timer.builder("saga.account.db")
+                .description("Account row access inside debit and credit")
+                .tag("operation", "save")
+                .register(registry);
+        this.revertsApplied = Counter.builder("saga.compensations.applied")
+                .description("revert-debit compensations handled by the account service")
+                .tag("outcome", "applied")
+                .register(registry);
+        this.revertsFailed = Counter.builder("saga.compensations.applied")
+                .description("revert-debit compensations handled by the account service")
+                .tag("outcome", "failed")
+                .register(registry);
+        this.optimisticRetries = Counter.builder("saga.account.optimistic-retries")
+                .description("Account transactions retried after losing an optimistic version check")
+                .register(registry);
+    }
+
+    public <T> T timeLookup(Supplier<T> lookup) {
+        return lookupTimer.record(lookup);
+    }
+
+    public void timeSave(Runnable save) {
+        saveTimer.record(save);
+    }
+
+    public void revertApplied() {
+        revertsApplied.increment();
+    }
+
+    public void revertFailed() {
+        revertsFailed.increment();
+    }
+
+    public void optimisticRetry() {
+        optimisticRetries.increment();
+    }
+}
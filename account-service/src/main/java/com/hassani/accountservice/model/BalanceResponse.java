@@ -0,0 +1,13 @@
+package com.hassani.accountservice.model;
+
+import lombok.*;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class BalanceResponse {
+    private String accountNumber;
+    private Double balance;
+}
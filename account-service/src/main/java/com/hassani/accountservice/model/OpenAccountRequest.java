@@ -0,0 +1,13 @@
+package com.hassani.accountservice.model;
+
+import lombok.*;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+public class OpenAccountRequest {
+    private String accountNumber;
+    private Double initialBalance;
+}
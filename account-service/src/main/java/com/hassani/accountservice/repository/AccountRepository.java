@@ -1,10 +1,33 @@
 package com.hassani.accountservice.repository;
 
 import com.hassani.accountservice.entities.Account;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
     Optional<Account> findByAccountNumber(String accountNumber);
+    List<Account> findByAccountNumberIn(Collection<String> accountNumbers);
+
+    @Query("select a.accountNumber from Account a where a.announced is null or a.announced = false order by a.id")
+    List<String> findUnannouncedAccountNumbers(Pageable page);
+
+    // Bulk update, so the version is left alone and concurrent balance updates do not conflict
+    @Modifying
+    @Query("update Account a set a.announced = true where a.accountNumber in :accountNumbers")
+    int markAnnounced(@Param("accountNumbers") Collection<String> accountNumbers);
+
+    @Query("select coalesce(max(a.journalSeq), 0) from Account a")
+    long findMaxJournalSeq();
+
+    @Modifying
+    @Query("update Account a set a.balance = a.balance + :delta, a.journalSeq = :seq, a.version = a.version + 1 "
+            + "where a.accountNumber = :accountNumber")
+    int applyBalanceDelta(@Param("accountNumber") String accountNumber, @Param("delta") double delta, @Param("seq") long seq);
 }
\ No newline at end of file
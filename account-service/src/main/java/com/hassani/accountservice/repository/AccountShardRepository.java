@@ -0,0 +1,37 @@
+package com.hassani.accountservice.repository;
+
+import com.hassani.accountservice.entities.AccountShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AccountShardRepository extends JpaRepository<AccountShard, Long> {
+    long countByAccountNumber(String accountNumber);
+
+    List<AccountShard> findByAccountNumberIn(Collection<String> accountNumbers);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<AccountShard> findByAccountNumberOrderByShardIndex(String accountNumber);
+
+    @Query("select coalesce(sum(s.balance), 0) from AccountShard s where s.accountNumber = :accountNumber")
+    double sumBalance(@Param("accountNumber") String accountNumber);
+
+    // Single-row updates: only callers that pick the same shard contend on its row lock
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountShard s set s.balance = s.balance + :amount "
+            + "where s.accountNumber = :accountNumber and s.shardIndex = :shardIndex")
+    int deposit(@Param("accountNumber") String accountNumber, @Param("shardIndex") int shardIndex,
+                @Param("amount") double amount);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountShard s set s.balance = s.balance - :amount "
+            + "where s.accountNumber = :accountNumber and s.shardIndex = :shardIndex and s.balance >= :amount")
+    int withdraw(@Param("accountNumber") String accountNumber, @Param("shardIndex") int shardIndex,
+                 @Param("amount") double amount);
+}
@@ -0,0 +1,27 @@
+package com.hassani.accountservice.service;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "saga.kafka.dispatch-mode", havingValue = "batch")
+public class AccountBatchListener {
+    private final AccountService accountService;
+
+    @Timed(value = "saga.handler", description = "Saga event handling per listener method")
+    @KafkaListener(topics = {"initiate-transfer", "credit-account", "revert-debit"},
+            groupId = "account-service", batch = "true")
+    public void onBatch(List<ConsumerRecord<String, Object>> records) {
+        log.debug("Received batch of {} account events", records.size());
+        accountService.processBatch(records.stream().map(ConsumerRecord::value).toList());
+    }
+}
@@ -0,0 +1,78 @@
+package com.hassani.accountservice.service;
+
+import com.hassani.commonlib.dispatch.KeyOrderedDispatcher;
+import com.hassani.commonlib.event.CreditAccount;
+import com.hassani.commonlib.event.InitiateTransfer;
+import com.hassani.commonlib.event.RevertDebit;
+import com.hassani.commonlib.trace.TraceContext;
+import com.hassani.commonlib.trace.TraceSpan;
+import com.hassani.commonlib.trace.Tracer;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "saga.kafka.dispatch-mode", havingValue = "ordered")
+public class AccountEventDispatcher implements AutoCloseable {
+    private final AccountService accountService;
+    private final KeyOrderedDispatcher dispatcher;
+    private final Tracer tracer;
+
+    public AccountEventDispatcher(AccountService accountService,
+                                  Tracer tracer,
+                                  @Value("${saga.kafka.dispatch-lanes:8}") int lanes) {
+        this.accountService = accountService;
+        this.dispatcher = new KeyOrderedDispatcher("account-dispatch", lanes);
+        this.tracer = tracer;
+    }
+
+    @Timed(value = "saga.handler", description = "Saga event handling per listener method")
+    @KafkaListener(topics = {"initiate-transfer", "credit-account", "revert-debit"},
+            groupId = "account-service", batch = "true")
+    public void dispatch(List<ConsumerRecord<String, Object>> records) {
+        log.debug("Dispatching {} records across account lanes", records.size());
+        try {
+            dispatcher.dispatch(records, ConsumerRecord::key, this::route);
+        } catch (KeyOrderedDispatcher.DispatchException e) {
+            // Redelivers from the failed index, including records other lanes already applied
+            throw new BatchListenerFailedException(e.getMessage(), e.getCause(), e.getIndex());
+        }
+    }
+
+    private void route(ConsumerRecord<String, Object> record) {
+        try (TraceSpan span = tracer.startChild("handle " + record.topic(), TraceContext.fromHeaders(record.headers()))) {
+            try {
+                handle(record);
+            } catch (RuntimeException e) {
+                span.markError();
+                throw e;
+            }
+        }
+    }
+
+    private void handle(ConsumerRecord<String, Object> record) {
+        Object value = record.value();
+        if (value instanceof InitiateTransfer event) {
+            accountService.handleInitiateTransfer(event);
+        } else if (value instanceof CreditAccount event) {
+            accountService.handleCreditAccount(event);
+        } else if (value instanceof RevertDebit event) {
+            accountService.handleRevertDebit(event);
+        } else {
+            log.warn("Ignoring unexpected record on topic {}: {}", record.topic(), value);
+        }
+    }
+
+    @Override
+    public void close() {
+        dispatcher.close();
+    }
+}
@@ -1,85 +1,225 @@
 package com.hassani.accountservice.service;
 
+import com.hassani.accountservice.engine.BalanceEngine;
 import com.hassani.accountservice.entities.Account;
+import com.hassani.accountservice.idempotency.IdempotencyGuard;
+import com.hassani.accountservice.ledger.Ledger;
+import com.hassani.accountservice.ledger.LedgerEntryType;
+import com.hassani.accountservice.metrics.AccountMetrics;
 import com.hassani.accountservice.repository.AccountRepository;
+import com.hassani.accountservice.shard.ShardedAccounts;
 import com.hassani.commonlib.event.*;
+import com.hassani.commonlib.outbox.OutboxPublisher;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.*;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AccountService {
+    // Per-record listeners only run when no batch-level dispatch mode is configured
+    static final String RECORD_MODE =
+            "#{'${saga.kafka.dispatch-mode:record}' == 'record' && ${spring.kafka.listener.auto-startup:true}}";
+
     private final AccountRepository accountRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxPublisher outboxPublisher;
+    private final Optional<BalanceEngine> balanceEngine;
+    private final AccountMetrics accountMetrics;
+    private final IdempotencyGuard idempotencyGuard;
+    private final OptimisticRetry optimisticRetry;
+    private final ShardedAccounts shardedAccounts;
+    private final Ledger ledger;
 
-    @KafkaListener(topics = "initiate-transfer", groupId = "account-service")
+    @Timed(value = "saga.handler", description = "Saga event handling per listener method")
+    @KafkaListener(topics = "initiate-transfer", groupId = "account-service", autoStartup = RECORD_MODE)
     public void handleInitiateTransfer(InitiateTransfer event) {
-        log.info("Received initiate transfer event: from={}, to={}, amount={}",
-                event.getFromAccount(), event.getToAccount(), event.getAmount());
+        log.info("Received initiate transfer event: transactionId={}, from={}, to={}, amount={}",
+                event.getTransactionId(), event.getFromAccount(), event.getToAccount(), event.getAmount());
+        idempotencyGuard.runClaimed("initiate-transfer", event.getTransactionId(),
+                () -> optimisticRetry.run(() -> initiateTransfer(event)));
+    }
+
+    private void initiateTransfer(InitiateTransfer event) {
+        if (!idempotencyGuard.claim("initiate-transfer", event.getTransactionId())) {
+            log.warn("Duplicate initiate-transfer event for transaction ID: {}, resending its outcome", event.getTransactionId());
+            republishOutcome(event);
+            return;
+        }
         try {
-            debit(event.getFromAccount(), event.getAmount());
+            debit(event.getTransactionId(), event.getFromAccount(), event.getAmount());
             log.info("Successfully debited amount {} from account {}",
                     event.getAmount(), event.getFromAccount());
+        } catch (OptimisticLockingFailureException e) {
+            throw e; // retried as a whole by optimisticRetry
         } catch (RuntimeException e) {
             log.error("Failed to process debit for account {}: {}",
                     event.getFromAccount(), e.getMessage());
-            try {
-                kafkaTemplate.send("transfer-failed",
-                                new TransferFailed(event.getFromAccount(), event.getAmount()))
-                        .get();
-                log.info("Transfer failed event sent for account {}", event.getFromAccount());
-            } catch (Exception ke) {
-                log.error("Failed to send transfer-failed event: {}", ke.getMessage());
-            }
+            outboxPublisher.publish("transfer-failed", event.getFromAccount(),
+                    new TransferFailed(event.getTransactionId(), event.getFromAccount(), event.getAmount()));
+            log.info("Transfer failed event queued for account {}", event.getFromAccount());
         }
     }
 
-    @KafkaListener(topics = "credit-account", groupId = "account-service")
+    @Timed(value = "saga.handler", description = "Saga event handling per listener method")
+    @KafkaListener(topics = "credit-account", groupId = "account-service", autoStartup = RECORD_MODE)
     public void handleCreditAccount(CreditAccount event) {
-        log.info("Received credit account event: account={}, amount={}",
-                event.getAccountNumber(), event.getAmount());
+        log.info("Received credit account event: transactionId={}, account={}, amount={}",
+                event.getTransactionId(), event.getAccountNumber(), event.getAmount());
+        idempotencyGuard.runClaimed("credit-account", event.getTransactionId(),
+                () -> optimisticRetry.run(() -> creditAccount(event)));
+    }
+
+    private void creditAccount(CreditAccount event) {
+        if (!idempotencyGuard.claim("credit-account", event.getTransactionId())) {
+            log.warn("Duplicate credit-account event for transaction ID: {}, resending its outcome", event.getTransactionId());
+            republishOutcome(event);
+            return;
+        }
         try {
-            credit(event.getAccountNumber(), event.getAmount());
+            credit(event.getTransactionId(), event.getAccountNumber(), event.getAmount());
             log.info("Successfully credited amount {} to account {}",
                     event.getAmount(), event.getAccountNumber());
+        } catch (OptimisticLockingFailureException e) {
+            throw e; // retried as a whole by optimisticRetry
         } catch (RuntimeException e) {
             log.error("Failed to process credit for account {}: {}",
                     event.getAccountNumber(), e.getMessage());
             // Trigger compensation - revert the debit
-            try {
-                kafkaTemplate.send("credit-failed",
-                                new CreditFailed(event.getAccountNumber(), event.getAmount()))
-                        .get();
-                log.info("Credit failed event sent for account {}", event.getAccountNumber());
-            } catch (Exception ke) {
-                log.error("Failed to send credit-failed event: {}", ke.getMessage());
-            }
+            outboxPublisher.publish("credit-failed", event.getAccountNumber(),
+                    new CreditFailed(event.getTransactionId(), event.getAccountNumber(), event.getAmount()));
+            log.info("Credit failed event queued for account {}", event.getAccountNumber());
         }
     }
 
-    @KafkaListener(topics = "revert-debit", groupId = "account-service")
+    @Timed(value = "saga.handler", description = "Saga event handling per listener method")
+    @KafkaListener(topics = "revert-debit", groupId = "account-service", autoStartup = RECORD_MODE)
     public void handleRevertDebit(RevertDebit event) {
-        log.info("Received revert debit event for account: {}, amount: {}",
-                event.getAccountNumber(), event.getAmount());
+        log.info("Received revert debit event: transactionId={}, account={}, amount={}",
+                event.getTransactionId(), event.getAccountNumber(), event.getAmount());
+        idempotencyGuard.runClaimed("revert-debit", event.getTransactionId(),
+                () -> optimisticRetry.run(() -> revertDebit(event)));
+    }
+
+    private void revertDebit(RevertDebit event) {
+        if (!idempotencyGuard.claim("revert-debit", event.getTransactionId())) {
+            log.warn("Duplicate revert-debit event for transaction ID: {}, resending its outcome", event.getTransactionId());
+            republishOutcome(event);
+            return;
+        }
         try {
-            credit(event.getAccountNumber(), event.getAmount()); // Revert the debit by crediting back
+            credit(event.getTransactionId(), event.getAccountNumber(), event.getAmount(), LedgerEntryType.REVERT); // Revert the debit by crediting back
+            accountMetrics.revertApplied();
             log.info("Successfully reverted debit for account {}", event.getAccountNumber());
+        } catch (OptimisticLockingFailureException e) {
+            throw e; // retried as a whole by optimisticRetry
         } catch (Exception e) {
+            accountMetrics.revertFailed();
             log.error("Failed to revert debit for account {}: {}",
                     event.getAccountNumber(), e.getMessage());
         }
     }
 
+    // Opening balances go through the ledger as well, so replaying it always yields the current balance
+    @Transactional
+    public boolean openAccount(String accountNumber, double initialBalance) {
+        if (accountRepository.findByAccountNumber(accountNumber).isPresent()) {
+            return false;
+        }
+        accountRepository.save(new Account(null, accountNumber, initialBalance, null, true, null));
+        ledger.record(accountNumber, null, LedgerEntryType.OPENING, initialBalance);
+        outboxPublisher.publish("account-directory", accountNumber, new AccountOpened(accountNumber));
+        log.info("Opened account {} with balance {}", accountNumber, initialBalance);
+        return true;
+    }
+
+    // Only drained accounts can be closed; rounding leftovers are booked as CLOSING so the ledger still nets out
+    @Transactional
+    public boolean closeAccount(String accountNumber) {
+        Optional<Account> found = accountRepository.findByAccountNumber(accountNumber);
+        if (found.isEmpty()) {
+            return false;
+        }
+        if (shardedAccounts.isSharded(accountNumber)) {
+            throw new IllegalStateException("Sharded account " + accountNumber + " cannot be closed");
+        }
+        double balance = balanceEngine.isPresent()
+                ? balanceEngine.get().balanceOf(accountNumber)
+                : found.get().getBalance();
+        if (Math.abs(balance) >= 0.005) {
+            throw new IllegalStateException("Account " + accountNumber + " still holds a balance of " + balance);
+        }
+        accountRepository.delete(found.get());
+        if (balance != 0) {
+            ledger.record(accountNumber, null, LedgerEntryType.CLOSING, -balance);
+        }
+        balanceEngine.ifPresent(engine -> engine.evict(accountNumber));
+        outboxPublisher.publish("account-directory", accountNumber, new AccountClosed(accountNumber));
+        log.info("Closed account {}", accountNumber);
+        return true;
+    }
 
+    // Accounts opened before the directory topic existed are only known to it after this; each account
+    // is announced once, and one page per transaction keeps the outbox inserts bounded
     @Transactional
+    public int announceToDirectory(int pageSize) {
+        List<String> accountNumbers = accountRepository.findUnannouncedAccountNumbers(PageRequest.of(0, pageSize));
+        accountNumbers.forEach(accountNumber -> outboxPublisher.publish("account-directory", accountNumber,
+                new AccountOpened(accountNumber)));
+        if (!accountNumbers.isEmpty()) {
+            accountRepository.markAnnounced(accountNumbers);
+        }
+        return accountNumbers.size();
+    }
+
+    // Logical balance: the engine's view, or the Account row plus any shards
+    @Transactional(readOnly = true)
+    public Optional<Double> balanceOf(String accountNumber) {
+        if (balanceEngine.isPresent()) {
+            return accountRepository.findByAccountNumber(accountNumber)
+                    .map(account -> balanceEngine.get().balanceOf(accountNumber));
+        }
+        return accountRepository.findByAccountNumber(accountNumber).map(account -> shardedAccounts.isSharded(accountNumber)
+                ? account.getBalance() + shardedAccounts.shardBalance(accountNumber)
+                : account.getBalance());
+    }
+
     public void debit(String accountNumber, Double amount) {
+        optimisticRetry.run(() -> debit(null, accountNumber, amount));
+    }
+
+    @Transactional
+    public void debit(Long transactionId, String accountNumber, Double amount) {
         log.debug("Attempting to debit {} from account {}", amount, accountNumber);
-        Account account = accountRepository.findByAccountNumber(accountNumber)
+        Long journalSeq = null;
+        if (balanceEngine.isPresent()) {
+            journalSeq = balanceEngine.get().debit(accountNumber, amount);
+        } else {
+            debitAccountRow(accountNumber, amount);
+        }
+        ledger.record(accountNumber, transactionId, LedgerEntryType.DEBIT, -amount, journalSeq);
+
+        outboxPublisher.publish("account-debited", accountNumber,
+                new AccountDebited(transactionId, accountNumber, amount));
+        log.info("Account debited event queued for account {}", accountNumber);
+    }
+
+    private void debitAccountRow(String accountNumber, Double amount) {
+        if (shardedAccounts.isSharded(accountNumber)) {
+            if (!shardedAccounts.tryDebit(accountNumber, amount)) {
+                log.error("Insufficient balance in sharded account {}: required={}", accountNumber, amount);
+                throw new RuntimeException("Insufficient balance in account: " + accountNumber);
+            }
+            return;
+        }
+        Account account = accountMetrics.timeLookup(() -> accountRepository.findByAccountNumber(accountNumber))
                 .orElseThrow(() -> {
                     log.error("Account not found: {}", accountNumber);
                     return new RuntimeException("Account not found: " + accountNumber);
@@ -92,41 +232,235 @@ public class AccountService {
         }
 
         account.setBalance(account.getBalance() - amount);
-        accountRepository.save(account);
+        accountMetrics.timeSave(() -> accountRepository.save(account));
         log.debug("Account {} debited successfully. New balance: {}",
                 accountNumber, account.getBalance());
+    }
 
-        try {
-            kafkaTemplate.send("account-debited",
-                    new AccountDebited(accountNumber, amount)).get();
-            log.info("Account debited event sent for account {}", accountNumber);
-        } catch (Exception e) {
-            log.error("Failed to send account-debited event: {}", e.getMessage());
-            throw new RuntimeException("Failed to process debit transaction", e);
-        }
+    public void credit(String accountNumber, Double amount) {
+        optimisticRetry.run(() -> credit(null, accountNumber, amount));
     }
 
     @Transactional
-    public void credit(String accountNumber, Double amount) {
+    public void credit(Long transactionId, String accountNumber, Double amount) {
+        credit(transactionId, accountNumber, amount, LedgerEntryType.CREDIT);
+    }
+
+    private void credit(Long transactionId, String accountNumber, Double amount, LedgerEntryType type) {
         log.debug("Attempting to credit {} to account {}", amount, accountNumber);
-        Account account = accountRepository.findByAccountNumber(accountNumber)
+        Long journalSeq = null;
+        if (balanceEngine.isPresent()) {
+            journalSeq = balanceEngine.get().credit(accountNumber, amount);
+        } else {
+            creditAccountRow(accountNumber, amount);
+        }
+        ledger.record(accountNumber, transactionId, type, amount, journalSeq);
+
+        outboxPublisher.publish("account-credited", accountNumber,
+                new AccountCredited(transactionId, accountNumber, amount));
+        log.info("Account credited event queued for account {}", accountNumber);
+    }
+
+    private void creditAccountRow(String accountNumber, Double amount) {
+        if (shardedAccounts.isSharded(accountNumber)) {
+            shardedAccounts.credit(accountNumber, amount);
+            return;
+        }
+        Account account = accountMetrics.timeLookup(() -> accountRepository.findByAccountNumber(accountNumber))
                 .orElseThrow(() -> {
                     log.error("Account not found: {}", accountNumber);
                     return new RuntimeException("Account not found: " + accountNumber);
                 });
 
         account.setBalance(account.getBalance() + amount);
-        accountRepository.save(account);
+        accountMetrics.timeSave(() -> accountRepository.save(account));
         log.debug("Account {} credited successfully. New balance: {}",
                 accountNumber, account.getBalance());
+    }
 
-        try {
-            kafkaTemplate.send("account-credited",
-                    new AccountCredited(accountNumber, amount)).get();
-            log.info("Account credited event sent for account {}", accountNumber);
-        } catch (Exception e) {
-            log.error("Failed to send account-credited event: {}", e.getMessage());
-            throw new RuntimeException("Failed to process credit transaction", e);
+    public void processBatch(List<Object> events) {
+        optimisticRetry.run(() -> applyBatch(events));
+    }
+
+    private void applyBatch(List<Object> batch) {
+        List<Object> events = firstDeliveries(batch);
+        if (balanceEngine.isPresent()) {
+            // Balances already live in memory, so each event goes straight through the engine
+            events.forEach(this::applyEvent);
+            log.info("Batch of {} events applied in memory", events.size());
+            return;
+        }
+        // Sharded accounts never touch their Account row, so their events are applied one by one
+        List<Object> rowEvents = new ArrayList<>(events.size());
+        Set<String> accountNumbers = new HashSet<>();
+        for (Object event : events) {
+            String accountNumber = accountOf(event);
+            if (shardedAccounts.isSharded(accountNumber)) {
+                applyEvent(event);
+            } else {
+                rowEvents.add(event);
+                if (accountNumber != null) {
+                    accountNumbers.add(accountNumber);
+                }
+            }
+        }
+        events = rowEvents;
+        Map<String, Account> accounts = new HashMap<>();
+        for (Account account : accountMetrics.timeLookup(() -> accountRepository.findByAccountNumberIn(accountNumbers))) {
+            accounts.put(account.getAccountNumber(), account);
+        }
+        log.info("Processing batch of {} events over {} accounts", events.size(), accounts.size());
+
+        // Apply every event in arrival order against the in-memory balances
+        for (Object event : events) {
+            if (event instanceof InitiateTransfer e) {
+                Account account = accounts.get(e.getFromAccount());
+                if (account == null || account.getBalance() < e.getAmount()) {
+                    log.error("Failed to process debit for account {}: {}", e.getFromAccount(),
+                            account == null ? "Account not found" : "Insufficient balance");
+                    outboxPublisher.publish("transfer-failed", e.getFromAccount(),
+                            new TransferFailed(e.getTransactionId(), e.getFromAccount(), e.getAmount()));
+                } else {
+                    account.setBalance(account.getBalance() - e.getAmount());
+                    ledger.record(e.getFromAccount(), e.getTransactionId(), LedgerEntryType.DEBIT, -e.getAmount());
+                    outboxPublisher.publish("account-debited", e.getFromAccount(),
+                            new AccountDebited(e.getTransactionId(), e.getFromAccount(), e.getAmount()));
+                }
+            } else if (event instanceof CreditAccount e) {
+                Account account = accounts.get(e.getAccountNumber());
+                if (account == null) {
+                    log.error("Failed to process credit for account {}: Account not found", e.getAccountNumber());
+                    outboxPublisher.publish("credit-failed", e.getAccountNumber(),
+                            new CreditFailed(e.getTransactionId(), e.getAccountNumber(), e.getAmount()));
+                } else {
+                    account.setBalance(account.getBalance() + e.getAmount());
+                    ledger.record(e.getAccountNumber(), e.getTransactionId(), LedgerEntryType.CREDIT, e.getAmount());
+                    outboxPublisher.publish("account-credited", e.getAccountNumber(),
+                            new AccountCredited(e.getTransactionId(), e.getAccountNumber(), e.getAmount()));
+                }
+            } else if (event instanceof RevertDebit e) {
+                Account account = accounts.get(e.getAccountNumber());
+                if (account == null) {
+                    log.error("Failed to revert debit for account {}: Account not found", e.getAccountNumber());
+                    accountMetrics.revertFailed();
+                } else {
+                    account.setBalance(account.getBalance() + e.getAmount());
+                    ledger.record(e.getAccountNumber(), e.getTransactionId(), LedgerEntryType.REVERT, e.getAmount());
+                    accountMetrics.revertApplied();
+                    outboxPublisher.publish("account-credited", e.getAccountNumber(),
+                            new AccountCredited(e.getTransactionId(), e.getAccountNumber(), e.getAmount()));
+                }
+            } else {
+                log.warn("Ignoring unexpected event in batch: {}", event);
+            }
+        }
+        accountMetrics.timeSave(() -> accountRepository.saveAll(accounts.values()));
+        log.info("Batch of {} events applied", events.size());
+    }
+
+    // Drops events processed before or earlier in the same batch and claims the rest in this transaction
+    private List<Object> firstDeliveries(List<Object> events) {
+        List<String> keys = events.stream().map(AccountService::eventKey).toList();
+        Set<String> processed = idempotencyGuard.alreadyProcessed(keys.stream().filter(Objects::nonNull).toList());
+        Set<String> seen = new HashSet<>(processed);
+        List<Object> fresh = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            String key = keys.get(i);
+            if (key == null) {
+                fresh.add(events.get(i));
+            } else if (seen.add(key)) {
+                idempotencyGuard.markProcessed(key);
+                fresh.add(events.get(i));
+            } else if (processed.contains(key)) {
+                log.warn("Duplicate event {}, resending its outcome", key);
+                republishOutcome(events.get(i));
+            } else {
+                log.warn("Skipping duplicate event {} within the batch", key);
+            }
+        }
+        return fresh;
+    }
+
+    // The first reply may have been lost, so a resent command is answered with the outcome the ledger recorded
+    private void republishOutcome(Object event) {
+        if (event instanceof InitiateTransfer e) {
+            if (ledger.recorded(e.getTransactionId(), LedgerEntryType.DEBIT, e.getFromAccount()).isPresent()) {
+                outboxPublisher.publish("account-debited", e.getFromAccount(),
+                        new AccountDebited(e.getTransactionId(), e.getFromAccount(), e.getAmount()));
+            } else {
+                outboxPublisher.publish("transfer-failed", e.getFromAccount(),
+                        new TransferFailed(e.getTransactionId(), e.getFromAccount(), e.getAmount()));
+            }
+        } else if (event instanceof CreditAccount e) {
+            if (ledger.recorded(e.getTransactionId(), LedgerEntryType.CREDIT, e.getAccountNumber()).isPresent()) {
+                outboxPublisher.publish("account-credited", e.getAccountNumber(),
+                        new AccountCredited(e.getTransactionId(), e.getAccountNumber(), e.getAmount()));
+            } else {
+                outboxPublisher.publish("credit-failed", e.getAccountNumber(),
+                        new CreditFailed(e.getTransactionId(), e.getAccountNumber(), e.getAmount()));
+            }
+        } else if (event instanceof RevertDebit e
+                && ledger.recorded(e.getTransactionId(), LedgerEntryType.REVERT, e.getAccountNumber()).isPresent()) {
+            outboxPublisher.publish("account-credited", e.getAccountNumber(),
+                    new AccountCredited(e.getTransactionId(), e.getAccountNumber(), e.getAmount()));
+        }
+    }
+
+    private static String accountOf(Object event) {
+        if (event instanceof InitiateTransfer e) {
+            return e.getFromAccount();
+        } else if (event instanceof CreditAccount e) {
+            return e.getAccountNumber();
+        } else if (event instanceof RevertDebit e) {
+            return e.getAccountNumber();
+        }
+        return null;
+    }
+
+    private static String eventKey(Object event) {
+        if (event instanceof InitiateTransfer e) {
+            return IdempotencyGuard.key("initiate-transfer", e.getTransactionId());
+        } else if (event instanceof CreditAccount e) {
+            return IdempotencyGuard.key("credit-account", e.getTransactionId());
+        } else if (event instanceof RevertDebit e) {
+            return IdempotencyGuard.key("revert-debit", e.getTransactionId());
+        }
+        return null;
+    }
+
+    private void applyEvent(Object event) {
+        if (event instanceof InitiateTransfer e) {
+            try {
+                debit(e.getTransactionId(), e.getFromAccount(), e.getAmount());
+            } catch (OptimisticLockingFailureException ex) {
+                throw ex;
+            } catch (RuntimeException ex) {
+                log.error("Failed to process debit for account {}: {}", e.getFromAccount(), ex.getMessage());
+                outboxPublisher.publish("transfer-failed", e.getFromAccount(),
+                        new TransferFailed(e.getTransactionId(), e.getFromAccount(), e.getAmount()));
+            }
+        } else if (event instanceof CreditAccount e) {
+            try {
+                credit(e.getTransactionId(), e.getAccountNumber(), e.getAmount());
+            } catch (OptimisticLockingFailureException ex) {
+                throw ex;
+            } catch (RuntimeException ex) {
+                log.error("Failed to process credit for account {}: {}", e.getAccountNumber(), ex.getMessage());
+                outboxPublisher.publish("credit-failed", e.getAccountNumber(),
+                        new CreditFailed(e.getTransactionId(), e.getAccountNumber(), e.getAmount()));
+            }
+        } else if (event instanceof RevertDebit e) {
+            try {
+                credit(e.getTransactionId(), e.getAccountNumber(), e.getAmount(), LedgerEntryType.REVERT);
+                accountMetrics.revertApplied();
+            } catch (OptimisticLockingFailureException ex) {
+                throw ex;
+            } catch (RuntimeException ex) {
+                log.error("Failed to revert debit for account {}: {}", e.getAccountNumber(), ex.getMessage());
+                accountMetrics.revertFailed();
+            }
+        } else {
+            log.warn("Ignoring unexpected event in batch: {}", event);
         }
     }
 }
\ No newline at end of file
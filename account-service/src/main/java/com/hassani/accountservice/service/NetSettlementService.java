@@ -0,0 +1,160 @@
+package com.hassani.accountservice.service;
+
+import com.hassani.accountservice.engine.BalanceEngine;
+import com.hassani.accountservice.entities.Account;
+import com.hassani.accountservice.idempotency.IdempotencyGuard;
+import com.hassani.accountservice.ledger.Ledger;
+import com.hassani.accountservice.ledger.LedgerEntryType;
+import com.hassani.accountservice.metrics.AccountMetrics;
+import com.hassani.accountservice.repository.AccountRepository;
+import com.hassani.accountservice.shard.ShardedAccounts;
+import com.hassani.commonlib.event.NetTransferSettled;
+import com.hassani.commonlib.event.SettleNetTransfer;
+import com.hassani.commonlib.outbox.OutboxPublisher;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Settles a netted group of transfers between two accounts in one local transaction. Every leg is
+ * checked in submission order against the running balances of both accounts, so a group only settles
+ * if each of its transfers would have succeeded on its own; otherwise nothing is applied and
+ * transaction-service runs the legs as separate sagas. Each account is written once, with the net amount,
+ * through the balance engine, its shards or its Account row, whichever holds its balance.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NetSettlementService {
+    private final AccountRepository accountRepository;
+    private final Optional<BalanceEngine> balanceEngine;
+    private final ShardedAccounts shardedAccounts;
+    private final AccountMetrics accountMetrics;
+    private final IdempotencyGuard idempotencyGuard;
+    private final OptimisticRetry optimisticRetry;
+    private final OutboxPublisher outboxPublisher;
+    private final Ledger ledger;
+
+    // Touches two accounts, so it is consumed outside the per-account dispatch lanes and batches
+    @Timed(value = "saga.handler", description = "Saga event handling per listener method")
+    @KafkaListener(topics = "settle-net-transfer", groupId = "account-service",
+            autoStartup = "${spring.kafka.listener.auto-startup:true}")
+    public void handleSettleNetTransfer(SettleNetTransfer event) {
+        log.info("Received settle-net-transfer event: settlementId={}, accounts={}/{}, transfers={}",
+                event.getSettlementId(), event.getAccountA(), event.getAccountB(), event.getTransactionIds().length);
+        idempotencyGuard.runClaimed("settle-net-transfer", event.getSettlementId(),
+                () -> optimisticRetry.run(() -> settle(event)));
+    }
+
+    private void settle(SettleNetTransfer event) {
+        Double netAmount;
+        if (idempotencyGuard.claim("settle-net-transfer", event.getSettlementId())) {
+            netAmount = apply(event);
+        } else {
+            // The settlement is resent until a reply arrives, so the recorded outcome is published again
+            netAmount = ledger.recorded(event.getSettlementId(), LedgerEntryType.NET_SETTLEMENT, event.getAccountB()).orElse(null);
+            log.warn("Duplicate settle-net-transfer event for settlement ID: {}, resending its outcome (net {})",
+                    event.getSettlementId(), netAmount);
+        }
+        outboxPublisher.publish("net-transfer-settled", event.getAccountA(), new NetTransferSettled(
+                event.getSettlementId(), event.getAccountA(), event.getAccountB(), netAmount, netAmount != null));
+    }
+
+    // Returns the amount moved from accountA to accountB, or null when the legs have to run one by one
+    private Double apply(SettleNetTransfer event) {
+        String accountNumberA = event.getAccountA();
+        String accountNumberB = event.getAccountB();
+        Map<String, Account> accounts = new HashMap<>();
+        for (Account account : accountMetrics.timeLookup(() ->
+                accountRepository.findByAccountNumberIn(List.of(accountNumberA, accountNumberB)))) {
+            accounts.put(account.getAccountNumber(), account);
+        }
+        Account accountA = accounts.get(accountNumberA);
+        Account accountB = accounts.get(accountNumberB);
+        if (accountA == null || accountB == null || accountA == accountB) {
+            log.info("Settlement ID: {} runs as separate sagas, account {} or {} not found",
+                    event.getSettlementId(), accountNumberA, accountNumberB);
+            return null;
+        }
+
+        double balanceA = balanceOf(accountA);
+        double balanceB = balanceOf(accountB);
+        double netAmount = 0;
+        for (int i = 0; i < event.getAmounts().length; i++) {
+            double amount = event.getAmounts()[i];
+            if (amount > 0 ? balanceA < amount : balanceB < -amount) {
+                log.info("Settlement ID: {} runs as separate sagas, transaction ID: {} would overdraw its source account",
+                        event.getSettlementId(), event.getTransactionIds()[i]);
+                return null;
+            }
+            balanceA -= amount;
+            balanceB += amount;
+            netAmount += amount;
+        }
+
+        // The paying side goes first, so a balance that moved since the check fails before anything is written
+        Long journalSeqA = null;
+        Long journalSeqB = null;
+        if (netAmount > 0) {
+            journalSeqA = debit(accountA, netAmount);
+            journalSeqB = credit(accountB, netAmount);
+        } else if (netAmount < 0) {
+            journalSeqB = debit(accountB, -netAmount);
+            journalSeqA = credit(accountA, -netAmount);
+        }
+        ledger.record(accountNumberA, event.getSettlementId(), LedgerEntryType.NET_SETTLEMENT, -netAmount, journalSeqA);
+        ledger.record(accountNumberB, event.getSettlementId(), LedgerEntryType.NET_SETTLEMENT, netAmount, journalSeqB);
+        log.info("Settled {} transfers between {} and {} with a net movement of {}",
+                event.getAmounts().length, accountNumberA, accountNumberB, netAmount);
+        return netAmount;
+    }
+
+    private double balanceOf(Account account) {
+        String accountNumber = account.getAccountNumber();
+        if (balanceEngine.isPresent()) {
+            return balanceEngine.get().balanceOf(accountNumber);
+        }
+        return shardedAccounts.isSharded(accountNumber)
+                ? account.getBalance() + shardedAccounts.shardBalance(accountNumber)
+                : account.getBalance();
+    }
+
+    // Returns the balance journal seq of the change when the balance engine made it
+    private Long debit(Account account, double amount) {
+        String accountNumber = account.getAccountNumber();
+        if (balanceEngine.isPresent()) {
+            return balanceEngine.get().debit(accountNumber, amount);
+        }
+        if (shardedAccounts.isSharded(accountNumber)) {
+            if (!shardedAccounts.tryDebit(accountNumber, amount)) {
+                log.error("Insufficient balance in sharded account {}: required={}", accountNumber, amount);
+                throw new RuntimeException("Insufficient balance in account: " + accountNumber);
+            }
+            return null;
+        }
+        account.setBalance(account.getBalance() - amount);
+        accountMetrics.timeSave(() -> accountRepository.save(account));
+        return null;
+    }
+
+    private Long credit(Account account, double amount) {
+        String accountNumber = account.getAccountNumber();
+        if (balanceEngine.isPresent()) {
+            return balanceEngine.get().credit(accountNumber, amount);
+        }
+        if (shardedAccounts.isSharded(accountNumber)) {
+            shardedAccounts.credit(accountNumber, amount);
+            return null;
+        }
+        account.setBalance(account.getBalance() + amount);
+        accountMetrics.timeSave(() -> accountRepository.save(account));
+        return null;
+    }
+}
@@ -0,0 +1,66 @@
+package com.hassani.accountservice.service;
+
+import com.hassani.accountservice.metrics.AccountMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs work in its own transaction and starts over when the commit loses an optimistic version check,
+ * up to max-attempts times with a short randomized backoff.
+ */
+@Slf4j
+@Component
+public class OptimisticRetry {
+    private final TransactionTemplate transactionTemplate;
+    private final AccountMetrics accountMetrics;
+    private final int maxAttempts;
+    private final long backoffMs;
+
+    public OptimisticRetry(PlatformTransactionManager transactionManager,
+                           AccountMetrics accountMetrics,
+                           @Value("${saga.accounts.optimistic-retry.max-attempts:5}") int maxAttempts,
+                           @Value("${saga.accounts.optimistic-retry.backoff-ms:5}") long backoffMs) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.accountMetrics = accountMetrics;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+    }
+
+    public void run(Runnable work) {
+        // Inside a caller's transaction the conflict only shows on the caller's commit, so the caller retries
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            work.run();
+            return;
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> work.run());
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    log.error("Giving up after {} optimistic lock conflicts: {}", attempt, e.getMessage());
+                    throw e;
+                }
+                accountMetrics.optimisticRetry();
+                log.debug("Optimistic lock conflict on attempt {}, retrying: {}", attempt, e.getMessage());
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMs * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying", e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.hassani.accountservice.shard;
+
+import com.hassani.accountservice.engine.BalanceEngine;
+import com.hassani.accountservice.entities.Account;
+import com.hassani.accountservice.entities.AccountShard;
+import com.hassani.accountservice.repository.AccountRepository;
+import com.hassani.accountservice.repository.AccountShardRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Opt-in sharding for hot accounts. The balance of each account listed in saga.accounts.sharded is
+ * moved into shard-count AccountShard rows: credits add to a random shard, debits take from a random
+ * shard and fall back to locking all shards, checking the total and spreading the remainder evenly.
+ * The Account row keeps a zero balance, so the logical balance is its balance plus the shard sum.
+ */
+@Slf4j
+@Component
+public class ShardedAccounts {
+    private final AccountRepository accountRepository;
+    private final AccountShardRepository shardRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final List<String> configured;
+    private final int shardCount;
+    // Shards per active account, taken from the table so a changed shard-count only affects new accounts
+    private final Map<String, Integer> active = new ConcurrentHashMap<>();
+
+    public ShardedAccounts(AccountRepository accountRepository,
+                           AccountShardRepository shardRepository,
+                           PlatformTransactionManager transactionManager,
+                           Optional<BalanceEngine> balanceEngine,
+                           @Value("${saga.accounts.sharded:}") List<String> configured,
+                           @Value("${saga.accounts.shard-count:8}") int shardCount) {
+        this.accountRepository = accountRepository;
+        this.shardRepository = shardRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardCount = shardCount;
+        if (balanceEngine.isPresent() && !configured.isEmpty()) {
+            log.warn("Ignoring saga.accounts.sharded, balances are held by the in-memory balance engine");
+            this.configured = List.of();
+        } else {
+            this.configured = configured;
+        }
+    }
+
+    // Runs after the seed data is in place; until then the listed accounts use their Account row
+    @EventListener(ApplicationReadyEvent.class)
+    public void shardConfiguredAccounts() {
+        for (String accountNumber : configured) {
+            Integer shards = transactionTemplate.execute(status -> shard(accountNumber));
+            if (shards != null) {
+                active.put(accountNumber, shards);
+            }
+        }
+    }
+
+    public boolean isSharded(String accountNumber) {
+        return accountNumber != null && active.containsKey(accountNumber);
+    }
+
+    public void credit(String accountNumber, double amount) {
+        int shard = ThreadLocalRandom.current().nextInt(active.get(accountNumber));
+        if (shardRepository.deposit(accountNumber, shard, amount) == 0) {
+            throw new IllegalStateException("Missing shard " + shard + " of account " + accountNumber);
+        }
+    }
+
+    /**
+     * Returns false when the shards together hold less than the amount.
+     */
+    public boolean tryDebit(String accountNumber, double amount) {
+        int shard = ThreadLocalRandom.current().nextInt(active.get(accountNumber));
+        if (shardRepository.withdraw(accountNumber, shard, amount) == 1) {
+            return true;
+        }
+
+        // No single shard covers it: lock them all and rebalance what is left
+        List<AccountShard> shards = shardRepository.findByAccountNumberOrderByShardIndex(accountNumber);
+        double total = shards.stream().mapToDouble(AccountShard::getBalance).sum();
+        if (total < amount) {
+            return false;
+        }
+        spread(shards, total - amount);
+        shardRepository.saveAll(shards);
+        log.debug("Rebalanced {} shards of account {} after a debit of {}", shards.size(), accountNumber, amount);
+        return true;
+    }
+
+    public double shardBalance(String accountNumber) {
+        return shardRepository.sumBalance(accountNumber);
+    }
+
+    private Integer shard(String accountNumber) {
+        Optional<Account> found = accountRepository.findByAccountNumber(accountNumber);
+        if (found.isEmpty()) {
+            log.warn("Cannot shard unknown account {}", accountNumber);
+            return null;
+        }
+        long existing = shardRepository.countByAccountNumber(accountNumber);
+        if (existing > 0) {
+            return (int) existing;
+        }
+        Account account = found.get();
+        List<AccountShard> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new AccountShard(null, accountNumber, i, 0.0));
+        }
+        spread(shards, account.getBalance());
+        shardRepository.saveAll(shards);
+        // Bumps the version, so a concurrent row update retries and then sees the shards
+        account.setBalance(0.0);
+        accountRepository.save(account);
+        log.info("Moved balance of account {} into {} shards", accountNumber, shardCount);
+        return shardCount;
+    }
+
+    // Even split in whole cents, the last shard takes the rounding remainder
+    private static void spread(List<AccountShard> shards, double amount) {
+        double share = Math.floor(amount / shards.size() * 100) / 100;
+        double assigned = 0;
+        for (int i = 0; i < shards.size() - 1; i++) {
+            shards.get(i).setBalance(share);
+            assigned += share;
+        }
+        shards.get(shards.size() - 1).setBalance(amount - assigned);
+    }
+}
@@ -1,11 +1,17 @@
 package com.hassani.accountservice.web;
 
+import com.hassani.accountservice.model.BalanceResponse;
 import com.hassani.accountservice.model.CreditRequest;
 import com.hassani.accountservice.model.DebitRequest;
+import com.hassani.accountservice.model.OpenAccountRequest;
 import com.hassani.accountservice.service.AccountService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
 
 @RestController
 @RequestMapping("/accounts")
@@ -13,6 +19,38 @@ import org.springframework.web.bind.annotation.*;
 public class AccountController {
     private final AccountService accountService;
 
+    @PostMapping
+    public ResponseEntity<BalanceResponse> openAccount(@RequestBody OpenAccountRequest request) {
+        if (request.getAccountNumber() == null || request.getAccountNumber().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "accountNumber is required");
+        }
+        double initialBalance = request.getInitialBalance() == null ? 0.0 : request.getInitialBalance();
+        if (!accountService.openAccount(request.getAccountNumber(), initialBalance)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.created(URI.create("/accounts/" + request.getAccountNumber() + "/balance"))
+                .body(new BalanceResponse(request.getAccountNumber(), initialBalance));
+    }
+
+    // 409 while the account still holds money
+    @DeleteMapping("/{accountNumber}")
+    public ResponseEntity<Void> closeAccount(@PathVariable String accountNumber) {
+        try {
+            return accountService.closeAccount(accountNumber)
+                    ? ResponseEntity.noContent().build()
+                    : ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @GetMapping("/{accountNumber}/balance")
+    public ResponseEntity<BalanceResponse> getBalance(@PathVariable String accountNumber) {
+        return accountService.balanceOf(accountNumber)
+                .map(balance -> ResponseEntity.ok(new BalanceResponse(accountNumber, balance)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @PostMapping("/debit")
     public ResponseEntity<String> debitAccount(@RequestBody DebitRequest request) {
         accountService.debit(request.getAccountNumber(), request.getAmount());
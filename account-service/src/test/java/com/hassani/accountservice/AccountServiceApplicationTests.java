@@ -3,7 +3,8 @@ package com.hassani.accountservice;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {"spring.kafka.admin.auto-create=false", "spring.datasource.url=jdbc:h2:mem:accountdb",
+        "saga.outbox.relay.enabled=false"})
 class AccountServiceApplicationTests {
 
     @Test
@@ -0,0 +1,164 @@
+package com.hassani.accountservice.engine;
+
+import com.hassani.accountservice.entities.Account;
+import com.hassani.accountservice.ledger.LedgerEntryRepository;
+import com.hassani.accountservice.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BalanceEngineTest {
+    @TempDir
+    Path journalDirectory;
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final LedgerEntryRepository ledgerEntryRepository = mock(LedgerEntryRepository.class);
+    private final Account source = new Account(1L, "1001", 500.0, null, true, 0L);
+    private final Account target = new Account(2L, "7812", 0.0, null, true, 0L);
+    // Journal seqs whose ledger row committed, as the ledger would answer after a restart
+    private final Set<Long> committedLedgerRows = new HashSet<>();
+    // Journal seq returned by the last debit or credit
+    private long lastSeq;
+
+    BalanceEngineTest() {
+        when(accountRepository.findByAccountNumber("1001")).thenReturn(Optional.of(source));
+        when(accountRepository.findByAccountNumber("7812")).thenReturn(Optional.of(target));
+        when(accountRepository.findByAccountNumberIn(anyCollection())).thenReturn(List.of(source, target));
+        when(ledgerEntryRepository.findJournalSeqsIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> seqs = invocation.getArgument(0);
+            return seqs.stream().filter(committedLedgerRows::contains).toList();
+        });
+    }
+
+    @AfterEach
+    void clearTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void recoverySkipsADebitWhoseTransactionNeverCommitted() {
+        BalanceEngine engine = startEngine();
+        inTransaction(() -> engine.debit("1001", 100.0));
+        // The service dies here, before the commit, so the ledger row never exists
+
+        BalanceEngine restarted = startEngine();
+
+        verify(accountRepository, never()).applyBalanceDelta(anyString(), anyDouble(), anyLong());
+        assertThat(restarted.balanceOf("1001")).isEqualTo(500.0);
+    }
+
+    @Test
+    void recoveryReplaysACommittedDebitThatWasNotFlushed() {
+        BalanceEngine engine = startEngine();
+        List<TransactionSynchronization> transaction = inTransaction(() -> engine.debit("1001", 100.0));
+        long seq = lastSeq;
+        committedLedgerRows.add(seq);
+        complete(transaction, TransactionSynchronization.STATUS_COMMITTED);
+
+        startEngine();
+
+        verify(accountRepository).applyBalanceDelta("1001", -100.0, seq);
+    }
+
+    @Test
+    void rolledBackDebitIsHandedBackAndNeverWrittenBehind() {
+        BalanceEngine engine = startEngine();
+        complete(inTransaction(() -> engine.debit("1001", 100.0)), TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        engine.flush();
+        startEngine();
+
+        assertThat(engine.balanceOf("1001")).isEqualTo(500.0);
+        verify(accountRepository, never()).applyBalanceDelta(anyString(), anyDouble(), anyLong());
+    }
+
+    @Test
+    void creditIsOnlySpendableOnceItsTransactionCommitted() {
+        BalanceEngine engine = startEngine();
+        List<TransactionSynchronization> transaction = inTransaction(() -> engine.credit("7812", 50.0));
+
+        assertThat(engine.balanceOf("7812")).isEqualTo(0.0);
+        complete(transaction, TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(engine.balanceOf("7812")).isEqualTo(50.0);
+    }
+
+    @Test
+    void flushWritesNothingOfAnAccountPastItsOldestOpenTransaction() {
+        BalanceEngine engine = startEngine();
+        List<TransactionSynchronization> open = inTransaction(() -> engine.credit("7812", 50.0));
+        complete(inTransaction(() -> engine.credit("7812", 20.0)), TransactionSynchronization.STATUS_COMMITTED);
+        long laterSeq = lastSeq;
+        complete(inTransaction(() -> engine.debit("1001", 100.0)), TransactionSynchronization.STATUS_COMMITTED);
+        long debitSeq = lastSeq;
+
+        engine.flush();
+
+        verify(accountRepository).applyBalanceDelta("1001", -100.0, debitSeq);
+        verify(accountRepository, never()).applyBalanceDelta(eq("7812"), anyDouble(), anyLong());
+
+        complete(open, TransactionSynchronization.STATUS_COMMITTED);
+        engine.flush();
+
+        verify(accountRepository).applyBalanceDelta("7812", 70.0, laterSeq);
+    }
+
+    @Test
+    void recoveryReplaysATransactionThatCommittedAfterTheFlushOfAnotherAccount() {
+        BalanceEngine engine = startEngine();
+        List<TransactionSynchronization> open = inTransaction(() -> engine.credit("7812", 50.0));
+        long creditSeq = lastSeq;
+        complete(inTransaction(() -> engine.debit("1001", 100.0)), TransactionSynchronization.STATUS_COMMITTED);
+        long debitSeq = lastSeq;
+        committedLedgerRows.add(debitSeq);
+
+        engine.flush();
+        source.setJournalSeq(debitSeq);
+        source.setBalance(400.0);
+        committedLedgerRows.add(creditSeq);
+        complete(open, TransactionSynchronization.STATUS_COMMITTED);
+        // The service dies before the next flush
+
+        startEngine();
+
+        verify(accountRepository).applyBalanceDelta("1001", -100.0, debitSeq);
+        verify(accountRepository).applyBalanceDelta("7812", 50.0, creditSeq);
+        verify(accountRepository, times(2)).applyBalanceDelta(anyString(), anyDouble(), anyLong());
+    }
+
+    private BalanceEngine startEngine() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        BalanceEngine engine = new BalanceEngine(accountRepository, ledgerEntryRepository,
+                new TransactionTemplate(transactionManager), journalDirectory.toString(), 4);
+        engine.recover();
+        return engine;
+    }
+
+    // Runs the call as the body of a transaction that has not completed yet
+    private List<TransactionSynchronization> inTransaction(LongSupplier call) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            lastSeq = call.getAsLong();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private void complete(List<TransactionSynchronization> transaction, int status) {
+        transaction.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
@@ -0,0 +1,47 @@
+package com.hassani.accountservice.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DedupCacheTest {
+
+    @Test
+    void dropsTheEldestKeyWhenFull() {
+        DedupCache cache = new DedupCache(2, TimeUnit.MINUTES.toNanos(1));
+
+        cache.add("a");
+        cache.add("b");
+        cache.add("c");
+
+        assertThat(cache.contains("a")).isFalse();
+        assertThat(cache.contains("b")).isTrue();
+        assertThat(cache.contains("c")).isTrue();
+    }
+
+    @Test
+    void addingAKeyAgainMakesItTheYoungest() {
+        DedupCache cache = new DedupCache(2, TimeUnit.MINUTES.toNanos(1));
+
+        cache.add("a");
+        cache.add("b");
+        cache.add("a");
+        cache.add("c");
+
+        assertThat(cache.contains("a")).isTrue();
+        assertThat(cache.contains("b")).isFalse();
+    }
+
+    @Test
+    void forgetsKeysOlderThanTheTimeToLive() throws InterruptedException {
+        DedupCache cache = new DedupCache(100, TimeUnit.MILLISECONDS.toNanos(50));
+        cache.add("a");
+        assertThat(cache.contains("a")).isTrue();
+
+        Thread.sleep(100);
+
+        assertThat(cache.contains("a")).isFalse();
+    }
+}
@@ -0,0 +1,81 @@
+package com.hassani.accountservice.idempotency;
+
+import com.hassani.accountservice.service.AccountService;
+import com.hassani.commonlib.event.CreditAccount;
+import com.hassani.commonlib.event.InitiateTransfer;
+import com.hassani.commonlib.outbox.OutboxEvent;
+import com.hassani.commonlib.outbox.OutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A cache of one key, so the second event pushes the first out and its redelivery has to hit PROCESSED_EVENT
+@SpringBootTest(properties = {"spring.kafka.admin.auto-create=false", "spring.datasource.url=jdbc:h2:mem:idempotencydb",
+        "saga.outbox.relay.enabled=false", "spring.kafka.listener.auto-startup=false",
+        "saga.idempotency.cache-size=1"})
+class IdempotencyGuardTest {
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private ProcessedEventRepository processedEventRepository;
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @BeforeEach
+    void clearOutbox() {
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void aRedeliveryTheCacheStillHoldsIsDroppedAndAnswered() {
+        accountService.openAccount("I-1", 0.0);
+
+        accountService.handleCreditAccount(new CreditAccount(2001L, "I-1", 25.0));
+        accountService.handleCreditAccount(new CreditAccount(2001L, "I-1", 25.0));
+
+        assertThat(accountService.balanceOf("I-1")).contains(25.0);
+        assertThat(processedEventRepository.existsById("credit-account:2001")).isTrue();
+        assertThat(outbox()).containsExactly("account-credited:I-1", "account-credited:I-1");
+    }
+
+    @Test
+    void aRedeliveryTheCacheForgotIsCaughtByTheProcessedEventRow() {
+        accountService.openAccount("I-2", 100.0);
+
+        accountService.handleInitiateTransfer(new InitiateTransfer(2002L, "I-2", "I-3", 40.0));
+        // Evicts initiate-transfer:2002 from the cache of one
+        accountService.handleCreditAccount(new CreditAccount(2003L, "I-2", 1.0));
+        accountService.handleInitiateTransfer(new InitiateTransfer(2002L, "I-2", "I-3", 40.0));
+
+        // The second debit rolled back on the key violation and was answered from the ledger
+        assertThat(accountService.balanceOf("I-2")).contains(61.0);
+        assertThat(outbox()).containsExactly("account-debited:I-2", "account-credited:I-2", "account-debited:I-2");
+    }
+
+    @Test
+    void aRedeliveredFailureIsAnsweredWithTheFailure() {
+        accountService.openAccount("I-4", 5.0);
+
+        accountService.handleInitiateTransfer(new InitiateTransfer(2004L, "I-4", "I-5", 50.0));
+        accountService.handleCreditAccount(new CreditAccount(2005L, "I-4", 1.0));
+        accountService.handleInitiateTransfer(new InitiateTransfer(2004L, "I-4", "I-5", 50.0));
+
+        assertThat(accountService.balanceOf("I-4")).contains(6.0);
+        assertThat(outbox()).containsExactly("transfer-failed:I-4", "account-credited:I-4", "transfer-failed:I-4");
+    }
+
+    // topic:key of every queued reply, in the order it was queued
+    private List<String> outbox() {
+        return outboxRepository.findAll().stream()
+                .sorted(Comparator.comparing(OutboxEvent::getId))
+                .filter(event -> !event.getTopic().equals("account-directory"))
+                .map(event -> event.getTopic() + ":" + event.getMessageKey())
+                .toList();
+    }
+}
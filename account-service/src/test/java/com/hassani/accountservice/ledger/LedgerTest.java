@@ -0,0 +1,100 @@
+package com.hassani.accountservice.ledger;
+
+import com.hassani.accountservice.entities.Account;
+import com.hassani.accountservice.repository.AccountRepository;
+import com.hassani.accountservice.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"spring.kafka.admin.auto-create=false", "spring.datasource.url=jdbc:h2:mem:ledgerdb",
+        "saga.outbox.relay.enabled=false", "spring.kafka.listener.auto-startup=false",
+        "saga.ledger.snapshot-lag=0s", "saga.ledger.snapshot-interval-ms=3600000"})
+class LedgerTest {
+    @Autowired
+    private Ledger ledger;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private BalanceSnapshotRepository snapshotRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void snapshotFoldsTheEntriesOfEachAccount() {
+        accountService.openAccount("L-1", 100.0);
+        accountService.credit("L-1", 25.0);
+        accountService.debit("L-1", 40.0);
+
+        ledger.snapshot();
+
+        BalanceSnapshot snapshot = snapshotRepository.findById("L-1").orElseThrow();
+        assertThat(snapshot.getBalance()).isEqualTo(85.0);
+        assertThat(snapshot.getOpened()).isTrue();
+    }
+
+    @Test
+    void snapshotStopsBelowAnEntryWhoseTransactionIsStillOpen() throws Exception {
+        accountService.openAccount("L-2", 10.0);
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> open = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    accountService.credit(9001L, "L-2", 50.0);
+                    recorded.countDown();
+                    await(release);
+                }));
+        assertThat(recorded.await(10, TimeUnit.SECONDS)).isTrue();
+
+        ledger.snapshot();
+        assertThat(snapshotRepository.findById("L-2").orElseThrow().getBalance()).isEqualTo(10.0);
+
+        release.countDown();
+        open.get(10, TimeUnit.SECONDS);
+        ledger.snapshot();
+        assertThat(snapshotRepository.findById("L-2").orElseThrow().getBalance()).isEqualTo(60.0);
+    }
+
+    @Test
+    void restoreRewritesABalanceFromTheSnapshotAndTheNewerEntries() {
+        accountService.openAccount("L-3", 80.0);
+        accountService.credit("L-3", 20.0);
+        ledger.snapshot();
+        accountService.credit("L-3", 5.0);
+        Account account = accountRepository.findByAccountNumber("L-3").orElseThrow();
+        account.setBalance(1.0);
+        accountRepository.save(account);
+
+        ledger.restore();
+
+        assertThat(accountService.balanceOf("L-3")).contains(105.0);
+    }
+
+    @Test
+    void restoreKeepsTheBalanceOfAnAccountOpenedBeforeTheLedger() {
+        accountRepository.save(new Account(null, "L-4", 300.0, null, true, null));
+        accountService.credit("L-4", 10.0);
+
+        ledger.restore();
+
+        assertThat(accountService.balanceOf("L-4")).contains(310.0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
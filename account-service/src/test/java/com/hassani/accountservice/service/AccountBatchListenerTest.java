@@ -0,0 +1,112 @@
+package com.hassani.accountservice.service;
+
+import com.hassani.commonlib.event.CreditAccount;
+import com.hassani.commonlib.event.InitiateTransfer;
+import com.hassani.commonlib.event.RevertDebit;
+import com.hassani.commonlib.outbox.OutboxEvent;
+import com.hassani.commonlib.outbox.OutboxRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"spring.kafka.admin.auto-create=false", "spring.datasource.url=jdbc:h2:mem:batchdb",
+        "saga.outbox.relay.enabled=false", "spring.kafka.listener.auto-startup=false",
+        "saga.kafka.dispatch-mode=batch"})
+class AccountBatchListenerTest {
+    private static final AtomicLong IDS = new AtomicLong(1_000);
+
+    @Autowired
+    private AccountBatchListener listener;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @BeforeEach
+    void clearOutbox() {
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void appliesTheBatchInArrivalOrder() {
+        accountService.openAccount("B-1", 100.0);
+        accountService.openAccount("B-2", 0.0);
+        long first = IDS.incrementAndGet();
+        long second = IDS.incrementAndGet();
+        long third = IDS.incrementAndGet();
+
+        // The second debit only fails because the first one came before it
+        listener.onBatch(records(
+                new InitiateTransfer(first, "B-1", "B-2", 70.0),
+                new InitiateTransfer(second, "B-1", "B-2", 50.0),
+                new CreditAccount(third, "B-1", 20.0)));
+
+        assertThat(accountService.balanceOf("B-1")).contains(50.0);
+        assertThat(outbox()).containsExactly(
+                "account-debited:B-1:" + first,
+                "transfer-failed:B-1:" + second,
+                "account-credited:B-1:" + third);
+    }
+
+    @Test
+    void aFailedEventDoesNotRollBackTheRestOfTheBatch() {
+        accountService.openAccount("B-3", 10.0);
+        long credit = IDS.incrementAndGet();
+        long unknown = IDS.incrementAndGet();
+        long revert = IDS.incrementAndGet();
+
+        listener.onBatch(records(
+                new CreditAccount(credit, "B-3", 5.0),
+                new CreditAccount(unknown, "NO-SUCH-ACCOUNT", 5.0),
+                new RevertDebit(revert, "B-3", 1.0)));
+
+        assertThat(accountService.balanceOf("B-3")).contains(16.0);
+        assertThat(outbox()).containsExactly(
+                "account-credited:B-3:" + credit,
+                "credit-failed:NO-SUCH-ACCOUNT:" + unknown,
+                "account-credited:B-3:" + revert);
+    }
+
+    @Test
+    void redeliveriesAreAppliedOnceAndAnsweredAgain() {
+        accountService.openAccount("B-4", 0.0);
+        long credit = IDS.incrementAndGet();
+
+        // A copy in the same poll is dropped silently
+        listener.onBatch(records(new CreditAccount(credit, "B-4", 30.0), new CreditAccount(credit, "B-4", 30.0)));
+        assertThat(outbox()).containsExactly("account-credited:B-4:" + credit);
+
+        // A copy in a later poll is answered with the recorded outcome, without crediting again
+        listener.onBatch(records(new CreditAccount(credit, "B-4", 30.0)));
+        assertThat(accountService.balanceOf("B-4")).contains(30.0);
+        assertThat(outbox()).containsExactly("account-credited:B-4:" + credit, "account-credited:B-4:" + credit);
+    }
+
+    private static List<ConsumerRecord<String, Object>> records(Object... events) {
+        return IntStream.range(0, events.length)
+                .mapToObj(i -> new ConsumerRecord<String, Object>("account-events", 0, i, null, events[i]))
+                .toList();
+    }
+
+    // topic:key:transactionId of every queued event, in the order it was queued
+    private List<String> outbox() {
+        return outboxRepository.findAll().stream()
+                .sorted(Comparator.comparing(OutboxEvent::getId))
+                .filter(event -> !event.getTopic().equals("account-directory"))
+                .map(event -> event.getTopic() + ":" + event.getMessageKey() + ":" + transactionId(event))
+                .toList();
+    }
+
+    private static String transactionId(OutboxEvent event) {
+        return event.getPayload().replaceAll(".*\"transactionId\":(\\d+).*", "$1");
+    }
+}
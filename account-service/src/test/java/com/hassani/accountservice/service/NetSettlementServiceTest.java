@@ -0,0 +1,60 @@
+package com.hassani.accountservice.service;
+
+import com.hassani.accountservice.ledger.LedgerEntry;
+import com.hassani.accountservice.ledger.LedgerEntryRepository;
+import com.hassani.accountservice.ledger.LedgerEntryType;
+import com.hassani.commonlib.event.SettleNetTransfer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Balances are held by the balance engine, so the net movement has to go through it and its journal
+@SpringBootTest(properties = {"spring.kafka.admin.auto-create=false", "spring.datasource.url=jdbc:h2:mem:nettingdb",
+        "saga.outbox.relay.enabled=false", "spring.kafka.listener.auto-startup=false",
+        "saga.balance-engine.enabled=true", "saga.balance-engine.journal-dir=target/netting-journal"})
+class NetSettlementServiceTest {
+    @Autowired
+    private NetSettlementService netSettlementService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private LedgerEntryRepository entryRepository;
+
+    @Test
+    void settlesTheNetMovementThroughTheBalanceEngine() {
+        accountService.openAccount("N-1", 100.0);
+        accountService.openAccount("N-2", 50.0);
+
+        // 100/50 -> 40/110 -> 70/80 -> 30/120
+        netSettlementService.handleSettleNetTransfer(new SettleNetTransfer(5001L, "N-1", "N-2",
+                new long[]{5002, 5003, 5004}, new double[]{60.0, -30.0, 40.0}));
+
+        assertThat(accountService.balanceOf("N-1")).contains(30.0);
+        assertThat(accountService.balanceOf("N-2")).contains(120.0);
+        LedgerEntry debit = entry(5001L, "N-1");
+        assertThat(debit.getDelta()).isEqualTo(-70.0);
+        assertThat(debit.getJournalSeq()).isNotNull();
+        assertThat(entry(5001L, "N-2").getJournalSeq()).isNotNull();
+    }
+
+    @Test
+    void leavesBothAccountsAloneWhenALegWouldOverdraw() {
+        accountService.openAccount("N-3", 10.0);
+        accountService.openAccount("N-4", 0.0);
+
+        netSettlementService.handleSettleNetTransfer(new SettleNetTransfer(5101L, "N-3", "N-4",
+                new long[]{5102, 5103}, new double[]{5.0, 10.0}));
+
+        assertThat(accountService.balanceOf("N-3")).contains(10.0);
+        assertThat(accountService.balanceOf("N-4")).contains(0.0);
+        assertThat(entryRepository.findFirstByTransactionIdAndTypeAndAccountNumber(5101L,
+                LedgerEntryType.NET_SETTLEMENT, "N-4")).isEmpty();
+    }
+
+    private LedgerEntry entry(Long settlementId, String accountNumber) {
+        return entryRepository.findFirstByTransactionIdAndTypeAndAccountNumber(settlementId,
+                LedgerEntryType.NET_SETTLEMENT, accountNumber).orElseThrow();
+    }
+}
@@ -0,0 +1,87 @@
+package com.hassani.accountservice.service;
+
+import com.hassani.accountservice.metrics.AccountMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OptimisticRetryTest {
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final AccountMetrics accountMetrics = mock(AccountMetrics.class);
+    private final OptimisticRetry retry = new OptimisticRetry(transactionManager, accountMetrics, 3, 1);
+
+    OptimisticRetryTest() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+    }
+
+    @AfterEach
+    void clearTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void startsOverInANewTransactionAfterAConflict() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        retry.run(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("row changed");
+            }
+        });
+
+        assertThat(attempts).hasValue(3);
+        verify(transactionManager, times(3)).getTransaction(any());
+        verify(transactionManager).commit(any());
+        verify(accountMetrics, times(2)).optimisticRetry();
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retry.run(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("row changed");
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(attempts).hasValue(3);
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void otherFailuresAreNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retry.run(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("account not found");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(attempts).hasValue(1);
+        verifyNoInteractions(accountMetrics);
+    }
+
+    @Test
+    void leavesTheRetryToTheCallersTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retry.run(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("row changed");
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(attempts).hasValue(1);
+        verifyNoInteractions(transactionManager);
+    }
+}
@@ -0,0 +1,158 @@
+package com.hassani.accountservice.shard;
+
+import com.hassani.accountservice.entities.AccountShard;
+import com.hassani.accountservice.repository.AccountRepository;
+import com.hassani.accountservice.repository.AccountShardRepository;
+import com.hassani.accountservice.service.AccountService;
+import com.hassani.accountservice.service.NetSettlementService;
+import com.hassani.commonlib.event.InitiateTransfer;
+import com.hassani.commonlib.event.SettleNetTransfer;
+import com.hassani.commonlib.outbox.OutboxRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// The seed account 1001 opens with 500.00 and is spread over four shards once the application is ready.
+// Eight writers of one row lose many more version checks than the default five attempts allow for
+@SpringBootTest(properties = {"spring.kafka.admin.auto-create=false", "spring.datasource.url=jdbc:h2:mem:sharddb",
+        "saga.outbox.relay.enabled=false", "spring.kafka.listener.auto-startup=false",
+        "saga.accounts.sharded=1001", "saga.accounts.shard-count=4",
+        "saga.accounts.optimistic-retry.max-attempts=100"})
+class ShardedAccountsTest {
+    private static final int THREADS = 8;
+    private static final int CREDITS_PER_THREAD = 25;
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private ShardedAccounts shardedAccounts;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountShardRepository shardRepository;
+    @Autowired
+    private OutboxRepository outboxRepository;
+    @Autowired
+    private NetSettlementService netSettlementService;
+
+    @Test
+    void movesTheBalanceIntoTheShards() {
+        assertThat(shardedAccounts.isSharded("1001")).isTrue();
+        assertThat(shardedAccounts.isSharded("7812")).isFalse();
+        assertThat(accountRepository.findByAccountNumber("1001").orElseThrow().getBalance()).isZero();
+        assertThat(shardRepository.countByAccountNumber("1001")).isEqualTo(4);
+    }
+
+    @Test
+    void creditsAndDebitsChangeTheLogicalBalance() {
+        double before = balance("1001");
+
+        accountService.credit("1001", 10.0);
+        accountService.debit("1001", 4.0);
+
+        assertThat(balance("1001")).isCloseTo(before + 6.0, within(0.001));
+    }
+
+    @Test
+    void aDebitNoSingleShardCoversRebalancesAllShards() {
+        double before = balance("1001");
+        double largestShard = shards("1001").stream().mapToDouble(AccountShard::getBalance).max().orElseThrow();
+
+        // More than any one shard holds, less than all of them together
+        double amount = Math.min(before, largestShard + 1.0);
+        accountService.debit("1001", amount);
+
+        assertThat(balance("1001")).isCloseTo(before - amount, within(0.001));
+        double share = (before - amount) / 4;
+        assertThat(shards("1001")).allSatisfy(shard -> assertThat(shard.getBalance()).isCloseTo(share, within(0.01)));
+    }
+
+    @Test
+    void aDebitBeyondTheShardTotalFailsTheTransfer() {
+        double before = balance("1001");
+
+        accountService.handleInitiateTransfer(new InitiateTransfer(3001L, "1001", "7812", before + 1.0));
+
+        assertThat(balance("1001")).isCloseTo(before, within(0.001));
+        assertThat(outboxRepository.findAll())
+                .filteredOn(event -> event.getPayload().contains("\"transactionId\":3001"))
+                .singleElement()
+                .satisfies(event -> assertThat(event.getTopic()).isEqualTo("transfer-failed"));
+    }
+
+    @Test
+    void concurrentCreditsOfAShardedAccountAreAllApplied() throws Exception {
+        double before = balance("1001");
+
+        runConcurrently(() -> accountService.credit("1001", 1.0));
+
+        assertThat(balance("1001")).isCloseTo(before + THREADS * CREDITS_PER_THREAD, within(0.001));
+    }
+
+    @Test
+    void concurrentCreditsOfOneAccountRowAreRetriedOnVersionConflicts() throws Exception {
+        // 7812 is not sharded: every credit rewrites the same versioned row
+        double before = balance("7812");
+
+        runConcurrently(() -> accountService.credit("7812", 1.0));
+
+        assertThat(balance("7812")).isCloseTo(before + THREADS * CREDITS_PER_THREAD, within(0.001));
+    }
+
+    @Test
+    void netSettlementMovesTheNetAmountThroughTheShards() {
+        accountService.openAccount("S-NET", 0.0);
+        double before = balance("1001");
+
+        netSettlementService.handleSettleNetTransfer(new SettleNetTransfer(4001L, "1001", "S-NET",
+                new long[]{4002, 4003}, new double[]{30.0, -10.0}));
+
+        assertThat(balance("1001")).isCloseTo(before - 20.0, within(0.001));
+        assertThat(balance("S-NET")).isEqualTo(20.0);
+        assertThat(accountRepository.findByAccountNumber("1001").orElseThrow().getBalance()).isZero();
+    }
+
+    private void runConcurrently(Runnable credit) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < CREDITS_PER_THREAD; i++) {
+                        credit.run();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double balance(String accountNumber) {
+        return accountService.balanceOf(accountNumber).orElseThrow();
+    }
+
+    private List<AccountShard> shards(String accountNumber) {
+        return shardRepository.findAll().stream()
+                .filter(shard -> shard.getAccountNumber().equals(accountNumber))
+                .toList();
+    }
+}
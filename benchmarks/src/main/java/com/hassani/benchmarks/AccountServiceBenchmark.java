@@ -0,0 +1,75 @@
+package com.hassani.benchmarks;
+
+import com.hassani.accountservice.AccountServiceApplication;
+import com.hassani.accountservice.entities.Account;
+import com.hassani.accountservice.repository.AccountRepository;
+import com.hassani.accountservice.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AccountService.debit/credit against H2, with the database-backed path and the in-memory balance engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountServiceBenchmark {
+
+    @Param({"1000", "100000"})
+    private int tableSize;
+
+    @Param({"false", "true"})
+    private boolean balanceEngine;
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start(AccountServiceApplication.class, "accounts-" + System.nanoTime(),
+                "saga.balance-engine.enabled=" + balanceEngine,
+                "saga.balance-engine.journal-dir=target/benchmark-journal-" + System.nanoTime());
+        accountService = context.getBean(AccountService.class);
+
+        AccountRepository accountRepository = context.getBean(AccountRepository.class);
+        List<Account> accounts = new ArrayList<>(tableSize);
+        for (int i = 0; i < tableSize; i++) {
+            Account account = new Account();
+            account.setAccountNumber(accountNumber(i));
+            account.setBalance(1_000_000_000.0);
+            accounts.add(account);
+        }
+        accountRepository.saveAll(accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void debit() {
+        accountService.debit(randomAccount(), 1.0);
+    }
+
+    @Benchmark
+    public void credit() {
+        accountService.credit(randomAccount(), 1.0);
+    }
+
+    private String randomAccount() {
+        return accountNumber(ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    static String accountNumber(int index) {
+        return "B" + index;
+    }
+}
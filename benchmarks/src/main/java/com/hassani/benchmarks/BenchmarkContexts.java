@@ -0,0 +1,35 @@
+package com.hassani.benchmarks;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class BenchmarkContexts {
+    private BenchmarkContexts() {
+    }
+
+    /**
+     * Starts a service without a web server or broker. Both service jars ship an application.properties,
+     * so the config name points nowhere and only the properties given here apply.
+     */
+    static ConfigurableApplicationContext start(Class<?> application, String database, String... extraProperties) {
+        List<String> properties = new ArrayList<>(List.of(
+                "spring.config.name=benchmark-none",
+                "spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "spring.datasource.username=sa",
+                "spring.jpa.hibernate.ddl-auto=create",
+                "spring.jpa.show-sql=false",
+                "spring.jpa.properties.hibernate.jdbc.batch_size=500",
+                "spring.kafka.listener.auto-startup=false",
+                "spring.kafka.admin.auto-create=false",
+                "logging.level.root=WARN"));
+        properties.addAll(List.of(extraProperties));
+        return new SpringApplicationBuilder(application, StubKafkaConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties.toArray(String[]::new))
+                .run();
+    }
+}
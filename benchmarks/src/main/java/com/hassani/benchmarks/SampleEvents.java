@@ -0,0 +1,21 @@
+package com.hassani.benchmarks;
+
+import com.hassani.commonlib.event.*;
+
+final class SampleEvents {
+    private SampleEvents() {
+    }
+
+    static Object of(String eventType, Long transactionId) {
+        return switch (eventType) {
+            case "InitiateTransfer" -> new InitiateTransfer(transactionId, "1001", "7812", 125.50);
+            case "AccountDebited" -> new AccountDebited(transactionId, "1001", 125.50);
+            case "AccountCredited" -> new AccountCredited(transactionId, "7812", 125.50);
+            case "CreditAccount" -> new CreditAccount(transactionId, "7812", 125.50);
+            case "TransferFailed" -> new TransferFailed(transactionId, "1001", 125.50);
+            case "CreditFailed" -> new CreditFailed(transactionId, "7812", 125.50);
+            case "RevertDebit" -> new RevertDebit(transactionId, "1001", 125.50);
+            default -> throw new IllegalArgumentException("Unknown event type: " + eventType);
+        };
+    }
+}
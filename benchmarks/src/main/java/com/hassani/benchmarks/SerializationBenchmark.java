@@ -0,0 +1,83 @@
+package com.hassani.benchmarks;
+
+import com.hassani.commonlib.event.*;
+import com.hassani.commonlib.serialization.EventBinaryDeserializer;
+import com.hassani.commonlib.serialization.EventBinarySerializer;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Spring JSON (de)serializers the services use by default with the binary event layout
+ * for every common-lib event. Payload sizes are printed once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    private static final String TOPIC = "benchmark";
+
+    @Param({"InitiateTransfer", "AccountDebited", "AccountCredited", "CreditAccount",
+            "TransferFailed", "CreditFailed", "RevertDebit"})
+    private String eventType;
+
+    private Object event;
+    private JsonSerializer<Object> jsonSerializer;
+    private JsonDeserializer<Object> jsonDeserializer;
+    private EventBinarySerializer binarySerializer;
+    private EventBinaryDeserializer binaryDeserializer;
+    private RecordHeaders jsonHeaders;
+    private byte[] jsonPayload;
+    private byte[] binaryPayload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        event = SampleEvents.of(eventType, 42L);
+        jsonSerializer = new JsonSerializer<>();
+        jsonDeserializer = new JsonDeserializer<>();
+        jsonDeserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "com.hassani.commonlib.event"), false);
+        binarySerializer = new EventBinarySerializer();
+        binaryDeserializer = new EventBinaryDeserializer();
+
+        jsonHeaders = new RecordHeaders();
+        jsonPayload = jsonSerializer.serialize(TOPIC, jsonHeaders, event);
+        binaryPayload = binarySerializer.serialize(TOPIC, new RecordHeaders(), event);
+        System.out.printf("%n%s payload: json=%d bytes (+%d header bytes), binary=%d bytes%n", eventType,
+                jsonPayload.length, headerBytes(jsonHeaders), binaryPayload.length);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() {
+        return jsonSerializer.serialize(TOPIC, new RecordHeaders(), event);
+    }
+
+    @Benchmark
+    public byte[] binarySerialize() {
+        return binarySerializer.serialize(TOPIC, new RecordHeaders(), event);
+    }
+
+    @Benchmark
+    public Object jsonDeserialize() {
+        return jsonDeserializer.deserialize(TOPIC, jsonHeaders, jsonPayload);
+    }
+
+    @Benchmark
+    public Object binaryDeserialize() {
+        return binaryDeserializer.deserialize(TOPIC, new RecordHeaders(), binaryPayload);
+    }
+
+    private static int headerBytes(RecordHeaders headers) {
+        int bytes = 0;
+        for (var header : headers) {
+            bytes += header.key().length() + header.value().length;
+        }
+        return bytes;
+    }
+}
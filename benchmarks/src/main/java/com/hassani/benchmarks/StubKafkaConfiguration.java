@@ -0,0 +1,38 @@
+package com.hassani.benchmarks;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Replaces the auto-configured KafkaTemplate with one that acks every send immediately, so the
+ * outbox relay keeps draining without a broker.
+ */
+@Configuration
+public class StubKafkaConfiguration {
+
+    @Bean
+    public KafkaTemplate<String, Object> kafkaTemplate() {
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(Map.of())) {
+            @Override
+            public CompletableFuture<SendResult<String, Object>> send(String topic, String key, Object data) {
+                return send(new ProducerRecord<>(topic, key, data));
+            }
+
+            // The outbox relay sends whole records, with the trace headers attached
+            @Override
+            public CompletableFuture<SendResult<String, Object>> send(ProducerRecord<String, Object> record) {
+                RecordMetadata metadata = new RecordMetadata(new TopicPartition(record.topic(), 0), 0, 0, 0, 0, 0);
+                return CompletableFuture.completedFuture(new SendResult<>(record, metadata));
+            }
+        };
+    }
+}
@@ -0,0 +1,151 @@
+package com.hassani.benchmarks;
+
+import com.hassani.commonlib.event.AccountCredited;
+import com.hassani.commonlib.event.AccountDebited;
+import com.hassani.commonlib.event.CreditFailed;
+import com.hassani.commonlib.event.TransferFailed;
+import com.hassani.transactionservice.TransactionServiceApplication;
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionHistory;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.repository.TransactionHistoryRepository;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import com.hassani.transactionservice.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each transfer saga reply through TransactionService against H2. The store is pre-filled with tableSize
+ * finished sagas, in the Transaction table or already archived to TransactionHistory, plus
+ * inFlightPerAccount open sagas for every account. Each invocation gets a fresh saga in the status its handler expects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionServiceBenchmark {
+    private static final int ACCOUNTS = 100;
+    // Keeps archived IDs clear of the IDs the pooled Transaction sequence hands out to the open sagas
+    private static final long ARCHIVED_ID_OFFSET = 1_000_000_000L;
+
+    @Param({"10000", "200000"})
+    private int tableSize;
+
+    @Param({"1", "50"})
+    private int inFlightPerAccount;
+
+    @Param({"false", "true"})
+    private boolean archived;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private TransactionRepository transactionRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start(TransactionServiceApplication.class, "transactions-" + System.nanoTime());
+        transactionService = context.getBean(TransactionService.class);
+        transactionRepository = context.getBean(TransactionRepository.class);
+        TransactionHistoryRepository historyRepository = context.getBean(TransactionHistoryRepository.class);
+
+        List<Transaction> finished = new ArrayList<>();
+        List<TransactionHistory> history = new ArrayList<>();
+        for (int i = 0; i < tableSize; i++) {
+            Transaction transaction = transaction(i % ACCOUNTS, i % 10 == 0 ? TransactionStatus.FAILED : TransactionStatus.COMPLETED);
+            if (archived) {
+                history.add(archive(ARCHIVED_ID_OFFSET + i, transaction));
+            } else {
+                finished.add(transaction);
+            }
+            if (finished.size() + history.size() == 5_000) {
+                transactionRepository.saveAll(finished);
+                historyRepository.saveAll(history);
+                finished.clear();
+                history.clear();
+            }
+        }
+        transactionRepository.saveAll(finished);
+        historyRepository.saveAll(history);
+        List<Transaction> open = new ArrayList<>();
+        for (int account = 0; account < ACCOUNTS; account++) {
+            for (int i = 0; i < inFlightPerAccount; i++) {
+                open.add(transaction(account, i % 2 == 0 ? TransactionStatus.PENDING : TransactionStatus.DEBITED));
+            }
+        }
+        transactionRepository.saveAll(open);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class PendingSaga {
+        Transaction transaction;
+
+        @Setup(Level.Invocation)
+        public void create(TransactionServiceBenchmark benchmark) {
+            transaction = benchmark.newSaga(TransactionStatus.PENDING);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DebitedSaga {
+        Transaction transaction;
+
+        @Setup(Level.Invocation)
+        public void create(TransactionServiceBenchmark benchmark) {
+            transaction = benchmark.newSaga(TransactionStatus.DEBITED);
+        }
+    }
+
+    @Benchmark
+    public void handleAccountDebited(PendingSaga saga) {
+        Transaction t = saga.transaction;
+        transactionService.handleSagaEvent(new AccountDebited(t.getId(), t.getFromAccount(), t.getAmount()));
+    }
+
+    @Benchmark
+    public void handleAccountCredited(DebitedSaga saga) {
+        Transaction t = saga.transaction;
+        transactionService.handleSagaEvent(new AccountCredited(t.getId(), t.getToAccount(), t.getAmount()));
+    }
+
+    @Benchmark
+    public void handleTransferFailed(PendingSaga saga) {
+        Transaction t = saga.transaction;
+        transactionService.handleSagaEvent(new TransferFailed(t.getId(), t.getFromAccount(), t.getAmount()));
+    }
+
+    @Benchmark
+    public void handleCreditFailed(DebitedSaga saga) {
+        Transaction t = saga.transaction;
+        transactionService.handleSagaEvent(new CreditFailed(t.getId(), t.getToAccount(), t.getAmount()));
+    }
+
+    Transaction newSaga(TransactionStatus status) {
+        return transactionRepository.save(transaction(ThreadLocalRandom.current().nextInt(ACCOUNTS), status));
+    }
+
+    private static Transaction transaction(int account, TransactionStatus status) {
+        Transaction transaction = new Transaction();
+        transaction.setFromAccount(AccountServiceBenchmark.accountNumber(account));
+        transaction.setToAccount(AccountServiceBenchmark.accountNumber((account + 1) % ACCOUNTS));
+        transaction.setAmount(10.0);
+        transaction.setStatus(status);
+        return transaction;
+    }
+
+    private static TransactionHistory archive(long id, Transaction transaction) {
+        return new TransactionHistory(id, transaction.getFromAccount(), transaction.getToAccount(),
+                transaction.getAmount(), transaction.getStatus(), null, null, null, null, null);
+    }
+}
@@ -0,0 +1,117 @@
+package com.hassani.commonlib.dispatch;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a batch of items on a fixed set of single-threaded lanes. Items with the same key always
+ * land on the same lane and keep their relative order, items with different keys run in parallel.
+ */
+public class KeyOrderedDispatcher implements AutoCloseable {
+    private final ExecutorService[] lanes;
+
+    public KeyOrderedDispatcher(String name, int laneCount) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("laneCount must be positive: " + laneCount);
+        }
+        this.lanes = new ExecutorService[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            AtomicInteger counter = new AtomicInteger();
+            String laneName = name + "-lane-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, laneName + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Dispatches the items and blocks until every lane is done. When a handler fails, the rest of
+     * that lane is skipped and a {@link DispatchException} is thrown carrying the lowest failed index.
+     * <p>
+     * The other lanes are not stopped, so items after that index may already have been handled. A
+     * caller that resumes from the failed index, as a Kafka batch listener seeking back does, hands
+     * them to the handler again: the handler has to drop items it already applied. The saga listeners
+     * rely on the account-service processed-event check and the transaction-service status guards.
+     */
+    public <T> void dispatch(List<T> items, Function<T, ?> keyFunction, Consumer<T> handler) {
+        List<List<Integer>> perLane = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            perLane.add(new ArrayList<>());
+        }
+        for (int i = 0; i < items.size(); i++) {
+            perLane.get(laneOf(keyFunction.apply(items.get(i)))).add(i);
+        }
+
+        List<Future<DispatchException>> futures = new ArrayList<>(lanes.length);
+        for (int lane = 0; lane < lanes.length; lane++) {
+            List<Integer> indexes = perLane.get(lane);
+            if (indexes.isEmpty()) {
+                continue;
+            }
+            futures.add(lanes[lane].submit(() -> {
+                for (int index : indexes) {
+                    try {
+                        handler.accept(items.get(index));
+                    } catch (RuntimeException e) {
+                        return new DispatchException(index, e);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        DispatchException failure = null;
+        for (Future<DispatchException> future : futures) {
+            DispatchException laneFailure = await(future);
+            if (laneFailure != null && (failure == null || laneFailure.getIndex() < failure.getIndex())) {
+                failure = laneFailure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private int laneOf(Object key) {
+        return key == null ? 0 : Math.floorMod(key.hashCode(), lanes.length);
+    }
+
+    private static DispatchException await(Future<DispatchException> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for dispatch lanes", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Dispatch lane failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    @Getter
+    public static class DispatchException extends RuntimeException {
+        private final int index;
+
+        public DispatchException(int index, Throwable cause) {
+            super("Failed to dispatch item at index " + index + ": " + cause.getMessage(), cause);
+            this.index = index;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 public class AccountCredited {
+    private Long transactionId;
     private String accountNumber;
     private Double amount;
 }
\ No newline at end of file
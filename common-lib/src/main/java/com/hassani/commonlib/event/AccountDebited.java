@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 public class AccountDebited {
+    private Long transactionId;
     private String accountNumber;
     private Double amount;
 }
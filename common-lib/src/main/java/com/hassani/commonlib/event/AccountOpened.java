@@ -0,0 +1,10 @@
+package com.hassani.commonlib.event;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountOpened {
+    private String accountNumber;
+}
@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 public class CreditAccount {
+    private Long transactionId;
     private String accountNumber;
     private Double amount;
 }
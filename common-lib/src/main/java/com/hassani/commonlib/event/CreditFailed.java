@@ -6,6 +6,7 @@ import lombok.*;
 @AllArgsConstructor
 @NoArgsConstructor
 public class CreditFailed {
+    private Long transactionId;
     private String accountNumber;
     private Double amount;
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import lombok.*;
 @Setter
 @ToString
 public class InitiateTransfer {
+    private Long transactionId;
     private String fromAccount;
     private String toAccount;
     private Double amount;
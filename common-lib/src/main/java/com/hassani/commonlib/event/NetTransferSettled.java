@@ -0,0 +1,18 @@
+package com.hassani.commonlib.event;
+
+import lombok.*;
+
+/**
+ * Outcome of a {@link SettleNetTransfer}. When settled is false nothing was applied and every leg has
+ * to run as a separate saga.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NetTransferSettled {
+    private Long settlementId;
+    private String accountA;
+    private String accountB;
+    private Double netAmount;
+    private boolean settled;
+}
@@ -6,6 +6,7 @@ import lombok.*;
 @Setter
 @ToString
 public class RevertDebit {
+    private Long transactionId;
     private String accountNumber;
     private Double amount;
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.hassani.commonlib.event;
+
+import lombok.*;
+
+/**
+ * Transfers between two accounts collected by transaction-service and settled as one net movement.
+ * The legs are in submission order; a positive amount moves money from accountA to accountB, a
+ * negative one from accountB to accountA.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SettleNetTransfer {
+    private Long settlementId;
+    private String accountA;
+    private String accountB;
+    private long[] transactionIds;
+    private double[] amounts;
+}
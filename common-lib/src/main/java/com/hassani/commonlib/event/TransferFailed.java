@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 public class TransferFailed {
+    private Long transactionId;
     private String fromAccount;
     private Double amount;
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.hassani.commonlib.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hassani.commonlib.persistence.IdSequenceMigration;
+import com.hassani.commonlib.trace.Tracer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * The transactional outbox shared by both services: OUTBOX_EVENT and its repository join the
+ * service's own entities, and the relay is configured per service through saga.outbox.relay.*.
+ */
+@AutoConfiguration(before = {HibernateJpaAutoConfiguration.class, JpaRepositoriesAutoConfiguration.class})
+@AutoConfigurationPackage
+@ConditionalOnClass(KafkaTemplate.class)
+public class OutboxAutoConfiguration {
+
+    @Bean
+    public OutboxPublisher outboxPublisher(OutboxRepository outboxRepository, ObjectMapper objectMapper) {
+        return new OutboxPublisher(outboxRepository, objectMapper);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "saga.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+    public OutboxRelay outboxRelay(OutboxRepository outboxRepository,
+                                   KafkaTemplate<String, Object> kafkaTemplate,
+                                   ObjectMapper objectMapper,
+                                   Tracer tracer,
+                                   @Value("${saga.outbox.relay.batch-size:500}") int batchSize) {
+        return new OutboxRelay(outboxRepository, kafkaTemplate, objectMapper, tracer, batchSize);
+    }
+
+    // account-service wrote OUTBOX_EVENT with an IDENTITY column before the outbox moved here
+    @Bean
+    public IdSequenceMigration outboxEventSequenceMigration(DataSource dataSource) {
+        return new IdSequenceMigration(dataSource, OutboxEvent.ID_SEQUENCE, OutboxEvent.ID_ALLOCATION_SIZE, "outbox_event");
+    }
+
+    // Every IdSequenceMigration bean, the services' own included, runs before Hibernate touches the schema
+    @Bean
+    public static EntityManagerFactoryDependsOnPostProcessor idSequenceMigrationDependsOn() {
+        return new EntityManagerFactoryDependsOnPostProcessor(IdSequenceMigration.class);
+    }
+}
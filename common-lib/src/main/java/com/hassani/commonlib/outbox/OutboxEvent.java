@@ -0,0 +1,28 @@
+package com.hassani.commonlib.outbox;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@AllArgsConstructor @NoArgsConstructor @Getter @Setter @ToString
+public class OutboxEvent {
+    static final String ID_SEQUENCE = "outbox_event_seq";
+    static final int ID_ALLOCATION_SIZE = 50;
+
+    @Id
+    // Pooled sequence values, so a transaction queuing many events inserts them with JDBC batching
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
+    private Long id;
+    private String topic;
+    private String messageKey;
+    private String payloadType;
+    @Column(length = 4000)
+    private String payload;
+    private Instant createdAt;
+    // traceparent of the span that queued the event, sent as a record header
+    @Column(length = 55)
+    private String traceParent;
+}
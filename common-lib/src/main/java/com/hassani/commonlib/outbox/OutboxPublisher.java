@@ -0,0 +1,36 @@
+package com.hassani.commonlib.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hassani.commonlib.trace.TraceContext;
+import com.hassani.commonlib.trace.Tracer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Slf4j
+@RequiredArgsConstructor
+public class OutboxPublisher {
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    // Joins the caller's transaction so the event commits together with the state change
+    @Transactional
+    public void publish(String topic, String key, Object event) {
+        publish(topic, key, event, Tracer.current());
+    }
+
+    // For events decided on another thread, such as the saga log's flusher, with the trace captured there
+    @Transactional
+    public void publish(String topic, String key, Object event, TraceContext trace) {
+        try {
+            outboxRepository.save(new OutboxEvent(null, topic, key, event.getClass().getName(),
+                    objectMapper.writeValueAsString(event), Instant.now(), trace != null ? trace.traceParent() : null));
+            log.debug("Queued {} event for key {} in outbox", topic, key);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize outbox event for topic " + topic, e);
+        }
+    }
+}
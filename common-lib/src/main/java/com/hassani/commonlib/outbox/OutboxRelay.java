@@ -0,0 +1,134 @@
+package com.hassani.commonlib.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hassani.commonlib.trace.TraceContext;
+import com.hassani.commonlib.trace.TraceSpan;
+import com.hassani.commonlib.trace.Tracer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends the outbox rows to Kafka in ID order and deletes them once the broker acked them. A failed
+ * row keeps every later row with the same message key in the outbox, so the next round sends it
+ * first and then the rest of that key's events again; the consumers drop the copies that already
+ * got through. For the rest of the round a held-back key is left out of the following batches, so
+ * rows that keep failing never fill the window and stall the other keys behind them.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class OutboxRelay {
+    private final OutboxRepository outboxRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final Tracer tracer;
+    private final int batchSize;
+    private final Map<String, Class<?>> payloadTypes = new ConcurrentHashMap<>();
+
+    @Scheduled(fixedDelayString = "${saga.outbox.relay.interval-ms:50}")
+    public void relay() {
+        Set<String> heldBack = new HashSet<>();
+        List<OutboxEvent> batch;
+        do {
+            batch = heldBack.isEmpty()
+                    ? outboxRepository.findByOrderByIdAsc(Limit.of(batchSize))
+                    : outboxRepository.findByMessageKeyNotInOrderByIdAsc(heldBack, Limit.of(batchSize));
+            int before = heldBack.size();
+            int relayed = relayBatch(batch, heldBack);
+            // Keep draining past a key that fails on its own. A batch where nothing got through and
+            // several keys failed points at the broker, so the next round tries again
+            if (relayed == 0 && heldBack.size() - before != 1) {
+                return;
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    /**
+     * Sends one batch and deletes the rows the broker acked. Returns how many were deleted, and adds
+     * the key of every failed row to heldBack.
+     */
+    int relayBatch(List<OutboxEvent> batch, Set<String> heldBack) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // Send the whole batch before waiting so the producer can pipeline it. A key whose row could
+        // not even be handed to the producer sends nothing more in this round
+        List<CompletableFuture<SendResult<String, Object>>> sends = new ArrayList<>(batch.size());
+        Set<String> failedKeys = new HashSet<>();
+        for (OutboxEvent event : batch) {
+            if (failedKeys.contains(event.getMessageKey())) {
+                sends.add(null);
+                continue;
+            }
+            CompletableFuture<SendResult<String, Object>> send = send(event);
+            if (send.isCompletedExceptionally()) {
+                failedKeys.add(event.getMessageKey());
+            }
+            sends.add(send);
+        }
+
+        // Only rows acked before the first failure of their key are deleted; the failed row and the
+        // rest of its key are sent again next round, and the consumers drop the repeats
+        failedKeys.clear();
+        List<Long> published = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            if (failedKeys.contains(event.getMessageKey())) {
+                continue;
+            }
+            try {
+                sends.get(i).join();
+                published.add(event.getId());
+            } catch (Exception e) {
+                failedKeys.add(event.getMessageKey());
+                log.error("Failed to relay outbox event {} to {}, holding back key {}: {}",
+                        event.getId(), event.getTopic(), event.getMessageKey(), e.getMessage());
+            }
+        }
+        if (!published.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(published);
+        }
+        failedKeys.stream().filter(Objects::nonNull).forEach(heldBack::add);
+        log.debug("Relayed {} of {} outbox events", published.size(), batch.size());
+        return published.size();
+    }
+
+    private CompletableFuture<SendResult<String, Object>> send(OutboxEvent event) {
+        try {
+            Object payload = objectMapper.readValue(event.getPayload(), payloadType(event.getPayloadType()));
+            ProducerRecord<String, Object> record = new ProducerRecord<>(event.getTopic(), event.getMessageKey(), payload);
+            // The send span ends on the broker ack and is the parent of the consumer's span
+            TraceSpan span = tracer.startAsync("send " + event.getTopic(), TraceContext.parse(event.getTraceParent()));
+            if (span.context() != null) {
+                span.context().writeTo(record.headers());
+            }
+            return kafkaTemplate.send(record).whenComplete((result, e) -> span.end(e != null));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Class<?> payloadType(String name) {
+        return payloadTypes.computeIfAbsent(name, type -> {
+            try {
+                return Class.forName(type);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unknown outbox payload type: " + type, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package com.hassani.commonlib.outbox;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+    List<OutboxEvent> findByOrderByIdAsc(Limit limit);
+
+    List<OutboxEvent> findByMessageKeyNotInOrderByIdAsc(Collection<String> messageKeys, Limit limit);
+}
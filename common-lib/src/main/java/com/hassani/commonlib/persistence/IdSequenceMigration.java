@@ -0,0 +1,86 @@
+package com.hassani.commonlib.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Moves a pooled ID sequence past the IDs already stored in its tables, for databases whose tables
+ * were written with IDENTITY columns before the entity switched to a sequence. Has to run before
+ * Hibernate builds its EntityManagerFactory, which otherwise creates the sequence starting at 1.
+ */
+@Slf4j
+public class IdSequenceMigration implements InitializingBean {
+    private final DataSource dataSource;
+    private final String sequence;
+    private final int allocationSize;
+    private final List<String> tables;
+
+    public IdSequenceMigration(DataSource dataSource, String sequence, int allocationSize, String... tables) {
+        this.dataSource = dataSource;
+        this.sequence = sequence.toUpperCase(Locale.ROOT);
+        this.allocationSize = allocationSize;
+        this.tables = Arrays.stream(tables).map(table -> table.toUpperCase(Locale.ROOT)).toList();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            long maxId = maxId(connection);
+            if (maxId == 0) {
+                return;
+            }
+            // Hibernate's pooled optimizer hands out the allocationSize values below each sequence value
+            long start = maxId + allocationSize + 1;
+            Long next = nextValue(connection);
+            try (Statement statement = connection.createStatement()) {
+                if (next == null) {
+                    statement.execute("CREATE SEQUENCE " + sequence + " START WITH " + start + " INCREMENT BY " + allocationSize);
+                } else if (next - allocationSize < maxId) {
+                    statement.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + start);
+                } else {
+                    return;
+                }
+            }
+            log.info("Moved sequence {} to {}, past the stored IDs of {}", sequence, start, tables);
+        }
+    }
+
+    private long maxId(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        long maxId = 0;
+        for (String table : tables) {
+            try (ResultSet existing = metaData.getTables(null, null, table, new String[]{"TABLE"})) {
+                if (!existing.next()) {
+                    continue;
+                }
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT MAX(ID) FROM \"" + table + "\"")) {
+                result.next();
+                maxId = Math.max(maxId, result.getLong(1));
+            }
+        }
+        return maxId;
+    }
+
+    private Long nextValue(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?")) {
+            statement.setString(1, sequence);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getLong(1) : null;
+            }
+        }
+    }
+}
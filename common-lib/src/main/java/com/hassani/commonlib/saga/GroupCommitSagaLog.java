@@ -0,0 +1,137 @@
+package com.hassani.commonlib.saga;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Saga log that writes the transitions of many concurrent sagas together. Appending only queues the
+ * transition; a single flusher thread takes everything queued, up to maxBatch, and hands it to the
+ * writer as one write, typically one database transaction. While a write is in progress new appends
+ * collect for the next one, so the batch grows with the load and no caller waits for a timer.
+ */
+@Slf4j
+public class GroupCommitSagaLog<S, D> implements SagaLog<S, D>, AutoCloseable {
+    private final String name;
+    private final Writer<S, D> writer;
+    private final int maxBatch;
+    private final IntConsumer onFlush;
+    private final LinkedBlockingQueue<Pending<S, D>> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    /**
+     * Writes a batch in one go and returns the IDs of the sagas whose transitions it refused; those
+     * fail on their own while the rest of the batch is stored. Throws if nothing was stored.
+     */
+    @FunctionalInterface
+    public interface Writer<S, D> {
+        Set<Long> write(List<SagaTransition<S, D>> transitions);
+    }
+
+    private record Pending<S, D>(SagaTransition<S, D> transition, CompletableFuture<Void> durable) {
+    }
+
+    /**
+     * @param onFlush called with the size of every batch written, for metrics
+     */
+    public GroupCommitSagaLog(String name, Writer<S, D> writer, int maxBatch, IntConsumer onFlush) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+        this.name = name;
+        this.writer = writer;
+        this.maxBatch = maxBatch;
+        this.onFlush = onFlush;
+        this.flusher = new Thread(this::run, name + "-saga-log");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> append(SagaTransition<S, D> transition) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        if (!running) {
+            durable.completeExceptionally(new IllegalStateException("Saga log " + name + " is closed"));
+            return durable;
+        }
+        queue.add(new Pending<>(transition, durable));
+        return durable;
+    }
+
+    private void run() {
+        List<Pending<S, D>> batch = new ArrayList<>(maxBatch);
+        List<SagaTransition<S, D>> transitions = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending<S, D> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (Pending<S, D> pending : batch) {
+                transitions.add(pending.transition());
+            }
+            flush(batch, transitions);
+            batch.clear();
+            transitions.clear();
+        }
+    }
+
+    private void flush(List<Pending<S, D>> batch, List<SagaTransition<S, D>> transitions) {
+        Set<Long> refused;
+        try {
+            refused = writer.write(transitions);
+        } catch (Throwable e) {
+            // Errors too: the flusher must outlive a failed write, and no caller may be left waiting
+            log.error("Saga log {} failed to write {} transitions", name, batch.size(), e);
+            for (Pending<S, D> pending : batch) {
+                pending.durable().completeExceptionally(e);
+            }
+            return;
+        }
+        for (Pending<S, D> pending : batch) {
+            SagaTransition<S, D> transition = pending.transition();
+            if (refused.contains(transition.sagaId())) {
+                pending.durable().completeExceptionally(new IllegalStateException("Saga log " + name
+                        + " refused the transition of saga " + transition.sagaId() + " from " + transition.from()
+                        + " to " + transition.to()));
+            } else {
+                pending.durable().complete(null);
+            }
+        }
+        try {
+            onFlush.accept(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Saga log {} could not record a flush of {} transitions", name, batch.size(), e);
+        }
+    }
+
+    /**
+     * Writes what is already queued, then fails any append that raced with closing.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Pending<S, D> pending;
+        while ((pending = queue.poll()) != null) {
+            pending.durable().completeExceptionally(new IllegalStateException("Saga log " + name + " is closed"));
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.hassani.commonlib.saga;
+
+/**
+ * A message a saga sends to a participant, either a step's action or a compensation undoing one.
+ */
+public record SagaCommand(String topic, String key, Object payload, boolean compensation) {
+}
@@ -0,0 +1,193 @@
+package com.hassani.commonlib.saga;
+
+import com.hassani.commonlib.trace.Tracer;
+
+import java.util.*;
+
+/**
+ * Declarative saga: an ordered list of steps plus a completed and a failed state, all values of one
+ * enum. The saga waits in the state of its current step until a reply arrives. A success reply moves
+ * it to the next step, and sends that step's command, or to completed after the last step. A failure
+ * reply moves it to failed and sends the compensations of the earlier steps, last step first. A step
+ * that succeeds after the saga has failed is compensated on its own. Replies that do not fit the
+ * current state are ignored, so redelivered events are harmless.
+ * <p>
+ * The definition is a pure state machine: it decides transitions and leaves storing them to the caller.
+ */
+public final class SagaDefinition<S extends Enum<S>, D> {
+    private final String name;
+    private final List<SagaStep<S, D>> steps;
+    private final S completed;
+    private final S failed;
+    private final Map<S, Integer> stepIndexes;
+    private final Map<Class<?>, Reply> replies = new HashMap<>();
+    private final List<String> replyTopics = new ArrayList<>();
+
+    private record Reply(int stepIndex, boolean success, SagaStep.Reply reply) {
+    }
+
+    private SagaDefinition(Builder<S, D> builder) {
+        this.name = builder.name;
+        this.steps = List.copyOf(builder.steps);
+        this.completed = Objects.requireNonNull(builder.completed, () -> "Saga " + name + " has no completed state");
+        this.failed = Objects.requireNonNull(builder.failed, () -> "Saga " + name + " has no failed state");
+        if (steps.isEmpty()) {
+            throw new IllegalArgumentException("Saga " + name + " has no steps");
+        }
+        this.stepIndexes = new EnumMap<>(builder.states);
+        for (int i = 0; i < steps.size(); i++) {
+            SagaStep<S, D> step = steps.get(i);
+            if (step.state == completed || step.state == failed || stepIndexes.put(step.state, i) != null) {
+                throw new IllegalArgumentException("Saga " + name + " uses state " + step.state + " twice");
+            }
+            addReply(i, true, step.success);
+            if (step.failure != null) {
+                addReply(i, false, step.failure);
+            }
+        }
+    }
+
+    public static <S extends Enum<S>, D> Builder<S, D> builder(String name, Class<S> states) {
+        return new Builder<>(name, states);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public List<String> replyTopics() {
+        return replyTopics;
+    }
+
+    public boolean isTerminal(S state) {
+        return state == completed || state == failed;
+    }
+
+    /**
+     * The saga the event replies to, or null when the event is not a reply of this saga.
+     */
+    public Long sagaIdOf(Object event) {
+        Reply reply = replies.get(event.getClass());
+        return reply != null ? reply.reply().sagaId().apply(event) : null;
+    }
+
+    /**
+     * The command of the step the saga waits in, or null when it is finished.
+     */
+    public SagaCommand command(S state, D data) {
+        Integer index = stepIndexes.get(state);
+        return index != null ? steps.get(index).action.apply(data) : null;
+    }
+
+    public SagaTransition<S, D> start(Long sagaId, D data) {
+        SagaStep<S, D> first = steps.get(0);
+        return transition(sagaId, data, null, first.state, "start", List.of(first.action.apply(data)));
+    }
+
+    /**
+     * The transition caused by a reply, or null when the reply does not fit the state.
+     */
+    public SagaTransition<S, D> onEvent(Long sagaId, S state, D data, Object event) {
+        Reply reply = replies.get(event.getClass());
+        if (reply == null) {
+            return null;
+        }
+        SagaStep<S, D> step = steps.get(reply.stepIndex());
+        String trigger = reply.reply().topic();
+        if (state == step.state) {
+            if (!reply.success()) {
+                return transition(sagaId, data, state, failed, trigger, compensations(reply.stepIndex(), data));
+            }
+            int next = reply.stepIndex() + 1;
+            if (next == steps.size()) {
+                return transition(sagaId, data, state, completed, trigger, List.of());
+            }
+            SagaStep<S, D> nextStep = steps.get(next);
+            return transition(sagaId, data, state, nextStep.state, trigger, List.of(nextStep.action.apply(data)));
+        }
+        if (state == failed && reply.success() && step.compensation != null) {
+            // The step landed after the saga had failed, undo it
+            return transition(sagaId, data, state, state, trigger, List.of(step.compensation.apply(data)));
+        }
+        return null;
+    }
+
+    /**
+     * The transition for an expired deadline, or null when the saga is finished. The current step's
+     * command is resent, unless the resends are exhausted and the step may fail the saga.
+     */
+    public SagaTransition<S, D> onTimeout(Long sagaId, S state, D data, boolean exhausted) {
+        Integer index = stepIndexes.get(state);
+        if (index == null) {
+            return null;
+        }
+        SagaStep<S, D> step = steps.get(index);
+        if (exhausted && step.failOnTimeout) {
+            return transition(sagaId, data, state, failed, "timeout", compensations(index, data));
+        }
+        return transition(sagaId, data, state, state, "timeout", List.of(step.action.apply(data)));
+    }
+
+    /**
+     * Completes a saga whose remaining steps were carried out some other way, or returns null when it is finished.
+     */
+    public SagaTransition<S, D> complete(Long sagaId, S state, D data, String trigger) {
+        return stepIndexes.containsKey(state) ? transition(sagaId, data, state, completed, trigger, List.of()) : null;
+    }
+
+    private List<SagaCommand> compensations(int failedStep, D data) {
+        List<SagaCommand> commands = new ArrayList<>();
+        for (int i = failedStep - 1; i >= 0; i--) {
+            SagaStep<S, D> step = steps.get(i);
+            if (step.compensation != null) {
+                commands.add(step.compensation.apply(data));
+            }
+        }
+        return commands;
+    }
+
+    private SagaTransition<S, D> transition(Long sagaId, D data, S from, S to, String trigger, List<SagaCommand> commands) {
+        return new SagaTransition<>(sagaId, data, from, to, trigger, commands, Tracer.current());
+    }
+
+    private void addReply(int stepIndex, boolean success, SagaStep.Reply reply) {
+        if (replies.put(reply.type(), new Reply(stepIndex, success, reply)) != null) {
+            throw new IllegalArgumentException("Saga " + name + " expects " + reply.type().getName() + " twice");
+        }
+        if (!replyTopics.contains(reply.topic())) {
+            replyTopics.add(reply.topic());
+        }
+    }
+
+    public static final class Builder<S extends Enum<S>, D> {
+        private final String name;
+        private final Class<S> states;
+        private final List<SagaStep<S, D>> steps = new ArrayList<>();
+        private S completed;
+        private S failed;
+
+        private Builder(String name, Class<S> states) {
+            this.name = Objects.requireNonNull(name);
+            this.states = Objects.requireNonNull(states);
+        }
+
+        public Builder<S, D> step(SagaStep<S, D> step) {
+            steps.add(step);
+            return this;
+        }
+
+        public Builder<S, D> completedIn(S state) {
+            this.completed = state;
+            return this;
+        }
+
+        public Builder<S, D> failedIn(S state) {
+            this.failed = state;
+            return this;
+        }
+
+        public SagaDefinition<S, D> build() {
+            return new SagaDefinition<>(this);
+        }
+    }
+}
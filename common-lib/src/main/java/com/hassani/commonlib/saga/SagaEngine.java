@@ -0,0 +1,154 @@
+package com.hassani.commonlib.saga;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Runs the sagas of one definition. Unfinished sagas are kept in memory, loaded on first use, so a
+ * reply costs no lookup. A transition is decided under the saga's lock and appended to the log, but
+ * the saga only takes its new state once the log has made it durable; an event arriving meanwhile is
+ * decided after that, so no event ever sees a state that may still be lost. If the write fails the
+ * saga is dropped from memory and reloaded from storage on its next event. Finished sagas are dropped
+ * once durable. The engine must be the only writer of saga states in storage.
+ */
+public class SagaEngine<S extends Enum<S>, D> {
+    private final SagaDefinition<S, D> definition;
+    private final Function<Long, Snapshot<S, D>> loader;
+    private final SagaLog<S, D> log;
+    private final ConcurrentMap<Long, Instance<S, D>> instances = new ConcurrentHashMap<>();
+
+    /**
+     * A saga as found in storage.
+     */
+    public record Snapshot<S, D>(S state, D data) {
+    }
+
+    private static final class Instance<S, D> {
+        private S state;
+        private final D data;
+        private boolean evicted;
+        // Completes once the transition being written has been applied or given up
+        private CompletableFuture<?> writing;
+
+        private Instance(S state, D data) {
+            this.state = state;
+            this.data = data;
+        }
+    }
+
+    /**
+     * @param loader returns the stored state of a saga, or null when it does not exist
+     */
+    public SagaEngine(SagaDefinition<S, D> definition, Function<Long, Snapshot<S, D>> loader, SagaLog<S, D> log) {
+        this.definition = definition;
+        this.loader = loader;
+        this.log = log;
+    }
+
+    public SagaDefinition<S, D> definition() {
+        return definition;
+    }
+
+    public int activeSagas() {
+        return instances.size();
+    }
+
+    /**
+     * Keeps a saga that was just stored by other means, such as its start, in memory unless it is already there.
+     */
+    public void track(Long sagaId, S state, D data) {
+        if (!definition.isTerminal(state)) {
+            instances.putIfAbsent(sagaId, new Instance<>(state, data));
+        }
+    }
+
+    /**
+     * Applies a reply. The future yields the durable transition, or null when the event is not a reply
+     * of this saga, the saga is unknown or the reply did not fit its state.
+     */
+    public CompletableFuture<SagaTransition<S, D>> handle(Object event) {
+        Long sagaId = definition.sagaIdOf(event);
+        if (sagaId == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return apply(sagaId, (state, data) -> definition.onEvent(sagaId, state, data, event));
+    }
+
+    public CompletableFuture<SagaTransition<S, D>> timeout(Long sagaId, boolean exhausted) {
+        return apply(sagaId, (state, data) -> definition.onTimeout(sagaId, state, data, exhausted));
+    }
+
+    public CompletableFuture<SagaTransition<S, D>> complete(Long sagaId, String trigger) {
+        return apply(sagaId, (state, data) -> definition.complete(sagaId, state, data, trigger));
+    }
+
+    private CompletableFuture<SagaTransition<S, D>> apply(Long sagaId,
+                                                          BiFunction<S, D, SagaTransition<S, D>> decide) {
+        while (true) {
+            Instance<S, D> instance = instance(sagaId);
+            if (instance == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            synchronized (instance) {
+                if (instance.evicted) {
+                    continue;
+                }
+                if (instance.writing != null) {
+                    return instance.writing.handle((ignored, e) -> null)
+                            .thenCompose(ignored -> apply(sagaId, decide));
+                }
+                SagaTransition<S, D> transition = decide.apply(instance.state, instance.data);
+                if (transition == null) {
+                    if (definition.isTerminal(instance.state)) {
+                        evict(sagaId, instance);
+                    }
+                    return CompletableFuture.completedFuture(null);
+                }
+                CompletableFuture<SagaTransition<S, D>> written = new CompletableFuture<>();
+                instance.writing = written;
+                log.append(transition).whenComplete((ignored, e) -> {
+                    synchronized (instance) {
+                        if (e == null) {
+                            instance.state = transition.to();
+                        }
+                        instance.writing = null;
+                    }
+                    if (e != null || definition.isTerminal(transition.to())) {
+                        evict(sagaId, instance);
+                    }
+                    // Completed last, so an event waiting on it finds the saga settled or evicted
+                    if (e != null) {
+                        written.completeExceptionally(e);
+                    } else {
+                        written.complete(transition);
+                    }
+                });
+                return written;
+            }
+        }
+    }
+
+    private Instance<S, D> instance(Long sagaId) {
+        Instance<S, D> instance = instances.get(sagaId);
+        if (instance != null) {
+            return instance;
+        }
+        Snapshot<S, D> snapshot = loader.apply(sagaId);
+        if (snapshot == null) {
+            return null;
+        }
+        Instance<S, D> loaded = new Instance<>(snapshot.state(), snapshot.data());
+        Instance<S, D> raced = instances.putIfAbsent(sagaId, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    private void evict(Long sagaId, Instance<S, D> instance) {
+        synchronized (instance) {
+            instance.evicted = true;
+        }
+        instances.remove(sagaId, instance);
+    }
+}
@@ -0,0 +1,11 @@
+package com.hassani.commonlib.saga;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Store of saga transitions. The returned future completes once the transition, and the commands it
+ * sends, are durable, and fails if the transition was not stored.
+ */
+public interface SagaLog<S, D> {
+    CompletableFuture<Void> append(SagaTransition<S, D> transition);
+}
@@ -0,0 +1,95 @@
+package com.hassani.commonlib.saga;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * One step of a saga: the state the saga waits in, the command that performs the step, the replies
+ * that end it and, optionally, the command that undoes it once it has succeeded.
+ */
+public final class SagaStep<S extends Enum<S>, D> {
+    final String name;
+    final S state;
+    final Function<D, SagaCommand> action;
+    final Function<D, SagaCommand> compensation;
+    final Reply success;
+    final Reply failure;
+    final boolean failOnTimeout;
+
+    record Reply(String topic, Class<?> type, Function<Object, Long> sagaId) {
+    }
+
+    private SagaStep(Builder<S, D> builder) {
+        this.name = builder.name;
+        this.state = builder.state;
+        this.action = Objects.requireNonNull(builder.action, () -> "Step " + builder.name + " has no action");
+        this.compensation = builder.compensation;
+        this.success = Objects.requireNonNull(builder.success, () -> "Step " + builder.name + " has no success reply");
+        this.failure = builder.failure;
+        this.failOnTimeout = builder.failOnTimeout;
+    }
+
+    public static <S extends Enum<S>, D> Builder<S, D> builder(String name, S state) {
+        return new Builder<>(name, state);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public S state() {
+        return state;
+    }
+
+    public static final class Builder<S extends Enum<S>, D> {
+        private final String name;
+        private final S state;
+        private Function<D, SagaCommand> action;
+        private Function<D, SagaCommand> compensation;
+        private Reply success;
+        private Reply failure;
+        private boolean failOnTimeout = true;
+
+        private Builder(String name, S state) {
+            this.name = Objects.requireNonNull(name);
+            this.state = Objects.requireNonNull(state);
+        }
+
+        public Builder<S, D> invoke(String topic, Function<D, String> key, Function<D, Object> payload) {
+            this.action = data -> new SagaCommand(topic, key.apply(data), payload.apply(data), false);
+            return this;
+        }
+
+        public <E> Builder<S, D> onSuccess(String topic, Class<E> type, Function<E, Long> sagaId) {
+            this.success = reply(topic, type, sagaId);
+            return this;
+        }
+
+        public <E> Builder<S, D> onFailure(String topic, Class<E> type, Function<E, Long> sagaId) {
+            this.failure = reply(topic, type, sagaId);
+            return this;
+        }
+
+        public Builder<S, D> compensateWith(String topic, Function<D, String> key, Function<D, Object> payload) {
+            this.compensation = data -> new SagaCommand(topic, key.apply(data), payload.apply(data), true);
+            return this;
+        }
+
+        /**
+         * Marks the step as past the point of no return: a timeout only resends its command and never
+         * fails the saga, because its effect could not be undone if it landed later.
+         */
+        public Builder<S, D> retryOnTimeout() {
+            this.failOnTimeout = false;
+            return this;
+        }
+
+        public SagaStep<S, D> build() {
+            return new SagaStep<>(this);
+        }
+
+        private static <E> Reply reply(String topic, Class<E> type, Function<E, Long> sagaId) {
+            return new Reply(topic, type, event -> sagaId.apply(type.cast(event)));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.hassani.commonlib.saga;
+
+import com.hassani.commonlib.trace.TraceContext;
+
+import java.util.List;
+
+/**
+ * One entry of the saga log: the saga moved from one state to another, possibly the same one, because
+ * of trigger, and sends commands once the entry is durable. A started saga has no from state. The
+ * trace context is captured where the transition was decided, since the log may be written elsewhere.
+ */
+public record SagaTransition<S, D>(Long sagaId,
+                                   D data,
+                                   S from,
+                                   S to,
+                                   String trigger,
+                                   List<SagaCommand> commands,
+                                   TraceContext trace) {
+
+    public boolean changesState() {
+        return from != to;
+    }
+
+    public boolean compensates() {
+        return commands.stream().anyMatch(SagaCommand::compensation);
+    }
+
+    public SagaTransition<S, D> withoutCommands() {
+        return new SagaTransition<>(sagaId, data, from, to, trigger, List.of(), trace);
+    }
+}
@@ -0,0 +1,97 @@
+package com.hassani.commonlib.serialization;
+
+import java.nio.charset.StandardCharsets;
+
+public final class BinaryReader {
+    private final byte[] buffer;
+    private int position;
+
+    public BinaryReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    public int readByte() {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at position " + position);
+    }
+
+    public double readDouble() {
+        require(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (buffer[position++] & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    public Long readNullableLong() {
+        return readByte() == 0 ? null : readVarLong();
+    }
+
+    public Double readNullableDouble() {
+        return readByte() == 0 ? null : readDouble();
+    }
+
+    public String readNullableString() {
+        int length = (int) readVarLong();
+        if (length == -1) {
+            return null;
+        }
+        return readString(length);
+    }
+
+    public long[] readLongArray() {
+        int length = (int) readVarLong();
+        if (length == -1) {
+            return null;
+        }
+        require(length);
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readVarLong();
+        }
+        return values;
+    }
+
+    public double[] readDoubleArray() {
+        int length = (int) readVarLong();
+        if (length == -1) {
+            return null;
+        }
+        require(length);
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readDouble();
+        }
+        return values;
+    }
+
+    public String readString() {
+        return readString((int) readVarLong());
+    }
+
+    private String readString(int length) {
+        require(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private void require(int bytes) {
+        if (bytes < 0 || position + bytes > buffer.length) {
+            throw new IllegalArgumentException("Truncated event payload: need " + bytes + " bytes at position " + position);
+        }
+    }
+}
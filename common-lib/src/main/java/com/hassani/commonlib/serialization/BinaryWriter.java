@@ -0,0 +1,100 @@
+package com.hassani.commonlib.serialization;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal growable buffer with varint and fixed-width primitives, no reflection involved.
+ */
+public final class BinaryWriter {
+    private byte[] buffer;
+    private int position;
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public BinaryWriter writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+        return this;
+    }
+
+    public BinaryWriter writeVarLong(long value) {
+        ensureCapacity(10);
+        // Zig-zag so small negative values stay short as well
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        buffer[position++] = (byte) zigZag;
+        return this;
+    }
+
+    public BinaryWriter writeDouble(double value) {
+        ensureCapacity(8);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (bits >>> shift);
+        }
+        return this;
+    }
+
+    public BinaryWriter writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+        return this;
+    }
+
+    public BinaryWriter writeNullableLong(Long value) {
+        writeByte(value == null ? 0 : 1);
+        return value == null ? this : writeVarLong(value);
+    }
+
+    public BinaryWriter writeNullableDouble(Double value) {
+        writeByte(value == null ? 0 : 1);
+        return value == null ? this : writeDouble(value);
+    }
+
+    // Length -1 marks a null string
+    public BinaryWriter writeNullableString(String value) {
+        return value == null ? writeVarLong(-1) : writeString(value);
+    }
+
+    // Length -1 marks a null array
+    public BinaryWriter writeLongArray(long[] values) {
+        if (values == null) {
+            return writeVarLong(-1);
+        }
+        writeVarLong(values.length);
+        for (long value : values) {
+            writeVarLong(value);
+        }
+        return this;
+    }
+
+    public BinaryWriter writeDoubleArray(double[] values) {
+        if (values == null) {
+            return writeVarLong(-1);
+        }
+        writeVarLong(values.length);
+        for (double value : values) {
+            writeDouble(value);
+        }
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+}
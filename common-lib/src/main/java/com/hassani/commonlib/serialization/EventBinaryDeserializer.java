@@ -0,0 +1,66 @@
+package com.hassani.commonlib.serialization;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Kafka value deserializer for {@link EventCodec} payloads. Anything without the binary magic byte is
+ * read as JSON using the {@code __TypeId__} header, so consumers can switch before their producers do.
+ */
+public class EventBinaryDeserializer implements Deserializer<Object> {
+    private static final String TRUSTED_PACKAGE = "com.hassani.commonlib.";
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private final Map<String, Class<?>> jsonTypes = new ConcurrentHashMap<>();
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (EventCodec.isBinary(data)) {
+            try {
+                return EventCodec.decode(data);
+            } catch (IllegalArgumentException e) {
+                throw new SerializationException("Failed to decode binary event from " + topic, e);
+            }
+        }
+        Header typeHeader = headers == null ? null : headers.lastHeader(EventBinarySerializer.TYPE_ID_HEADER);
+        if (typeHeader == null) {
+            throw new SerializationException("Record from " + topic + " is neither binary nor typed JSON");
+        }
+        try {
+            return objectMapper.readValue(data, jsonType(new String(typeHeader.value(), StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new SerializationException("Failed to read JSON event from " + topic, e);
+        }
+    }
+
+    private Class<?> jsonType(String name) {
+        if (!name.startsWith(TRUSTED_PACKAGE)) {
+            throw new SerializationException("Refusing to deserialize untrusted type " + name);
+        }
+        return jsonTypes.computeIfAbsent(name, type -> {
+            try {
+                return Class.forName(type);
+            } catch (ClassNotFoundException e) {
+                throw new SerializationException("Unknown event type " + type, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package com.hassani.commonlib.serialization;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Kafka value serializer writing the {@link EventCodec} layout. Types without a binary layout are
+ * written as JSON with the same {@code __TypeId__} header the Spring JsonSerializer uses, so
+ * {@link EventBinaryDeserializer} can read them back.
+ */
+public class EventBinarySerializer implements Serializer<Object> {
+    public static final String TYPE_ID_HEADER = "__TypeId__";
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (data == null) {
+            return null;
+        }
+        if (EventCodec.supports(data.getClass())) {
+            return EventCodec.encode(data);
+        }
+        try {
+            if (headers != null) {
+                headers.remove(TYPE_ID_HEADER);
+                headers.add(TYPE_ID_HEADER, data.getClass().getName().getBytes(StandardCharsets.UTF_8));
+            }
+            return objectMapper.writeValueAsBytes(data);
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Failed to serialize " + data.getClass().getName() + " for " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.hassani.commonlib.serialization;
+
+import com.hassani.commonlib.event.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Explicit binary layout of the saga events. Every payload starts with
+ * {@code [magic][layout version][type id]} followed by the fields of that type in declaration order.
+ * Type ids are part of the wire format and must never be reused. Only {@link #VERSION} is decoded: a
+ * layout change needs a new version, read by the consumers before any producer writes it.
+ */
+public final class EventCodec {
+    public static final int MAGIC = 0xE5;
+    public static final int VERSION = 1;
+
+    private static final Map<Class<?>, Registration<?>> BY_TYPE = new HashMap<>();
+    private static final Registration<?>[] BY_ID = new Registration<?>[64];
+
+    static {
+        register(1, InitiateTransfer.class,
+                (e, w) -> w.writeNullableLong(e.getTransactionId()).writeNullableString(e.getFromAccount())
+                        .writeNullableString(e.getToAccount()).writeNullableDouble(e.getAmount()),
+                r -> new InitiateTransfer(r.readNullableLong(), r.readNullableString(),
+                        r.readNullableString(), r.readNullableDouble()));
+        register(2, AccountDebited.class,
+                (e, w) -> w.writeNullableLong(e.getTransactionId()).writeNullableString(e.getAccountNumber())
+                        .writeNullableDouble(e.getAmount()),
+                r -> new AccountDebited(r.readNullableLong(), r.readNullableString(), r.readNullableDouble()));
+        register(3, AccountCredited.class,
+                (e, w) -> w.writeNullableLong(e.getTransactionId()).writeNullableString(e.getAccountNumber())
+                        .writeNullableDouble(e.getAmount()),
+                r -> new AccountCredited(r.readNullableLong(), r.readNullableString(), r.readNullableDouble()));
+        register(4, CreditAccount.class,
+                (e, w) -> w.writeNullableLong(e.getTransactionId()).writeNullableString(e.getAccountNumber())
+                        .writeNullableDouble(e.getAmount()),
+                r -> new CreditAccount(r.readNullableLong(), r.readNullableString(), r.readNullableDouble()));
+        register(5, TransferFailed.class,
+                (e, w) -> w.writeNullableLong(e.getTransactionId()).writeNullableString(e.getFromAccount())
+                        .writeNullableDouble(e.getAmount()),
+                r -> new TransferFailed(r.readNullableLong(), r.readNullableString(), r.readNullableDouble()));
+        register(6, CreditFailed.class,
+                (e, w) -> w.writeNullableLong(e.getTransactionId()).writeNullableString(e.getAccountNumber())
+                        .writeNullableDouble(e.getAmount()),
+                r -> new CreditFailed(r.readNullableLong(), r.readNullableString(), r.readNullableDouble()));
+        register(7, RevertDebit.class,
+                (e, w) -> w.writeNullableLong(e.getTransactionId()).writeNullableString(e.getAccountNumber())
+                        .writeNullableDouble(e.getAmount()),
+                r -> new RevertDebit(r.readNullableLong(), r.readNullableString(), r.readNullableDouble()));
+        register(8, AccountOpened.class,
+                (e, w) -> w.writeNullableString(e.getAccountNumber()),
+                r -> new AccountOpened(r.readNullableString()));
+        register(9, AccountClosed.class,
+                (e, w) -> w.writeNullableString(e.getAccountNumber()),
+                r -> new AccountClosed(r.readNullableString()));
+        register(10, SettleNetTransfer.class,
+                (e, w) -> w.writeNullableLong(e.getSettlementId()).writeNullableString(e.getAccountA())
+                        .writeNullableString(e.getAccountB()).writeLongArray(e.getTransactionIds())
+                        .writeDoubleArray(e.getAmounts()),
+                r -> new SettleNetTransfer(r.readNullableLong(), r.readNullableString(), r.readNullableString(),
+                        r.readLongArray(), r.readDoubleArray()));
+        register(11, NetTransferSettled.class,
+                (e, w) -> w.writeNullableLong(e.getSettlementId()).writeNullableString(e.getAccountA())
+                        .writeNullableString(e.getAccountB()).writeNullableDouble(e.getNetAmount())
+                        .writeByte(e.isSettled() ? 1 : 0),
+                r -> new NetTransferSettled(r.readNullableLong(), r.readNullableString(), r.readNullableString(),
+                        r.readNullableDouble(), r.readByte() == 1));
+    }
+
+    private EventCodec() {
+    }
+
+    public static boolean supports(Class<?> type) {
+        return BY_TYPE.containsKey(type);
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= 3 && (data[0] & 0xFF) == MAGIC;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> byte[] encode(T event) {
+        Registration<T> registration = (Registration<T>) BY_TYPE.get(event.getClass());
+        if (registration == null) {
+            throw new IllegalArgumentException("No binary layout registered for " + event.getClass().getName());
+        }
+        BinaryWriter writer = new BinaryWriter(48)
+                .writeByte(MAGIC)
+                .writeByte(VERSION)
+                .writeByte(registration.id());
+        registration.writer().accept(event, writer);
+        return writer.toByteArray();
+    }
+
+    public static Object decode(byte[] data) {
+        BinaryReader reader = new BinaryReader(data);
+        if (reader.readByte() != MAGIC) {
+            throw new IllegalArgumentException("Payload is not a binary saga event");
+        }
+        int version = reader.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary event layout version " + version);
+        }
+        int typeId = reader.readByte();
+        Registration<?> registration = typeId < BY_ID.length ? BY_ID[typeId] : null;
+        if (registration == null) {
+            throw new IllegalArgumentException("Unknown binary event type id " + typeId);
+        }
+        return registration.reader().apply(reader);
+    }
+
+    private static <T> void register(int id, Class<T> type, BiConsumer<T, BinaryWriter> writer,
+                                     Function<BinaryReader, T> reader) {
+        Registration<T> registration = new Registration<>(id, type, writer, reader);
+        if (BY_ID[id] != null) {
+            throw new IllegalStateException("Duplicate binary event type id " + id);
+        }
+        BY_ID[id] = registration;
+        BY_TYPE.put(type, registration);
+    }
+
+    private record Registration<T>(int id, Class<T> type, BiConsumer<T, BinaryWriter> writer,
+                                   Function<BinaryReader, T> reader) {
+    }
+}
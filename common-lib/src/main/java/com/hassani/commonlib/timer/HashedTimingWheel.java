@@ -0,0 +1,150 @@
+package com.hassani.commonlib.timer;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keyed deadlines on a hashed timing wheel. Scheduling, rescheduling and cancelling a key are O(1):
+ * callers only touch a concurrent map and a hand-off queue, and a single worker thread moves new
+ * deadlines into their bucket and expires one bucket per tick. Deadlines fire at most one tick late.
+ * The expiry callback runs on the worker thread and must not block.
+ */
+public class HashedTimingWheel<K> implements AutoCloseable {
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Deadline<K>>[] buckets;
+    private final Map<K, Deadline<K>> deadlines = new ConcurrentHashMap<>();
+    private final Queue<Deadline<K>> scheduled = new ConcurrentLinkedQueue<>();
+    private final Consumer<K> onExpire;
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(String name, Duration tick, int wheelSize, Consumer<K> onExpire) {
+        if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two: " + wheelSize);
+        }
+        this.tickNanos = tick.toNanos();
+        if (tickNanos < TimeUnit.MILLISECONDS.toNanos(1)) {
+            throw new IllegalArgumentException("tick must be at least 1ms: " + tick);
+        }
+        this.mask = wheelSize - 1;
+        this.buckets = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.onExpire = onExpire;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name + "-timing-wheel");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Sets the deadline of the key, replacing any earlier one.
+     */
+    public void schedule(K key, Duration delay) {
+        Deadline<K> deadline = new Deadline<>(key, System.nanoTime() + Math.max(0, delay.toNanos()));
+        Deadline<K> previous = deadlines.put(key, deadline);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        scheduled.add(deadline);
+    }
+
+    public boolean cancel(K key) {
+        Deadline<K> deadline = deadlines.remove(key);
+        if (deadline == null) {
+            return false;
+        }
+        deadline.cancelled = true;
+        return true;
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long wakeUp = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = wakeUp - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            tick++;
+            transferScheduled(tick);
+            expire(buckets[(int) (tick & mask)], tick);
+        }
+    }
+
+    private void transferScheduled(long currentTick) {
+        Deadline<K> deadline;
+        while ((deadline = scheduled.poll()) != null) {
+            if (deadline.cancelled) {
+                continue;
+            }
+            // Past-due deadlines go into the current bucket and fire on this tick
+            deadline.tick = Math.max(currentTick, ceilDiv(deadline.nanos - startNanos, tickNanos));
+            buckets[(int) (deadline.tick & mask)].add(deadline);
+        }
+    }
+
+    // Entries further than one revolution away stay in the bucket until their round comes up
+    private void expire(Queue<Deadline<K>> bucket, long currentTick) {
+        Iterator<Deadline<K>> it = bucket.iterator();
+        while (it.hasNext()) {
+            Deadline<K> deadline = it.next();
+            if (deadline.cancelled) {
+                it.remove();
+            } else if (deadline.tick <= currentTick) {
+                it.remove();
+                if (deadlines.remove(deadline.key, deadline)) {
+                    try {
+                        onExpire.accept(deadline.key);
+                    } catch (RuntimeException e) {
+                        // Callbacks report their own failures, one that throws must not stop the wheel
+                    }
+                }
+            }
+        }
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    private static final class Deadline<K> {
+        final K key;
+        final long nanos;
+        long tick;
+        volatile boolean cancelled;
+
+        Deadline(K key, long nanos) {
+            this.key = key;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.hassani.commonlib.trace;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * A span per Spring Data repository call made inside a sampled trace, named after the repository
+ * interface and method. Calls outside a trace only pay for the thread-local check.
+ */
+@Aspect
+@RequiredArgsConstructor
+public class RepositoryTracing {
+    // Repository proxies list the application's repository interface first
+    private static final ClassValue<String> REPOSITORY_NAMES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            Class<?>[] interfaces = type.getInterfaces();
+            return interfaces.length > 0 ? interfaces[0].getSimpleName() : type.getSimpleName();
+        }
+    };
+
+    private final Tracer tracer;
+
+    @Around("this(org.springframework.data.repository.Repository)")
+    public Object trace(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!tracer.isRecording()) {
+            return joinPoint.proceed();
+        }
+        String name = "db " + REPOSITORY_NAMES.get(joinPoint.getThis().getClass()) + "." + joinPoint.getSignature().getName();
+        try (TraceSpan span = tracer.startSpan(name)) {
+            try {
+                return joinPoint.proceed();
+            } catch (Throwable e) {
+                span.markError();
+                throw e;
+            }
+        }
+    }
+}
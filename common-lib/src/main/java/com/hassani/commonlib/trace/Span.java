@@ -0,0 +1,18 @@
+package com.hassani.commonlib.trace;
+
+/**
+ * A finished span. Start times are epoch microseconds, so spans exported by different services line up.
+ */
+public record Span(String traceId,
+                   String spanId,
+                   String parentSpanId,
+                   String service,
+                   String name,
+                   long startMicros,
+                   long durationMicros,
+                   boolean error) {
+
+    public long endMicros() {
+        return startMicros + durationMicros;
+    }
+}
@@ -0,0 +1,57 @@
+package com.hassani.commonlib.trace;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GET /actuator/spans?limit=N lists the slowest traces in the span ring, GET /actuator/spans/{traceId}
+ * one trace, and POST /actuator/spans writes the whole ring to saga.tracing.export-dir as JSON lines.
+ */
+@Endpoint(id = "spans")
+public class SpanEndpoint {
+    private final SpanRecorder spanRecorder;
+    private final Tracer tracer;
+    private final Path exportDir;
+
+    public SpanEndpoint(SpanRecorder spanRecorder, Tracer tracer, Path exportDir) {
+        this.spanRecorder = spanRecorder;
+        this.tracer = tracer;
+        this.exportDir = exportDir;
+    }
+
+    @ReadOperation
+    public Map<String, Object> slowest(@Nullable Integer limit) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("service", tracer.service());
+        result.put("capacity", spanRecorder.capacity());
+        result.put("recorded", spanRecorder.recorded());
+        result.put("traces", spanRecorder.slowestTraces(limit != null ? limit : 10));
+        return result;
+    }
+
+    @ReadOperation
+    public List<Span> trace(@Selector String traceId) {
+        return spanRecorder.trace(traceId);
+    }
+
+    @WriteOperation
+    public Map<String, Object> export() {
+        Path file = exportDir.resolve("spans-" + tracer.service() + "-" + System.currentTimeMillis() + ".jsonl");
+        try {
+            int spans = spanRecorder.export(file);
+            return Map.of("file", file.toAbsolutePath().toString(), "spans", spans);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to export spans to " + file, e);
+        }
+    }
+}
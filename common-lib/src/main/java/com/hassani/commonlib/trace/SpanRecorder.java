@@ -0,0 +1,104 @@
+package com.hassani.commonlib.trace;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring of the most recent spans. Recording is one atomic increment plus an ordered store,
+ * with no lock and no allocation beyond the span itself; once the ring is full the oldest spans are
+ * overwritten. Queries copy the ring and work on the copy, so they never block recording threads.
+ */
+public class SpanRecorder {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final AtomicReferenceArray<Span> slots;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public SpanRecorder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public void record(Span span) {
+        slots.lazySet((int) (sequence.getAndIncrement() & mask), span);
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * Spans recorded since startup, including those already overwritten.
+     */
+    public long recorded() {
+        return sequence.get();
+    }
+
+    public List<Span> snapshot() {
+        List<Span> spans = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            Span span = slots.get(i);
+            if (span != null) {
+                spans.add(span);
+            }
+        }
+        spans.sort(Comparator.comparingLong(Span::startMicros));
+        return spans;
+    }
+
+    public List<Span> trace(String traceId) {
+        return snapshot().stream().filter(span -> span.traceId().equals(traceId)).toList();
+    }
+
+    /**
+     * The limit traces with the longest span of time between their first start and last end.
+     */
+    public List<TraceSummary> slowestTraces(int limit) {
+        Map<String, List<Span>> byTrace = new HashMap<>();
+        for (Span span : snapshot()) {
+            byTrace.computeIfAbsent(span.traceId(), id -> new ArrayList<>()).add(span);
+        }
+        List<TraceSummary> traces = new ArrayList<>(byTrace.size());
+        for (Map.Entry<String, List<Span>> entry : byTrace.entrySet()) {
+            List<Span> spans = entry.getValue();
+            long start = spans.get(0).startMicros();
+            long end = spans.stream().mapToLong(Span::endMicros).max().orElse(start);
+            traces.add(new TraceSummary(entry.getKey(), spans.get(0).name(), start, end - start, spans));
+        }
+        traces.sort(Comparator.comparingLong(TraceSummary::durationMicros).reversed());
+        return traces.subList(0, Math.min(limit, traces.size()));
+    }
+
+    /**
+     * Writes every span in the ring to the file as JSON lines, oldest first, and returns the count.
+     */
+    public int export(Path file) throws IOException {
+        List<Span> spans = snapshot();
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (Span span : spans) {
+                writer.write(MAPPER.writeValueAsString(span));
+                writer.newLine();
+            }
+        }
+        return spans.size();
+    }
+}
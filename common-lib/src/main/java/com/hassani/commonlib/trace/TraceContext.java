@@ -0,0 +1,76 @@
+package com.hassani.commonlib.trace;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * W3C trace context, carried as a traceparent header on HTTP requests and Kafka records:
+ * 00-{32 hex trace ID}-{16 hex span ID}-{flags}, where flag 01 means the trace is sampled.
+ */
+public record TraceContext(String traceId, String spanId, boolean sampled) {
+    public static final String HEADER = "traceparent";
+    private static final HexFormat HEX = HexFormat.of();
+
+    public static TraceContext newRoot(boolean sampled) {
+        return new TraceContext(randomId() + randomId(), randomId(), sampled);
+    }
+
+    public TraceContext child() {
+        return new TraceContext(traceId, randomId(), sampled);
+    }
+
+    public String traceParent() {
+        return "00-" + traceId + '-' + spanId + (sampled ? "-01" : "-00");
+    }
+
+    /**
+     * Parses a traceparent value, or returns null when it is missing or malformed.
+     */
+    public static TraceContext parse(String traceParent) {
+        if (traceParent == null || traceParent.length() != 55
+                || traceParent.charAt(2) != '-' || traceParent.charAt(35) != '-' || traceParent.charAt(52) != '-') {
+            return null;
+        }
+        String traceId = traceParent.substring(3, 35);
+        String spanId = traceParent.substring(36, 52);
+        if (!isHex(traceParent, 0, 2) || !isHex(traceId, 0, 32) || !isHex(spanId, 0, 16) || !isHex(traceParent, 53, 55)
+                || traceId.equals("00000000000000000000000000000000") || spanId.equals("0000000000000000")) {
+            return null;
+        }
+        boolean sampled = (HEX.fromHexDigits(traceParent, 53, 55) & 1) == 1;
+        return new TraceContext(traceId, spanId, sampled);
+    }
+
+    public static TraceContext fromHeaders(Headers headers) {
+        Header header = headers.lastHeader(HEADER);
+        return header == null || header.value() == null
+                ? null : parse(new String(header.value(), StandardCharsets.US_ASCII));
+    }
+
+    public void writeTo(Headers headers) {
+        headers.remove(HEADER);
+        headers.add(HEADER, traceParent().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String randomId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return HEX.toHexDigits(id);
+    }
+
+    private static boolean isHex(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+package com.hassani.commonlib.trace;
+
+/**
+ * An open span, recorded when closed. A scoped span is the thread's current context until it is
+ * closed on the same thread; an async span leaves the thread alone and may be ended on any thread.
+ */
+public final class TraceSpan implements AutoCloseable {
+    static final TraceSpan NOOP = new TraceSpan(null, null, null, null, false, null, 0, 0);
+
+    private final Tracer tracer;
+    private final String name;
+    private final TraceContext context;
+    private final String parentSpanId;
+    private final boolean scoped;
+    private final TraceContext previous;
+    private final long startMicros;
+    private final long startNanos;
+    private boolean error;
+    private boolean ended;
+
+    TraceSpan(Tracer tracer, String name, TraceContext context, String parentSpanId,
+              boolean scoped, TraceContext previous, long startMicros, long startNanos) {
+        this.tracer = tracer;
+        this.name = name;
+        this.context = context;
+        this.parentSpanId = parentSpanId;
+        this.scoped = scoped;
+        this.previous = previous;
+        this.startMicros = startMicros;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * The context to hand downstream, or null when nothing is traced.
+     */
+    public TraceContext context() {
+        return context;
+    }
+
+    public void markError() {
+        error = true;
+    }
+
+    public void end(boolean failed) {
+        if (failed) {
+            error = true;
+        }
+        close();
+    }
+
+    @Override
+    public void close() {
+        if (tracer == null || ended) {
+            return;
+        }
+        ended = true;
+        if (scoped) {
+            Tracer.restore(previous);
+        }
+        if (context.sampled()) {
+            tracer.record(new Span(context.traceId(), context.spanId(), parentSpanId, tracer.service(), name,
+                    startMicros, (System.nanoTime() - startNanos) / 1000, error));
+        }
+    }
+}
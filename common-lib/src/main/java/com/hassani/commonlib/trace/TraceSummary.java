@@ -0,0 +1,9 @@
+package com.hassani.commonlib.trace;
+
+import java.util.List;
+
+/**
+ * The spans one service recorded for a trace, from the earliest start to the latest end.
+ */
+public record TraceSummary(String traceId, String rootName, long startMicros, long durationMicros, List<Span> spans) {
+}
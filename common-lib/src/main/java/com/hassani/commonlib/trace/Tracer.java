@@ -0,0 +1,108 @@
+package com.hassani.commonlib.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Starts spans and tracks the current trace context per thread. Only a trace entering the system
+ * (an HTTP request without a traceparent) decides whether it is sampled; everything downstream
+ * follows that flag, and work that carries no context records nothing.
+ */
+public class Tracer {
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+    private final String service;
+    private final SpanRecorder recorder;
+    private final boolean enabled;
+    private final double sampleRatio;
+    private final long baseMicros;
+    private final long baseNanos;
+
+    public Tracer(String service, SpanRecorder recorder, boolean enabled, double sampleRatio) {
+        this.service = service;
+        this.recorder = recorder;
+        this.enabled = enabled;
+        this.sampleRatio = sampleRatio;
+        this.baseMicros = System.currentTimeMillis() * 1000;
+        this.baseNanos = System.nanoTime();
+    }
+
+    public static TraceContext current() {
+        return CURRENT.get();
+    }
+
+    public String service() {
+        return service;
+    }
+
+    /**
+     * True when the current thread is inside a sampled trace, so callers can skip building span names.
+     */
+    public boolean isRecording() {
+        TraceContext current = CURRENT.get();
+        return enabled && current != null && current.sampled();
+    }
+
+    /**
+     * Scoped span continuing the caller's trace, or starting a new one when parent is null.
+     */
+    public TraceSpan startRoot(String name, TraceContext parent) {
+        if (!enabled) {
+            return TraceSpan.NOOP;
+        }
+        if (parent == null) {
+            boolean sampled = sampleRatio >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRatio;
+            return start(name, TraceContext.newRoot(sampled), null, true);
+        }
+        return start(name, parent.child(), parent.spanId(), true);
+    }
+
+    /**
+     * Scoped span under parent, or a no-op when parent is null.
+     */
+    public TraceSpan startChild(String name, TraceContext parent) {
+        if (!enabled || parent == null) {
+            return TraceSpan.NOOP;
+        }
+        return start(name, parent.child(), parent.spanId(), true);
+    }
+
+    /**
+     * Scoped span under the current context, or a no-op outside a trace.
+     */
+    public TraceSpan startSpan(String name) {
+        return startChild(name, CURRENT.get());
+    }
+
+    /**
+     * Span under parent that leaves the current thread alone, for work completed by a callback.
+     */
+    public TraceSpan startAsync(String name, TraceContext parent) {
+        if (!enabled || parent == null) {
+            return TraceSpan.NOOP;
+        }
+        return start(name, parent.child(), parent.spanId(), false);
+    }
+
+    void record(Span span) {
+        recorder.record(span);
+    }
+
+    static void restore(TraceContext previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    private TraceSpan start(String name, TraceContext context, String parentSpanId, boolean scoped) {
+        TraceContext previous = null;
+        if (scoped) {
+            previous = CURRENT.get();
+            CURRENT.set(context);
+        }
+        long nanos = System.nanoTime();
+        return new TraceSpan(this, name, context, parentSpanId, scoped, previous,
+                baseMicros + (nanos - baseNanos) / 1000, nanos);
+    }
+}
@@ -0,0 +1,103 @@
+package com.hassani.commonlib.trace;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.RecordInterceptor;
+
+import java.nio.file.Path;
+
+/**
+ * The span recorder and tracer shared by both services, plus whichever of the HTTP filter, Kafka
+ * record interceptor, repository aspect and /actuator/spans endpoint the service has the classes for.
+ */
+@AutoConfiguration
+public class TracingAutoConfiguration {
+
+    @Bean
+    public SpanRecorder spanRecorder(@Value("${saga.tracing.buffer-size:16384}") int bufferSize) {
+        return new SpanRecorder(bufferSize);
+    }
+
+    @Bean
+    public Tracer tracer(SpanRecorder spanRecorder,
+                         @Value("${spring.application.name:application}") String service,
+                         @Value("${saga.tracing.enabled:true}") boolean enabled,
+                         @Value("${saga.tracing.sample-ratio:1.0}") double sampleRatio) {
+        return new Tracer(service, spanRecorder, enabled, sampleRatio);
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(RecordInterceptor.class)
+    static class KafkaTracing {
+
+        // Record listeners continue the trace from the record's traceparent header; batch listeners are not
+        // intercepted, the ordered dispatcher opens the same span per record on its lanes instead
+        @Bean
+        public RecordInterceptor<Object, Object> tracingRecordInterceptor(Tracer tracer) {
+            ThreadLocal<TraceSpan> spans = new ThreadLocal<>();
+            return new RecordInterceptor<>() {
+                @Override
+                public ConsumerRecord<Object, Object> intercept(ConsumerRecord<Object, Object> record,
+                                                                Consumer<Object, Object> consumer) {
+                    spans.set(tracer.startChild("handle " + record.topic(), TraceContext.fromHeaders(record.headers())));
+                    return record;
+                }
+
+                @Override
+                public void failure(ConsumerRecord<Object, Object> record, Exception exception,
+                                    Consumer<Object, Object> consumer) {
+                    TraceSpan span = spans.get();
+                    if (span != null) {
+                        span.markError();
+                    }
+                }
+
+                @Override
+                public void afterRecord(ConsumerRecord<Object, Object> record, Consumer<Object, Object> consumer) {
+                    TraceSpan span = spans.get();
+                    if (span != null) {
+                        spans.remove();
+                        span.close();
+                    }
+                }
+            };
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class WebTracing {
+
+        @Bean
+        public TracingFilter tracingFilter(Tracer tracer) {
+            return new TracingFilter(tracer);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = {"org.aspectj.lang.annotation.Aspect", "org.springframework.data.repository.Repository"})
+    static class RepositoryTracingConfiguration {
+
+        @Bean
+        public RepositoryTracing repositoryTracing(Tracer tracer) {
+            return new RepositoryTracing(tracer);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class SpanEndpointConfiguration {
+
+        @Bean
+        public SpanEndpoint spanEndpoint(SpanRecorder spanRecorder, Tracer tracer,
+                                         @Value("${saga.tracing.export-dir:./data/traces}") Path exportDir) {
+            return new SpanEndpoint(spanRecorder, tracer, exportDir);
+        }
+    }
+}
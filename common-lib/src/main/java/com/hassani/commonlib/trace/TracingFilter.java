@@ -0,0 +1,45 @@
+package com.hassani.commonlib.trace;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Continues the caller's traceparent or starts a new trace, and returns it on the response so a
+ * client can look the trace up on /actuator/spans.
+ */
+@RequiredArgsConstructor
+public class TracingFilter extends OncePerRequestFilter {
+    private final Tracer tracer;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return path.startsWith("/actuator") || path.startsWith("/h2-console");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (TraceSpan span = tracer.startRoot(request.getMethod() + " " + request.getRequestURI(),
+                TraceContext.parse(request.getHeader(TraceContext.HEADER)))) {
+            if (span.context() != null) {
+                response.setHeader(TraceContext.HEADER, span.context().traceParent());
+            }
+            try {
+                chain.doFilter(request, response);
+            } catch (IOException | ServletException | RuntimeException e) {
+                span.markError();
+                throw e;
+            }
+            if (response.getStatus() >= 500) {
+                span.markError();
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.hassani.commonlib.dispatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyOrderedDispatcherTest {
+    private final KeyOrderedDispatcher dispatcher = new KeyOrderedDispatcher("test", 4);
+
+    @AfterEach
+    void close() {
+        dispatcher.close();
+    }
+
+    @Test
+    void keepsTheOrderOfEachKey() {
+        List<int[]> items = new ArrayList<>();
+        for (int seq = 0; seq < 200; seq++) {
+            for (int key = 0; key < 10; key++) {
+                items.add(new int[]{key, seq});
+            }
+        }
+        Map<Integer, List<Integer>> seen = new ConcurrentHashMap<>();
+
+        dispatcher.dispatch(items, item -> item[0],
+                item -> seen.computeIfAbsent(item[0], key -> Collections.synchronizedList(new ArrayList<>())).add(item[1]));
+
+        assertThat(seen).hasSize(10);
+        seen.values().forEach(sequence -> assertThat(sequence).hasSize(200).isSorted());
+    }
+
+    @Test
+    void runsDifferentKeysInParallel() {
+        // Keys 0 and 1 land on different lanes; each handler waits for the other one to start
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        dispatcher.dispatch(List.of(0, 1), key -> key, key -> {
+            bothStarted.countDown();
+            try {
+                assertThat(bothStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void reportsTheLowestFailedIndexAndSkipsTheRestOfThatLane() {
+        // Even numbers on lane 0, odd numbers on lane 1; both lanes fail
+        List<Integer> items = List.of(0, 1, 2, 3, 4, 5, 6, 7);
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+
+        assertThatThrownBy(() -> dispatcher.dispatch(items, item -> item % 2, item -> {
+            if (item == 3 || item == 4) {
+                throw new IllegalStateException("boom " + item);
+            }
+            handled.add(item);
+        }))
+                .isInstanceOfSatisfying(KeyOrderedDispatcher.DispatchException.class, e -> {
+                    assertThat(e.getIndex()).isEqualTo(3);
+                    assertThat(e.getCause()).hasMessage("boom 3");
+                });
+
+        // Lane 0 stopped at 4 but had already handled 0 and 2, which come before the reported index;
+        // lane 1 stopped at 3, so 5 and 7 were skipped
+        assertThat(handled).containsExactlyInAnyOrder(0, 1, 2);
+    }
+
+    @Test
+    void handlesItemsOfOtherLanesPastTheFailedIndex() {
+        List<Integer> items = List.of(0, 1, 2, 3);
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+
+        assertThatThrownBy(() -> dispatcher.dispatch(items, item -> item % 2, item -> {
+            if (item == 1) {
+                throw new IllegalStateException("boom");
+            }
+            handled.add(item);
+        }))
+                .isInstanceOfSatisfying(KeyOrderedDispatcher.DispatchException.class,
+                        e -> assertThat(e.getIndex()).isEqualTo(1));
+
+        // A caller resuming from index 1 hands item 2 to the handler a second time
+        assertThat(handled).containsExactlyInAnyOrder(0, 2);
+    }
+}
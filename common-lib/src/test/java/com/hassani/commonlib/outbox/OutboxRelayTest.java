@@ -0,0 +1,147 @@
+package com.hassani.commonlib.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hassani.commonlib.trace.SpanRecorder;
+import com.hassani.commonlib.trace.Tracer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+    private static final int BATCH_SIZE = 3;
+
+    // The outbox table, in ID order, behind a mocked repository
+    private final List<OutboxEvent> outbox = new ArrayList<>();
+    private final List<Long> sent = new ArrayList<>();
+    private final Set<String> failingKeys = new HashSet<>();
+    private final OutboxRepository outboxRepository = mock(OutboxRepository.class);
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+    private final OutboxRelay relay = new OutboxRelay(outboxRepository, kafkaTemplate, new ObjectMapper(),
+            new Tracer("test", new SpanRecorder(16), false, 0), BATCH_SIZE);
+    private long nextId = 1;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(outboxRepository.findByOrderByIdAsc(any())).thenAnswer(invocation ->
+                head(outbox, invocation.getArgument(0)));
+        when(outboxRepository.findByMessageKeyNotInOrderByIdAsc(any(), any())).thenAnswer(invocation -> {
+            Collection<String> excluded = invocation.getArgument(0);
+            return head(outbox.stream().filter(event -> !excluded.contains(event.getMessageKey())).toList(),
+                    invocation.getArgument(1));
+        });
+        doAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            outbox.removeIf(event -> ids.contains(event.getId()));
+            return null;
+        }).when(outboxRepository).deleteAllByIdInBatch(any());
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+            ProducerRecord<String, Object> record = invocation.getArgument(0);
+            sent.add(((Number) ((Map<?, ?>) record.value()).get("id")).longValue());
+            return failingKeys.contains(record.key())
+                    ? CompletableFuture.failedFuture(new IllegalStateException("record too large"))
+                    : CompletableFuture.completedFuture(new SendResult<>(record, null));
+        });
+    }
+
+    @Test
+    void aKeyThatAlwaysFailsDoesNotStallTheOtherKeys() {
+        failingKeys.add("POISON");
+        // Enough rows of the failing key to fill the first window on their own
+        for (int i = 0; i < 5; i++) {
+            queue("POISON");
+        }
+        queue("A");
+        queue("B");
+        queue("A");
+        queue("C");
+
+        relay.relay();
+
+        assertThat(keys()).containsExactly("POISON", "POISON", "POISON", "POISON", "POISON");
+        // The failing key was tried once, then left out of the following windows
+        assertThat(sent).containsExactly(1L, 6L, 7L, 8L, 9L);
+    }
+
+    @Test
+    void theRowsAfterAFailedOneKeepTheirOrder() {
+        failingKeys.add("POISON");
+        queue("POISON");
+        queue("A");
+        queue("POISON");
+        queue("A");
+
+        relay.relay();
+        assertThat(keys()).containsExactly("POISON", "POISON");
+
+        // Once the key gets through, its rows go out in their original order
+        failingKeys.clear();
+        sent.clear();
+        relay.relay();
+
+        assertThat(outbox).isEmpty();
+        assertThat(sent).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void keepsDrainingAfterABatchThatWasNotFullyRelayed() {
+        failingKeys.add("POISON");
+        queue("A");
+        queue("POISON");
+        queue("B");
+        for (int i = 0; i < 6; i++) {
+            queue("K" + i);
+        }
+
+        relay.relay();
+
+        assertThat(keys()).containsExactly("POISON");
+    }
+
+    @Test
+    void stopsTheRoundWhenNothingGetsThrough() {
+        failingKeys.addAll(List.of("A", "B", "C", "D", "E", "F"));
+        for (String key : failingKeys.stream().sorted().toList()) {
+            queue(key);
+        }
+
+        relay.relay();
+
+        // Every key of the first window failed, which looks like the broker, so the round ends there
+        assertThat(sent).containsExactly(1L, 2L, 3L);
+        assertThat(outbox).hasSize(6);
+    }
+
+    private void queue(String key) {
+        long id = nextId++;
+        outbox.add(new OutboxEvent(id, "topic", key, Map.class.getName(), "{\"id\":" + id + "}",
+                Instant.now(), null));
+    }
+
+    private List<String> keys() {
+        return outbox.stream().map(OutboxEvent::getMessageKey).toList();
+    }
+
+    private static List<OutboxEvent> head(List<OutboxEvent> events, Limit limit) {
+        return List.copyOf(events.subList(0, Math.min(limit.max(), events.size())));
+    }
+}
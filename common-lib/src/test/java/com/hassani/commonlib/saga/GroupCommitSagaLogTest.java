@@ -0,0 +1,168 @@
+package com.hassani.commonlib.saga;
+
+import com.hassani.commonlib.saga.SagaFixture.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static com.hassani.commonlib.saga.SagaFixture.DEFINITION;
+import static com.hassani.commonlib.saga.SagaFixture.TRANSFER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GroupCommitSagaLogTest {
+    private final List<List<Long>> written = new CopyOnWriteArrayList<>();
+    private final List<Integer> flushed = new CopyOnWriteArrayList<>();
+    // The first write waits for this, so the appends made meanwhile queue up for the next batch
+    private final CountDownLatch firstWriteEntered = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+    private GroupCommitSagaLog<State, Transfer> log;
+
+    @AfterEach
+    void close() {
+        releaseFirstWrite.countDown();
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Test
+    void appendsMadeDuringAWriteGoOutTogether() throws Exception {
+        log = new GroupCommitSagaLog<>("test", this::blockFirstWrite, 256, flushed::add);
+
+        CompletableFuture<Void> first = log.append(transition(1L));
+        assertThat(firstWriteEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        List<CompletableFuture<Void>> queued = IntStream.rangeClosed(2, 6).mapToObj(id -> log.append(transition(id))).toList();
+        assertThat(queued).noneMatch(CompletableFuture::isDone);
+
+        releaseFirstWrite.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Void> durable : queued) {
+            durable.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(written).containsExactly(List.of(1L), List.of(2L, 3L, 4L, 5L, 6L));
+        assertThat(flushed).containsExactly(1, 5);
+    }
+
+    @Test
+    void aBatchNeverExceedsMaxBatch() throws Exception {
+        log = new GroupCommitSagaLog<>("test", this::blockFirstWrite, 2, flushed::add);
+
+        log.append(transition(1L));
+        assertThat(firstWriteEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        List<CompletableFuture<Void>> queued = IntStream.rangeClosed(2, 6).mapToObj(id -> log.append(transition(id))).toList();
+        releaseFirstWrite.countDown();
+        CompletableFuture.allOf(queued.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertThat(written).containsExactly(List.of(1L), List.of(2L, 3L), List.of(4L, 5L), List.of(6L));
+    }
+
+    @Test
+    void aFailedWriteFailsEveryTransitionOfItsBatchOnly() throws Exception {
+        IllegalStateException failure = new IllegalStateException("database down");
+        log = new GroupCommitSagaLog<>("test", transitions -> {
+            blockFirstWrite(transitions);
+            if (written.size() == 2) {
+                throw failure;
+            }
+            return Set.of();
+        }, 256, flushed::add);
+
+        CompletableFuture<Void> first = log.append(transition(1L));
+        assertThat(firstWriteEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        List<CompletableFuture<Void>> failed = List.of(log.append(transition(2L)), log.append(transition(3L)));
+        releaseFirstWrite.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Void> durable : failed) {
+            assertThatThrownBy(() -> durable.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class).hasCause(failure);
+        }
+        // The flusher carries on with the next batch
+        log.append(transition(4L)).get(5, TimeUnit.SECONDS);
+        assertThat(flushed).containsExactly(1, 1);
+    }
+
+    @Test
+    void aRefusedSagaFailsAloneAndTheRestOfItsBatchIsDurable() throws Exception {
+        log = new GroupCommitSagaLog<>("test", transitions -> {
+            blockFirstWrite(transitions);
+            return Set.of(3L);
+        }, 256, flushed::add);
+
+        CompletableFuture<Void> first = log.append(transition(1L));
+        assertThat(firstWriteEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Void> stored = log.append(transition(2L));
+        CompletableFuture<Void> refused = log.append(transition(3L));
+        releaseFirstWrite.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        stored.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> refused.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("refused the transition of saga 3");
+        assertThat(written).containsExactly(List.of(1L), List.of(2L, 3L));
+    }
+
+    @Test
+    void anErrorFailsTheBatchAndKeepsTheFlusherAlive() throws Exception {
+        Error failure = new StackOverflowError("writer overflowed");
+        log = new GroupCommitSagaLog<>("test", transitions -> {
+            written.add(ids(transitions));
+            if (written.size() == 1) {
+                throw failure;
+            }
+            return Set.of();
+        }, 256, flushed::add);
+
+        assertThatThrownBy(() -> log.append(transition(1L)).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasCause(failure);
+        log.append(transition(2L)).get(5, TimeUnit.SECONDS);
+
+        assertThat(written).containsExactly(List.of(1L), List.of(2L));
+        assertThat(flushed).containsExactly(1);
+    }
+
+    @Test
+    void aClosedLogRejectsAppends() {
+        log = new GroupCommitSagaLog<>("test", this::blockFirstWrite, 256, flushed::add);
+        log.close();
+
+        assertThatThrownBy(() -> log.append(transition(1L)).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Saga log test is closed");
+    }
+
+    private Set<Long> blockFirstWrite(List<SagaTransition<State, Transfer>> transitions) {
+        written.add(ids(transitions));
+        if (written.size() == 1) {
+            firstWriteEntered.countDown();
+            try {
+                releaseFirstWrite.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return Set.of();
+    }
+
+    private static List<Long> ids(List<SagaTransition<State, Transfer>> transitions) {
+        // The log reuses its list, so keep a copy
+        return transitions.stream().map(SagaTransition::sagaId).toList();
+    }
+
+    private static SagaTransition<State, Transfer> transition(long sagaId) {
+        return DEFINITION.start(sagaId, TRANSFER);
+    }
+}
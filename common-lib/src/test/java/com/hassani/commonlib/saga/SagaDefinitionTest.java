@@ -0,0 +1,97 @@
+package com.hassani.commonlib.saga;
+
+import com.hassani.commonlib.saga.SagaFixture.*;
+import org.junit.jupiter.api.Test;
+
+import static com.hassani.commonlib.saga.SagaFixture.DEFINITION;
+import static com.hassani.commonlib.saga.SagaFixture.TRANSFER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SagaDefinitionTest {
+
+    @Test
+    void walksEveryStepToCompleted() {
+        SagaTransition<State, Transfer> started = DEFINITION.start(7L, TRANSFER);
+        assertThat(started.from()).isNull();
+        assertThat(started.to()).isEqualTo(State.DEBITING);
+        assertThat(started.commands()).containsExactly(new SagaCommand("debit", "1001", 7L, false));
+
+        SagaTransition<State, Transfer> debited = DEFINITION.onEvent(7L, State.DEBITING, TRANSFER, new Debited(7L));
+        assertThat(debited.to()).isEqualTo(State.CREDITING);
+        assertThat(debited.trigger()).isEqualTo("debited");
+        assertThat(debited.commands()).containsExactly(new SagaCommand("credit", "7812", 7L, false));
+
+        SagaTransition<State, Transfer> credited = DEFINITION.onEvent(7L, State.CREDITING, TRANSFER, new Credited(7L));
+        assertThat(credited.to()).isEqualTo(State.DONE);
+        assertThat(credited.commands()).isEmpty();
+        assertThat(DEFINITION.isTerminal(credited.to())).isTrue();
+        assertThat(DEFINITION.command(State.DONE, TRANSFER)).isNull();
+    }
+
+    @Test
+    void aFailedStepCompensatesTheEarlierOnes() {
+        SagaTransition<State, Transfer> creditFailed =
+                DEFINITION.onEvent(7L, State.CREDITING, TRANSFER, new CreditFailed(7L));
+
+        assertThat(creditFailed.to()).isEqualTo(State.FAILED);
+        assertThat(creditFailed.compensates()).isTrue();
+        assertThat(creditFailed.commands()).containsExactly(new SagaCommand("revert", "1001", 7L, true));
+
+        // Nothing ran before the debit, so there is nothing to undo
+        SagaTransition<State, Transfer> debitFailed = DEFINITION.onEvent(7L, State.DEBITING, TRANSFER, new DebitFailed(7L));
+        assertThat(debitFailed.to()).isEqualTo(State.FAILED);
+        assertThat(debitFailed.commands()).isEmpty();
+    }
+
+    @Test
+    void aDebitLandingAfterTheSagaFailedIsReverted() {
+        SagaTransition<State, Transfer> late = DEFINITION.onEvent(7L, State.FAILED, TRANSFER, new Debited(7L));
+
+        assertThat(late.from()).isEqualTo(State.FAILED);
+        assertThat(late.to()).isEqualTo(State.FAILED);
+        assertThat(late.changesState()).isFalse();
+        assertThat(late.commands()).containsExactly(new SagaCommand("revert", "1001", 7L, true));
+
+        // The credit has no compensation, and failures change nothing once failed
+        assertThat(DEFINITION.onEvent(7L, State.FAILED, TRANSFER, new Credited(7L))).isNull();
+        assertThat(DEFINITION.onEvent(7L, State.FAILED, TRANSFER, new DebitFailed(7L))).isNull();
+    }
+
+    @Test
+    void ignoresRepliesThatDoNotFitTheState() {
+        assertThat(DEFINITION.onEvent(7L, State.CREDITING, TRANSFER, new Debited(7L))).isNull();
+        assertThat(DEFINITION.onEvent(7L, State.DONE, TRANSFER, new Credited(7L))).isNull();
+        assertThat(DEFINITION.onEvent(7L, State.DEBITING, TRANSFER, "not a reply")).isNull();
+        assertThat(DEFINITION.sagaIdOf("not a reply")).isNull();
+        assertThat(DEFINITION.sagaIdOf(new Credited(7L))).isEqualTo(7L);
+    }
+
+    @Test
+    void aTimeoutResendsTheStepCommandUntilExhausted() {
+        SagaTransition<State, Transfer> resend = DEFINITION.onTimeout(7L, State.DEBITING, TRANSFER, false);
+
+        assertThat(resend.to()).isEqualTo(State.DEBITING);
+        assertThat(resend.trigger()).isEqualTo("timeout");
+        assertThat(resend.commands()).containsExactly(new SagaCommand("debit", "1001", 7L, false));
+
+        SagaTransition<State, Transfer> exhausted = DEFINITION.onTimeout(7L, State.DEBITING, TRANSFER, true);
+        assertThat(exhausted.to()).isEqualTo(State.FAILED);
+        assertThat(exhausted.commands()).isEmpty();
+    }
+
+    @Test
+    void anExhaustedTimeoutFailsOnlyStepsThatMayFail() {
+        // retryOnTimeout: the credit is resent however long it takes
+        SagaTransition<State, Transfer> retried = DEFINITION.onTimeout(7L, State.CREDITING, TRANSFER, true);
+        assertThat(retried.to()).isEqualTo(State.CREDITING);
+        assertThat(retried.commands()).containsExactly(new SagaCommand("credit", "7812", 7L, false));
+
+        SagaTransition<State, Transfer> failed =
+                SagaFixture.definition(false).onTimeout(7L, State.CREDITING, TRANSFER, true);
+        assertThat(failed.to()).isEqualTo(State.FAILED);
+        assertThat(failed.commands()).containsExactly(new SagaCommand("revert", "1001", 7L, true));
+
+        assertThat(DEFINITION.onTimeout(7L, State.DONE, TRANSFER, true)).isNull();
+        assertThat(DEFINITION.onTimeout(7L, State.FAILED, TRANSFER, false)).isNull();
+    }
+}
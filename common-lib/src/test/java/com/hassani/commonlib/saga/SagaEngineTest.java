@@ -0,0 +1,144 @@
+package com.hassani.commonlib.saga;
+
+import com.hassani.commonlib.saga.SagaFixture.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.hassani.commonlib.saga.SagaFixture.DEFINITION;
+import static com.hassani.commonlib.saga.SagaFixture.TRANSFER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SagaEngineTest {
+    // What a loader would find in storage, and how often the engine asked for it
+    private final Map<Long, SagaEngine.Snapshot<State, Transfer>> stored = new HashMap<>();
+    private final List<Long> loads = new ArrayList<>();
+    // Each append is held until the test completes it
+    private final List<SagaTransition<State, Transfer>> appended = new ArrayList<>();
+    private final List<CompletableFuture<Void>> writes = new ArrayList<>();
+
+    private final SagaEngine<State, Transfer> engine = new SagaEngine<>(DEFINITION, sagaId -> {
+        loads.add(sagaId);
+        return stored.get(sagaId);
+    }, transition -> {
+        appended.add(transition);
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        writes.add(durable);
+        return durable;
+    });
+
+    @Test
+    void keepsATrackedSagaInMemoryUntilItFinishes() {
+        engine.track(7L, State.DEBITING, TRANSFER);
+
+        CompletableFuture<SagaTransition<State, Transfer>> debited = engine.handle(new Debited(7L));
+        writes.get(0).complete(null);
+        assertThat(debited.join().to()).isEqualTo(State.CREDITING);
+        assertThat(engine.activeSagas()).isEqualTo(1);
+
+        CompletableFuture<SagaTransition<State, Transfer>> credited = engine.handle(new Credited(7L));
+        // Finished, but not evicted before the log has made it durable
+        assertThat(engine.activeSagas()).isEqualTo(1);
+        writes.get(1).complete(null);
+        assertThat(credited.join().to()).isEqualTo(State.DONE);
+        assertThat(engine.activeSagas()).isZero();
+        assertThat(loads).isEmpty();
+    }
+
+    @Test
+    void aReplyForAnEvictedSagaIsLoadedFromStorage() {
+        engine.track(7L, State.CREDITING, TRANSFER);
+        engine.handle(new Credited(7L));
+        writes.get(0).complete(null);
+        stored.put(7L, new SagaEngine.Snapshot<>(State.DONE, TRANSFER));
+
+        // A redelivered reply finds the finished saga, changes nothing and does not keep it
+        assertThat(engine.handle(new Credited(7L)).join()).isNull();
+        assertThat(loads).containsExactly(7L);
+        assertThat(engine.activeSagas()).isZero();
+        assertThat(appended).hasSize(1);
+    }
+
+    @Test
+    void theSagaIsReloadedAfterAFailedWrite() {
+        engine.track(7L, State.DEBITING, TRANSFER);
+        CompletableFuture<SagaTransition<State, Transfer>> debited = engine.handle(new Debited(7L));
+
+        IllegalStateException failure = new IllegalStateException("database down");
+        writes.get(0).completeExceptionally(failure);
+
+        assertThatThrownBy(debited::join).isInstanceOf(CompletionException.class).hasCause(failure);
+        assertThat(engine.activeSagas()).isZero();
+
+        // The in-memory CREDITING was never stored; the redelivered reply starts again from storage
+        stored.put(7L, new SagaEngine.Snapshot<>(State.DEBITING, TRANSFER));
+        CompletableFuture<SagaTransition<State, Transfer>> retried = engine.handle(new Debited(7L));
+        writes.get(1).complete(null);
+
+        assertThat(loads).containsExactly(7L);
+        assertThat(retried.join().from()).isEqualTo(State.DEBITING);
+        assertThat(retried.join().to()).isEqualTo(State.CREDITING);
+        assertThat(engine.activeSagas()).isEqualTo(1);
+    }
+
+    @Test
+    void anEventWaitsForTheTransitionInFlightToBeDurable() {
+        engine.track(7L, State.DEBITING, TRANSFER);
+
+        engine.handle(new Debited(7L));
+        CompletableFuture<SagaTransition<State, Transfer>> timedOut = engine.timeout(7L, false);
+        // Not decided yet: CREDITING is not the saga's state until the log has stored it
+        assertThat(appended).hasSize(1);
+        assertThat(timedOut).isNotDone();
+
+        writes.get(0).complete(null);
+        writes.get(1).complete(null);
+
+        assertThat(appended).extracting(SagaTransition::from).containsExactly(State.DEBITING, State.CREDITING);
+        assertThat(timedOut.join().commands()).containsExactly(new SagaCommand("credit", "7812", 7L, false));
+    }
+
+    @Test
+    void anEventWaitingOnAFailedWriteIsDecidedAgainstStorage() {
+        engine.track(7L, State.DEBITING, TRANSFER);
+        CompletableFuture<SagaTransition<State, Transfer>> debited = engine.handle(new Debited(7L));
+        CompletableFuture<SagaTransition<State, Transfer>> redelivered = engine.handle(new Debited(7L));
+        stored.put(7L, new SagaEngine.Snapshot<>(State.DEBITING, TRANSFER));
+
+        writes.get(0).completeExceptionally(new IllegalStateException("refused"));
+
+        assertThatThrownBy(debited::join).isInstanceOf(CompletionException.class);
+        // The lost CREDITING was never seen; the waiting reply starts again from the stored DEBITING
+        assertThat(loads).containsExactly(7L);
+        assertThat(appended).extracting(SagaTransition::from).containsExactly(State.DEBITING, State.DEBITING);
+        writes.get(1).complete(null);
+        assertThat(redelivered.join().to()).isEqualTo(State.CREDITING);
+    }
+
+    @Test
+    void unknownSagasAndForeignEventsYieldNothing() {
+        assertThat(engine.handle(new Debited(8L)).join()).isNull();
+        assertThat(engine.handle("not a reply").join()).isNull();
+        assertThat(engine.complete(8L, "settled").join()).isNull();
+        assertThat(loads).containsExactly(8L, 8L);
+        assertThat(appended).isEmpty();
+    }
+
+    @Test
+    void tracksOnlyUnfinishedSagasAndNeverReplacesOne() {
+        engine.track(7L, State.DONE, TRANSFER);
+        assertThat(engine.activeSagas()).isZero();
+
+        engine.track(7L, State.CREDITING, TRANSFER);
+        engine.track(7L, State.DEBITING, TRANSFER);
+
+        engine.handle(new Credited(7L));
+        assertThat(appended).singleElement().extracting(SagaTransition::from).isEqualTo(State.CREDITING);
+    }
+}
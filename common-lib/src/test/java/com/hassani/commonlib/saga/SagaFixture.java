@@ -0,0 +1,55 @@
+package com.hassani.commonlib.saga;
+
+/**
+ * A two-step transfer saga for the saga tests: debit, which is compensated by a revert, then credit,
+ * which is past the point of no return.
+ */
+final class SagaFixture {
+    enum State { DEBITING, CREDITING, DONE, FAILED }
+
+    record Transfer(long id, String from, String to) {
+    }
+
+    record Debited(long id) {
+    }
+
+    record DebitFailed(long id) {
+    }
+
+    record Credited(long id) {
+    }
+
+    record CreditFailed(long id) {
+    }
+
+    static final Transfer TRANSFER = new Transfer(7L, "1001", "7812");
+
+    static final SagaDefinition<State, Transfer> DEFINITION = definition(true);
+
+    private SagaFixture() {
+    }
+
+    /**
+     * @param creditRetriesOnTimeout false lets an exhausted credit fail the saga, for the timeout tests
+     */
+    static SagaDefinition<State, Transfer> definition(boolean creditRetriesOnTimeout) {
+        SagaStep.Builder<State, Transfer> credit = SagaStep.<State, Transfer>builder("credit", State.CREDITING)
+                .invoke("credit", Transfer::to, Transfer::id)
+                .onSuccess("credited", Credited.class, Credited::id)
+                .onFailure("credit-failed", CreditFailed.class, CreditFailed::id);
+        if (creditRetriesOnTimeout) {
+            credit.retryOnTimeout();
+        }
+        return SagaDefinition.<State, Transfer>builder("transfer", State.class)
+                .step(SagaStep.<State, Transfer>builder("debit", State.DEBITING)
+                        .invoke("debit", Transfer::from, Transfer::id)
+                        .onSuccess("debited", Debited.class, Debited::id)
+                        .onFailure("debit-failed", DebitFailed.class, DebitFailed::id)
+                        .compensateWith("revert", Transfer::from, Transfer::id)
+                        .build())
+                .step(credit.build())
+                .completedIn(State.DONE)
+                .failedIn(State.FAILED)
+                .build();
+    }
+}
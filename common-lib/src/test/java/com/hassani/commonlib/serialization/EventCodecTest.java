@@ -0,0 +1,125 @@
+package com.hassani.commonlib.serialization;
+
+import com.hassani.commonlib.event.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventCodecTest {
+
+    // The wire ids of every registered type; they must never change
+    private static final Map<Class<?>, Integer> TYPE_IDS = new LinkedHashMap<>();
+
+    static {
+        TYPE_IDS.put(InitiateTransfer.class, 1);
+        TYPE_IDS.put(AccountDebited.class, 2);
+        TYPE_IDS.put(AccountCredited.class, 3);
+        TYPE_IDS.put(CreditAccount.class, 4);
+        TYPE_IDS.put(TransferFailed.class, 5);
+        TYPE_IDS.put(CreditFailed.class, 6);
+        TYPE_IDS.put(RevertDebit.class, 7);
+        TYPE_IDS.put(AccountOpened.class, 8);
+        TYPE_IDS.put(AccountClosed.class, 9);
+        TYPE_IDS.put(SettleNetTransfer.class, 10);
+        TYPE_IDS.put(NetTransferSettled.class, 11);
+    }
+
+    static Stream<Object> events() {
+        return Stream.of(
+                new InitiateTransfer(42L, "1001", "7812", 125.5),
+                new AccountDebited(Long.MAX_VALUE, "1001", 0.01),
+                new AccountCredited(0L, "7812", 1e12),
+                new CreditAccount(-1L, "Z\u00fcrich-\u20ac", 99.99),
+                new TransferFailed(Long.MIN_VALUE, "1001", -3.5),
+                new CreditFailed(7L, "", Double.MAX_VALUE),
+                new RevertDebit(300L, "1001", 250.0),
+                new AccountOpened("1001"),
+                new AccountClosed("7812"),
+                new SettleNetTransfer(5L, "1001", "7812", new long[]{1, 2, 1L << 40}, new double[]{10.0, -4.5, 0.25}),
+                new SettleNetTransfer(6L, "1001", "7812", new long[0], new double[0]),
+                new NetTransferSettled(5L, "1001", "7812", 5.75, true),
+                new NetTransferSettled(6L, "1001", "7812", 0.0, false));
+    }
+
+    static Stream<Object> eventsWithNulls() {
+        return Stream.of(
+                new InitiateTransfer(null, null, null, null),
+                new AccountDebited(null, null, null),
+                new AccountCredited(null, null, null),
+                new CreditAccount(null, null, null),
+                new TransferFailed(null, null, null),
+                new CreditFailed(null, null, null),
+                new RevertDebit(null, null, null),
+                new AccountOpened(null),
+                new AccountClosed(null),
+                new SettleNetTransfer(null, null, null, null, null),
+                new NetTransferSettled(null, null, null, null, false));
+    }
+
+    @Test
+    void everyTypeKeepsItsWireId() {
+        assertThat(events().map(Object::getClass).distinct()).containsExactlyInAnyOrderElementsOf(TYPE_IDS.keySet());
+        events().forEach(event -> {
+            assertThat(EventCodec.supports(event.getClass())).isTrue();
+            byte[] data = EventCodec.encode(event);
+            assertThat(data[0] & 0xFF).isEqualTo(EventCodec.MAGIC);
+            assertThat(data[1] & 0xFF).isEqualTo(EventCodec.VERSION);
+            assertThat(data[2] & 0xFF).as(event.getClass().getSimpleName()).isEqualTo(TYPE_IDS.get(event.getClass()));
+        });
+    }
+
+    @ParameterizedTest
+    @MethodSource("events")
+    void roundTrips(Object event) {
+        byte[] data = EventCodec.encode(event);
+
+        assertThat(EventCodec.isBinary(data)).isTrue();
+        assertThat(EventCodec.decode(data)).isInstanceOf(event.getClass()).usingRecursiveComparison().isEqualTo(event);
+    }
+
+    @ParameterizedTest
+    @MethodSource("eventsWithNulls")
+    void roundTripsNullFields(Object event) {
+        assertThat(EventCodec.decode(EventCodec.encode(event)))
+                .isInstanceOf(event.getClass()).usingRecursiveComparison().isEqualTo(event);
+    }
+
+    @ParameterizedTest
+    @MethodSource({"events", "eventsWithNulls"})
+    void rejectsEveryTruncation(Object event) {
+        byte[] data = EventCodec.encode(event);
+        for (int length = 0; length < data.length; length++) {
+            byte[] truncated = Arrays.copyOf(data, length);
+            assertThatThrownBy(() -> EventCodec.decode(truncated))
+                    .as("%s cut to %d of %d bytes", event.getClass().getSimpleName(), length, data.length)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void rejectsForeignPayloads() {
+        byte[] data = EventCodec.encode(new AccountOpened("1001"));
+
+        byte[] json = "{\"accountNumber\":\"1001\"}".getBytes();
+        assertThat(EventCodec.isBinary(json)).isFalse();
+        assertThatThrownBy(() -> EventCodec.decode(json)).hasMessageContaining("not a binary saga event");
+
+        byte[] newerVersion = data.clone();
+        newerVersion[1] = (byte) (EventCodec.VERSION + 1);
+        assertThatThrownBy(() -> EventCodec.decode(newerVersion)).hasMessageContaining("layout version");
+
+        byte[] unknownType = data.clone();
+        unknownType[2] = 63;
+        assertThatThrownBy(() -> EventCodec.decode(unknownType)).hasMessageContaining("type id 63");
+
+        assertThatThrownBy(() -> EventCodec.encode("not an event")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
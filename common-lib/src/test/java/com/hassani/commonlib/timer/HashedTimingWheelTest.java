@@ -0,0 +1,142 @@
+package com.hassani.commonlib.timer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HashedTimingWheelTest {
+    // 4 buckets of 10ms: one revolution is 40ms
+    private static final Duration TICK = Duration.ofMillis(10);
+    private static final int WHEEL_SIZE = 4;
+    // Generous upper bound on lateness, the lower bound is exact
+    private static final long SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final BlockingQueue<String> expired = new LinkedBlockingQueue<>();
+    private final Map<String, Long> expiredAt = new ConcurrentHashMap<>();
+    private HashedTimingWheel<String> wheel;
+
+    @AfterEach
+    void close() {
+        if (wheel != null) {
+            wheel.close();
+        }
+    }
+
+    @Test
+    void firesNoEarlierThanTheDeadline() throws InterruptedException {
+        wheel = start(this::record);
+        long scheduledAt = System.nanoTime();
+
+        wheel.schedule("a", Duration.ofMillis(25));
+
+        assertThat(expired.poll(2, TimeUnit.SECONDS)).isEqualTo("a");
+        assertThat(expiredAt.get("a") - scheduledAt)
+                .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(25))
+                .isLessThan(TimeUnit.MILLISECONDS.toNanos(25) + SLACK_NANOS);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void keepsDeadlinesBeyondOneRevolutionForTheirRound() throws InterruptedException {
+        wheel = start(this::record);
+        long scheduledAt = System.nanoTime();
+
+        // 15ms and 95ms share a bucket: the second one has to wait two more revolutions
+        wheel.schedule("near", Duration.ofMillis(15));
+        wheel.schedule("far", Duration.ofMillis(95));
+        wheel.schedule("farther", Duration.ofMillis(175));
+
+        assertThat(List.of(poll(), poll(), poll())).containsExactly("near", "far", "farther");
+        assertThat(expiredAt.get("far") - scheduledAt).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(95));
+        assertThat(expiredAt.get("farther") - scheduledAt).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(175));
+    }
+
+    @Test
+    void pastDueDeadlinesFireOnTheNextTick() throws InterruptedException {
+        wheel = start(this::record);
+
+        wheel.schedule("zero", Duration.ZERO);
+        wheel.schedule("negative", Duration.ofMillis(-100));
+
+        assertThat(List.of(poll(), poll())).containsExactlyInAnyOrder("zero", "negative");
+    }
+
+    @Test
+    void cancelledDeadlinesNeverFire() throws InterruptedException {
+        wheel = start(this::record);
+
+        wheel.schedule("cancelled", Duration.ofMillis(30));
+        wheel.schedule("kept", Duration.ofMillis(60));
+        assertThat(wheel.size()).isEqualTo(2);
+
+        assertThat(wheel.cancel("cancelled")).isTrue();
+        assertThat(wheel.cancel("cancelled")).isFalse();
+        assertThat(wheel.cancel("unknown")).isFalse();
+        assertThat(wheel.size()).isEqualTo(1);
+
+        assertThat(poll()).isEqualTo("kept");
+        assertThat(expired.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void reschedulingReplacesTheEarlierDeadline() throws InterruptedException {
+        wheel = start(this::record);
+        long scheduledAt = System.nanoTime();
+
+        wheel.schedule("a", Duration.ofMillis(20));
+        wheel.schedule("a", Duration.ofMillis(80));
+
+        assertThat(poll()).isEqualTo("a");
+        assertThat(expiredAt.get("a") - scheduledAt).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(80));
+        assertThat(expired.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void aFailingCallbackDoesNotStopTheWheel() throws InterruptedException {
+        wheel = start(key -> {
+            if (key.equals("bad")) {
+                throw new IllegalStateException("boom");
+            }
+            record(key);
+        });
+
+        wheel.schedule("bad", Duration.ofMillis(10));
+        wheel.schedule("good", Duration.ofMillis(50));
+
+        assertThat(poll()).isEqualTo("good");
+    }
+
+    @Test
+    void rejectsInvalidGeometry() {
+        assertThatThrownBy(() -> new HashedTimingWheel<String>("test", TICK, 6, key -> {
+        })).hasMessageContaining("power of two");
+        assertThatThrownBy(() -> new HashedTimingWheel<String>("test", Duration.ofNanos(500_000), 4, key -> {
+        })).hasMessageContaining("at least 1ms");
+    }
+
+    private HashedTimingWheel<String> start(Consumer<String> onExpire) {
+        return new HashedTimingWheel<>("test", TICK, WHEEL_SIZE, onExpire);
+    }
+
+    private void record(String key) {
+        expiredAt.put(key, System.nanoTime());
+        expired.add(key);
+    }
+
+    private String poll() throws InterruptedException {
+        String key = expired.poll(2, TimeUnit.SECONDS);
+        assertThat(key).as("expired key").isNotNull();
+        return key;
+    }
+}
@@ -0,0 +1,148 @@
+package com.hassani.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load: transfers are started on a fixed schedule whether or not earlier ones have finished,
+ * and each latency is measured from its intended start so a stalled service cannot hide its own
+ * queueing delay (coordinated omission).
+ */
+final class LoadGenerator {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    enum Kind { TRANSFER, INSUFFICIENT_FUNDS, UNKNOWN_ACCOUNT }
+
+    record Result(long sent, long elapsedNanos, Histogram latencyMicros, Map<String, Long> outcomes) {
+        double throughput() {
+            return sent * 1e9 / elapsedNanos;
+        }
+    }
+
+    private final LoadTestOptions options;
+    private final List<String> accountNumbers;
+    private final URI baseUri;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Histogram latencyMicros = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(10), 3);
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    LoadGenerator(LoadTestOptions options, List<String> accountNumbers, int port) {
+        this.options = options;
+        this.accountNumbers = accountNumbers;
+        this.baseUri = URI.create("http://localhost:" + port + "/transactions/");
+    }
+
+    Result run() {
+        long period = TimeUnit.SECONDS.toNanos(1) / options.rate();
+        long durationNanos = options.duration().toNanos();
+        List<CompletableFuture<Void>> transfers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (long i = 0; i * period < durationNanos; i++) {
+            long intendedStart = start + i * period;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            transfers.add(transfer(intendedStart));
+        }
+        try {
+            CompletableFuture.allOf(transfers.toArray(CompletableFuture[]::new))
+                    .get(options.awaitTimeout().toSeconds() + 30, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            count("generator -> " + e.getClass().getSimpleName());
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Map<String, Long> counts = new TreeMap<>();
+        outcomes.forEach((outcome, adder) -> counts.put(outcome, adder.sum()));
+        return new Result(transfers.size(), elapsed, latencyMicros, counts);
+    }
+
+    private CompletableFuture<Void> transfer(long intendedStart) {
+        Kind kind = pickKind();
+        HttpRequest initiate = HttpRequest.newBuilder(baseUri.resolve("initiate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body(kind)))
+                .build();
+        return client.sendAsync(initiate, HttpResponse.BodyHandlers.ofString())
+                .thenCompose(response -> {
+                    if (response.statusCode() != 202) {
+                        return CompletableFuture.completedFuture("HTTP " + response.statusCode());
+                    }
+                    long transactionId = read(response.body()).get("transactionId").asLong();
+                    return awaitStatus(transactionId);
+                })
+                .handle((status, error) -> {
+                    latencyMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart));
+                    count(kind + " -> " + (error == null ? status : error.getClass().getSimpleName()));
+                    return null;
+                });
+    }
+
+    private CompletableFuture<String> awaitStatus(long transactionId) {
+        HttpRequest await = HttpRequest.newBuilder(baseUri.resolve(transactionId + "/await?timeoutMs="
+                        + options.awaitTimeout().toMillis()))
+                .timeout(options.awaitTimeout().plusSeconds(10))
+                .GET()
+                .build();
+        return client.sendAsync(await, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> response.statusCode() == 200
+                        ? read(response.body()).get("status").asText()
+                        : "TIMEOUT");
+    }
+
+    private Kind pickKind() {
+        double draw = ThreadLocalRandom.current().nextDouble();
+        if (draw < options.insufficientRatio()) {
+            return Kind.INSUFFICIENT_FUNDS;
+        }
+        if (draw < options.insufficientRatio() + options.unknownRatio()) {
+            return Kind.UNKNOWN_ACCOUNT;
+        }
+        return Kind.TRANSFER;
+    }
+
+    // Whole amounts keep the conservation check exact in double arithmetic
+    private String body(Kind kind) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountNumbers.size());
+        int to = (from + 1 + random.nextInt(accountNumbers.size() - 1)) % accountNumbers.size();
+        String toAccount = kind == Kind.UNKNOWN_ACCOUNT ? "X" + accountNumbers.get(to) : accountNumbers.get(to);
+        long amount = kind == Kind.INSUFFICIENT_FUNDS ? options.initialBalance() * 1_000 : random.nextLong(1, 11);
+        return "{\"fromAccount\":\"" + accountNumbers.get(from) + "\",\"toAccount\":\"" + toAccount
+                + "\",\"amount\":" + amount + "}";
+    }
+
+    private void count(String outcome) {
+        outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+    }
+
+    private static JsonNode read(String json) {
+        try {
+            return MAPPER.readTree(json);
+        } catch (Exception e) {
+            throw new RuntimeException("Unreadable response: " + json, e);
+        }
+    }
+}
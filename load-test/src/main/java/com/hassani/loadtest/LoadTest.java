@@ -0,0 +1,80 @@
+package com.hassani.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * End-to-end load test: starts an embedded Kafka broker and both services, seeds accounts, drives
+ * /transactions/initiate at a fixed rate and writes throughput, latency percentiles and a money
+ * conservation check to a report. Exits with 1 when money was created or lost.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        List<String> accountNumbers = new ArrayList<>();
+        for (int i = 0; i < options.accounts(); i++) {
+            accountNumbers.add(String.format("L%05d", i));
+        }
+
+        boolean conserved;
+        try (SagaCluster cluster = SagaCluster.start(options)) {
+            cluster.seedAccounts(accountNumbers, options.initialBalance());
+            double expectedTotal = cluster.totalBalance();
+
+            System.out.printf("Running %d transfers/s for %s against %d accounts%n",
+                    options.rate(), options.duration(), options.accounts());
+            LoadGenerator.Result result = new LoadGenerator(options, accountNumbers, cluster.transactionPort()).run();
+
+            long settleDeadline = System.nanoTime() + options.settleTimeout().toNanos();
+            double actualTotal = cluster.totalBalance();
+            while ((actualTotal != expectedTotal || cluster.inFlightSagas() > 0) && System.nanoTime() < settleDeadline) {
+                Thread.sleep(250);
+                actualTotal = cluster.totalBalance();
+            }
+            conserved = actualTotal == expectedTotal;
+
+            String report = report(options, result, expectedTotal, actualTotal, cluster.inFlightSagas());
+            System.out.print(report);
+            Files.createDirectories(options.report().toAbsolutePath().getParent());
+            Files.writeString(options.report(), report);
+            System.out.println("Report written to " + options.report().toAbsolutePath());
+        }
+        System.exit(conserved ? 0 : 1);
+    }
+
+    private static String report(LoadTestOptions options, LoadGenerator.Result result, double expectedTotal,
+                                 double actualTotal, long inFlight) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+        out.println("== Saga load test ==");
+        out.printf("target rate          %d/s for %s, %d accounts, failure mix %.0f%% insufficient / %.0f%% unknown%n",
+                options.rate(), options.duration(), options.accounts(),
+                options.insufficientRatio() * 100, options.unknownRatio() * 100);
+        out.printf("sent                 %d transfers in %.1f s (%.1f/s including drain)%n",
+                result.sent(), result.elapsedNanos() / 1e9, result.throughput());
+        out.println();
+        out.println("-- outcomes --");
+        result.outcomes().forEach((outcome, count) -> out.printf("%-40s %d%n", outcome, count));
+        out.println();
+        out.println("-- end-to-end latency, initiate to terminal status (ms) --");
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            out.printf("p%-5s %10.2f%n", percentile, result.latencyMicros().getValueAtPercentile(percentile) / 1000.0);
+        }
+        out.printf("max    %10.2f%n", result.latencyMicros().getMaxValue() / 1000.0);
+        out.println();
+        out.println("-- money conservation --");
+        out.printf("expected total       %.2f%n", expectedTotal);
+        out.printf("actual total         %.2f%n", actualTotal);
+        out.printf("sagas still open     %d%n", inFlight);
+        out.println(actualTotal == expectedTotal ? "PASS" : "FAIL");
+        out.println();
+        out.println("-- latency distribution (ms) --");
+        result.latencyMicros().outputPercentileDistribution(out, 1000.0);
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+}
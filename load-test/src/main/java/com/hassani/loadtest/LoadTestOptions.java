@@ -0,0 +1,64 @@
+package com.hassani.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line options in --name=value form. Arguments starting with --account. or --transaction.
+ * are passed on as properties of that service, e.g. --account.saga.balance-engine.enabled=true.
+ */
+record LoadTestOptions(int rate,
+                       Duration duration,
+                       int accounts,
+                       long initialBalance,
+                       double insufficientRatio,
+                       double unknownRatio,
+                       Duration awaitTimeout,
+                       Duration settleTimeout,
+                       Path report,
+                       List<String> accountProperties,
+                       List<String> transactionProperties) {
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        List<String> accountProperties = new ArrayList<>();
+        List<String> transactionProperties = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (name.startsWith("account.")) {
+                accountProperties.add(name.substring("account.".length()) + "=" + value);
+            } else if (name.startsWith("transaction.")) {
+                transactionProperties.add(name.substring("transaction.".length()) + "=" + value);
+            } else {
+                options.put(name, value);
+            }
+        }
+        LoadTestOptions parsed = new LoadTestOptions(
+                Integer.parseInt(options.getOrDefault("rate", "200")),
+                Duration.parse("PT" + options.getOrDefault("duration", "30s")),
+                Integer.parseInt(options.getOrDefault("accounts", "1000")),
+                Long.parseLong(options.getOrDefault("initial-balance", "1000")),
+                Double.parseDouble(options.getOrDefault("insufficient-ratio", "0.05")),
+                Double.parseDouble(options.getOrDefault("unknown-ratio", "0.05")),
+                Duration.parse("PT" + options.getOrDefault("await-timeout", "30s")),
+                Duration.parse("PT" + options.getOrDefault("settle-timeout", "60s")),
+                Path.of(options.getOrDefault("report", "target/load-test-report.txt")),
+                accountProperties,
+                transactionProperties);
+        if (parsed.accounts < 2) {
+            throw new IllegalArgumentException("accounts must be at least 2");
+        }
+        if (parsed.insufficientRatio + parsed.unknownRatio > 1) {
+            throw new IllegalArgumentException("insufficient-ratio plus unknown-ratio must not exceed 1");
+        }
+        return parsed;
+    }
+}
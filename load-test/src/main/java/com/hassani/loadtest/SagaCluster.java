@@ -0,0 +1,123 @@
+package com.hassani.loadtest;
+
+import com.hassani.accountservice.AccountServiceApplication;
+import com.hassani.accountservice.entities.Account;
+import com.hassani.accountservice.repository.AccountRepository;
+import com.hassani.accountservice.service.AccountService;
+import com.hassani.transactionservice.TransactionServiceApplication;
+import com.hassani.transactionservice.directory.AccountDirectory;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An embedded Kafka broker plus account-service and transaction-service, each in its own
+ * application context on a random port with its own in-memory database.
+ */
+final class SagaCluster implements AutoCloseable {
+    private static final String[] TOPICS = {"initiate-transfer", "credit-account", "revert-debit",
+            "account-debited", "account-credited", "transfer-failed", "credit-failed"};
+    private static final int PARTITIONS = 6;
+
+    private final EmbeddedKafkaBroker broker;
+    private final ConfigurableApplicationContext accountContext;
+    private final ConfigurableApplicationContext transactionContext;
+
+    private SagaCluster(EmbeddedKafkaBroker broker, ConfigurableApplicationContext accountContext,
+                        ConfigurableApplicationContext transactionContext) {
+        this.broker = broker;
+        this.accountContext = accountContext;
+        this.transactionContext = transactionContext;
+    }
+
+    static SagaCluster start(LoadTestOptions options) {
+        EmbeddedKafkaBroker broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, TOPICS);
+        broker.afterPropertiesSet();
+        String bootstrap = "spring.kafka.bootstrap-servers=" + broker.getBrokersAsString();
+        ConfigurableApplicationContext accounts = run(AccountServiceApplication.class,
+                "load-test,load-test-account", bootstrap, options.accountProperties());
+        ConfigurableApplicationContext transactions = run(TransactionServiceApplication.class,
+                "load-test,load-test-transaction", bootstrap, options.transactionProperties());
+        return new SagaCluster(broker, accounts, transactions);
+    }
+
+    // Every service jar ships an application.properties, so each context reads the one next to its own
+    // classes as defaults and layers only the load-test files on top
+    private static ConfigurableApplicationContext run(Class<?> application, String configNames, String bootstrap,
+                                                      List<String> overrides) {
+        List<String> properties = new ArrayList<>(List.of("spring.config.name=" + configNames, bootstrap));
+        properties.addAll(overrides);
+        return new SpringApplicationBuilder(application)
+                .properties(serviceProperties(application))
+                .properties(properties.toArray(String[]::new))
+                .run();
+    }
+
+    private static Map<String, Object> serviceProperties(Class<?> application) {
+        URL location = application.getProtectionDomain().getCodeSource().getLocation();
+        Properties properties = new Properties();
+        try (InputStream in = new URL(location, "application.properties").openStream()) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read application.properties of " + application.getSimpleName(), e);
+        }
+        Map<String, Object> defaults = new HashMap<>();
+        properties.forEach((key, value) -> defaults.put((String) key, value));
+        return defaults;
+    }
+
+    int transactionPort() {
+        return ((WebServerApplicationContext) transactionContext).getWebServer().getPort();
+    }
+
+    void seedAccounts(List<String> accountNumbers, double balance) throws InterruptedException {
+        AccountService accountService = accountContext.getBean(AccountService.class);
+        accountNumbers.forEach(accountNumber -> accountService.openAccount(accountNumber, balance));
+
+        // Transfers are only checked against the directory once it has caught up with the seeded accounts
+        AccountDirectory directory = transactionContext.getBean(AccountDirectory.class);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (!accountNumbers.stream().allMatch(directory::isKnown) || directory.size() < accountNumbers.size()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Account directory knows only " + directory.size() + " accounts");
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    // Logical balances, so shards and the in-memory balance engine are included
+    double totalBalance() {
+        AccountService accountService = accountContext.getBean(AccountService.class);
+        double total = 0;
+        for (Account account : accountContext.getBean(AccountRepository.class).findAll()) {
+            total += accountService.balanceOf(account.getAccountNumber()).orElse(0.0);
+        }
+        return total;
+    }
+
+    long inFlightSagas() {
+        TransactionRepository repository = transactionContext.getBean(TransactionRepository.class);
+        return repository.countByStatus(TransactionStatus.PENDING) + repository.countByStatus(TransactionStatus.DEBITED);
+    }
+
+    @Override
+    public void close() {
+        transactionContext.close();
+        accountContext.close();
+        broker.destroy();
+    }
+}
@@ -0,0 +1,19 @@
+package com.hassani.transactionservice.config;
+
+import com.hassani.commonlib.persistence.IdSequenceMigration;
+import com.hassani.transactionservice.entities.Transaction;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class IdSequenceConfig {
+
+    // TRANSACTION had an IDENTITY column before bulk submissions; archived rows keep their IDs
+    @Bean
+    public IdSequenceMigration transactionSequenceMigration(DataSource dataSource) {
+        return new IdSequenceMigration(dataSource, Transaction.ID_SEQUENCE, Transaction.ID_ALLOCATION_SIZE,
+                "transaction", "transaction_history");
+    }
+}
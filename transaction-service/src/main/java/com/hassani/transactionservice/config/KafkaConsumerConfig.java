@@ -0,0 +1,20 @@
+package com.hassani.transactionservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+@Configuration
+public class KafkaConsumerConfig {
+    private static final Set<String> DISPATCH_MODES = Set.of("record", "ordered");
+
+    // Each mode starts its own listeners and stops the others; there is no batch listener for saga
+    // replies here, so batch, or any unknown mode, would leave them unconsumed
+    public KafkaConsumerConfig(@Value("${saga.kafka.dispatch-mode:record}") String dispatchMode) {
+        if (!DISPATCH_MODES.contains(dispatchMode)) {
+            throw new IllegalStateException("Unsupported saga.kafka.dispatch-mode " + dispatchMode
+                    + " for transaction-service, expected one of " + DISPATCH_MODES);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.hassani.transactionservice.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+
+@Configuration
+public class KafkaTopicConfig {
+    @Value("${saga.kafka.partitions:1}")
+    private int partitions;
+
+    // Topics published by transaction-service, keyed by account number
+    @Bean
+    public KafkaAdmin.NewTopics transactionServiceTopics() {
+        return new KafkaAdmin.NewTopics(
+                topic("initiate-transfer"),
+                topic("credit-account"),
+                topic("revert-debit"),
+                topic("settle-net-transfer"));
+    }
+
+    private NewTopic topic(String name) {
+        return TopicBuilder.name(name).partitions(partitions).build();
+    }
+}
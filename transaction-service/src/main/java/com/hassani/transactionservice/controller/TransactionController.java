@@ -1,21 +1,180 @@
 package com.hassani.transactionservice.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hassani.transactionservice.directory.AccountDirectory;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.metrics.SagaMetrics;
+import com.hassani.transactionservice.model.BatchStatusResponse;
+import com.hassani.transactionservice.model.BulkTransferResponse;
 import com.hassani.transactionservice.model.InitiateTransferRequest;
+import com.hassani.transactionservice.model.TransferResponse;
+import com.hassani.transactionservice.service.BulkTransferService;
 import com.hassani.transactionservice.service.TransactionService;
-import lombok.Data;
+import com.hassani.transactionservice.service.TransferAdmission;
+import com.hassani.transactionservice.service.TransferCompletionRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
 @RestController
 @RequestMapping("/transactions")
 @RequiredArgsConstructor
 public class TransactionController {
     private final TransactionService transactionService;
+    private final TransferCompletionRegistry completionRegistry;
+    private final BulkTransferService bulkTransferService;
+    private final TransferAdmission transferAdmission;
+    private final AccountDirectory accountDirectory;
+    private final SagaMetrics sagaMetrics;
+    private final ObjectMapper objectMapper;
+
+    @Value("${saga.bulk.max-transfers:100000}")
+    private int maxTransfers;
+
+    @Value("${saga.await.max-timeout:60s}")
+    private Duration maxAwaitTimeout;
 
     @PostMapping("/initiate")
-    public ResponseEntity<String> initiateTransfer(@RequestBody InitiateTransferRequest request) {
-        transactionService.initiateTransfer(request.getFromAccount(), request.getToAccount(), request.getAmount());
-        return ResponseEntity.ok("Transfer initiated successfully");
+    public ResponseEntity<TransferResponse> initiateTransfer(@RequestBody InitiateTransferRequest request) {
+        requireKnownAccounts(request, "Transfer");
+        if (!transferAdmission.tryAdmit(request.getFromAccount())) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        Long transactionId;
+        try {
+            transactionId = transactionService.initiateTransfer(request.getFromAccount(), request.getToAccount(), request.getAmount());
+        } catch (RuntimeException e) {
+            transferAdmission.cancel(request.getFromAccount());
+            throw e;
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/transactions/" + transactionId))
+                .body(new TransferResponse(transactionId, request.getFromAccount(), request.getToAccount(),
+                        request.getAmount(), TransactionStatus.PENDING.name(), null, null, null));
+    }
+
+    // NDJSON, one transfer per line, or a JSON array; read as a stream and rejected as a whole if any transfer is invalid
+    @PostMapping(path = "/bulk", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<BulkTransferResponse> initiateBulk(InputStream body) throws IOException {
+        List<InitiateTransferRequest> requests = new ArrayList<>();
+        try (MappingIterator<InitiateTransferRequest> transfers = objectMapper.readerFor(InitiateTransferRequest.class).readValues(body)) {
+            while (transfers.hasNextValue()) {
+                InitiateTransferRequest request = transfers.nextValue();
+                if (request.getFromAccount() == null || request.getToAccount() == null || request.getAmount() == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Transfer " + (requests.size() + 1) + " lacks fromAccount, toAccount or amount");
+                }
+                requireKnownAccounts(request, "Transfer " + (requests.size() + 1));
+                if (requests.size() == maxTransfers) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "At most " + maxTransfers + " transfers per batch");
+                }
+                requests.add(request);
+            }
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Malformed transfer " + (requests.size() + 1) + ": " + e.getOriginalMessage());
+        }
+        if (requests.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No transfers in request body");
+        }
+
+        BulkTransferResponse response = bulkTransferService.initiateBulk(requests);
+        return ResponseEntity.status(response.getError() == null ? HttpStatus.ACCEPTED : HttpStatus.INTERNAL_SERVER_ERROR)
+                .location(URI.create("/transactions/batches/" + response.getBatchId()))
+                .body(response);
+    }
+
+    // Unknown accounts would only fail inside the saga, after a debit and possibly a compensation
+    private void requireKnownAccounts(InitiateTransferRequest request, String transfer) {
+        for (String accountNumber : new String[]{request.getFromAccount(), request.getToAccount()}) {
+            if (!accountDirectory.isKnown(accountNumber)) {
+                sagaMetrics.unknownAccountRejected();
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, transfer + " references unknown account " + accountNumber);
+            }
+        }
+    }
+
+    @GetMapping("/batches/{batchId}")
+    public ResponseEntity<BatchStatusResponse> getBatch(@PathVariable String batchId) {
+        return bulkTransferService.findBatch(batchId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<TransferResponse> getTransfer(@PathVariable Long id) {
+        return transactionService.findTransfer(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Long-poll: answers 200 once the transfer is COMPLETED or FAILED, 202 with the current state on timeout
+    @GetMapping("/{id}/await")
+    public DeferredResult<ResponseEntity<TransferResponse>> awaitTransfer(@PathVariable Long id,
+                                                                          @RequestParam(defaultValue = "30000") long timeoutMs) {
+        DeferredResult<ResponseEntity<TransferResponse>> result = new DeferredResult<>(clampTimeout(timeoutMs));
+        Runnable unregister = completionRegistry.register(id, response -> result.setResult(ResponseEntity.ok(response)));
+        result.onCompletion(unregister);
+        result.onTimeout(() -> result.setResult(transactionService.findTransfer(id)
+                .map(current -> ResponseEntity.accepted().body(current))
+                .orElse(ResponseEntity.notFound().build())));
+
+        // Registered before looking, so a completion between the two cannot be missed
+        transactionService.findTransfer(id).ifPresentOrElse(current -> {
+            if (current.isTerminal()) {
+                result.setResult(ResponseEntity.ok(current));
+            }
+        }, () -> result.setResult(ResponseEntity.notFound().build()));
+        return result;
+    }
+
+    // Server-sent events: one "status" event with the final state, then the stream closes
+    @GetMapping(path = "/{id}/events", produces = "text/event-stream")
+    public SseEmitter transferEvents(@PathVariable Long id, @RequestParam(defaultValue = "60000") long timeoutMs) {
+        TransferResponse found = transactionService.findTransfer(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No transaction found with ID: " + id));
+        SseEmitter emitter = new SseEmitter(clampTimeout(timeoutMs));
+        Runnable unregister = completionRegistry.register(id, response -> send(emitter, response));
+        emitter.onCompletion(unregister);
+        emitter.onTimeout(emitter::complete);
+
+        // Looked up again once registered, so a completion between the two cannot be missed
+        TransferResponse current = found.isTerminal() ? found : transactionService.findTransfer(id).orElse(found);
+        if (current.isTerminal()) {
+            send(emitter, current);
+        }
+        return emitter;
+    }
+
+    // The client picks the wait, but never more than saga.await.max-timeout; 0 would mean no timeout at all
+    private long clampTimeout(long timeoutMs) {
+        return Math.max(1, Math.min(timeoutMs, maxAwaitTimeout.toMillis()));
+    }
+
+    private void send(SseEmitter emitter, TransferResponse response) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(response));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Failed to push status of transaction ID: {}: {}", response.getTransactionId(), e.getMessage());
+        }
     }
 }
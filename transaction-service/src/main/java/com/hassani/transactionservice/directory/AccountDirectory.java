@@ -0,0 +1,186 @@
+package com.hassani.transactionservice.directory;
+
+import com.hassani.commonlib.event.AccountClosed;
+import com.hassani.commonlib.event.AccountOpened;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RecordDeserializationException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory view of the accounts that exist in account-service, built from the compacted
+ * account-directory topic. A dedicated consumer assigns itself every partition, without a consumer
+ * group, and reads from the beginning on each start. A Bloom filter rejects most unknown account
+ * numbers without touching the exact set. Every account number is accepted until the consumer has
+ * reached the end offsets taken when it was assigned, so a partly loaded directory never rejects an
+ * existing account.
+ */
+@Slf4j
+@Component
+public class AccountDirectory {
+    static final String TOPIC = "account-directory";
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(1);
+
+    private final ConsumerFactory<?, ?> consumerFactory;
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final Set<String> accounts = ConcurrentHashMap.newKeySet();
+    private volatile BloomFilter filter;
+    private volatile boolean caughtUp;
+    private volatile boolean running;
+    private volatile Consumer<String, Object> consumer;
+    private Thread reader;
+
+    public AccountDirectory(ConsumerFactory<?, ?> consumerFactory,
+                            @Value("#{${saga.directory.enabled:true} && ${spring.kafka.listener.auto-startup:true}}") boolean enabled,
+                            @Value("${saga.directory.expected-accounts:1000000}") long expectedAccounts,
+                            @Value("${saga.directory.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.consumerFactory = consumerFactory;
+        this.enabled = enabled;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedAccounts, falsePositiveRate);
+    }
+
+    public boolean isKnown(String accountNumber) {
+        if (!enabled || !caughtUp) {
+            return true;
+        }
+        return accountNumber != null && filter.mightContain(accountNumber) && accounts.contains(accountNumber);
+    }
+
+    public int size() {
+        return accounts.size();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        reader = new Thread(this::run, "account-directory");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        Consumer<String, Object> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        if (reader != null) {
+            reader.join(RETRY_BACKOFF.multipliedBy(5).toMillis());
+        }
+    }
+
+    private void run() {
+        // No group: nothing is committed and no consumer group is left behind by a restart
+        Map<String, Object> config = new HashMap<>(consumerFactory.getConfigurationProperties());
+        config.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        // account-service creates the topic compacted; an auto-created one would not be
+        config.put(ConsumerConfig.ALLOW_AUTO_CREATE_TOPICS_CONFIG, false);
+        config.put(ConsumerConfig.CLIENT_ID_CONFIG, config.getOrDefault(ConsumerConfig.CLIENT_ID_CONFIG, "transaction-service") + "-directory");
+        while (running) {
+            try (Consumer<String, Object> directoryConsumer = new DefaultKafkaConsumerFactory<String, Object>(config).createConsumer()) {
+                consumer = directoryConsumer;
+                read(directoryConsumer);
+            } catch (WakeupException e) {
+                // shutdown
+            } catch (KafkaException e) {
+                log.warn("Account directory consumer failed, restarting: {}", e.getMessage());
+                sleep(RETRY_BACKOFF);
+            } finally {
+                consumer = null;
+            }
+        }
+    }
+
+    private void read(Consumer<String, Object> directoryConsumer) {
+        List<TopicPartition> partitions = List.of();
+        while (running && partitions.isEmpty()) {
+            List<PartitionInfo> infos = directoryConsumer.partitionsFor(TOPIC);
+            partitions = infos == null ? List.of()
+                    : infos.stream().map(info -> new TopicPartition(info.topic(), info.partition())).toList();
+            if (partitions.isEmpty()) {
+                sleep(RETRY_BACKOFF);
+            }
+        }
+        directoryConsumer.assign(partitions);
+        directoryConsumer.seekToBeginning(partitions);
+        Map<TopicPartition, Long> endOffsets = directoryConsumer.endOffsets(partitions);
+        log.info("Account directory reading {} partitions up to offsets {}", partitions.size(), endOffsets);
+        while (running) {
+            try {
+                for (ConsumerRecord<String, Object> record : directoryConsumer.poll(POLL_TIMEOUT)) {
+                    onDirectoryEvent(record);
+                }
+            } catch (RecordDeserializationException e) {
+                log.warn("Skipping undecodable account directory record at {}-{}", e.topicPartition(), e.offset(), e);
+                directoryConsumer.seek(e.topicPartition(), e.offset() + 1);
+            }
+            if (!caughtUp && endOffsets.entrySet().stream()
+                    .allMatch(end -> directoryConsumer.position(end.getKey()) >= end.getValue())) {
+                markCaughtUp();
+            }
+        }
+    }
+
+    void markCaughtUp() {
+        caughtUp = true;
+        log.info("Account directory caught up with {} accounts", accounts.size());
+    }
+
+    void onDirectoryEvent(ConsumerRecord<String, Object> record) {
+        if (record.value() instanceof AccountOpened) {
+            add(record.key());
+        } else if (record.value() == null || record.value() instanceof AccountClosed) {
+            accounts.remove(record.key());
+        } else {
+            log.warn("Ignoring unexpected account directory event: {}", record.value());
+        }
+    }
+
+    // Single reader thread; the filter is set before the exact set so readers never see a false negative
+    synchronized void add(String accountNumber) {
+        BloomFilter current = filter;
+        if (accounts.size() >= current.capacity()) {
+            current = new BloomFilter(current.capacity() * 2, falsePositiveRate);
+            accounts.forEach(current::put);
+            filter = current;
+            log.info("Account directory filter grown to {} accounts", current.capacity());
+        }
+        current.put(accountNumber);
+        accounts.add(accountNumber);
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
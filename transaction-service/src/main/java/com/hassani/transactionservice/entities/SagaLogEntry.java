@@ -0,0 +1,28 @@
+package com.hassani.transactionservice.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// One row per saga transition, written in groups by the saga log and never updated. The rows of a
+// transfer are deleted, not kept anywhere, when the archiver moves the transfer to TransactionHistory
+@Entity
+@Table(indexes = @Index(name = "idx_saga_log_saga", columnList = "sagaId"))
+@AllArgsConstructor @NoArgsConstructor @Getter @Setter @ToString
+public class SagaLogEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "saga_log_seq")
+    @SequenceGenerator(name = "saga_log_seq", allocationSize = 50)
+    private Long id;
+    private String sagaName;
+    private Long sagaId;
+    // Null for the entry that started the saga
+    @Enumerated(EnumType.ORDINAL)
+    private TransactionStatus fromStatus;
+    @Enumerated(EnumType.ORDINAL)
+    @Column(nullable = false)
+    private TransactionStatus toStatus;
+    private String triggeredBy;
+    private Instant createdAt;
+}
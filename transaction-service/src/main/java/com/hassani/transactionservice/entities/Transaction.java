@@ -2,15 +2,38 @@ package com.hassani.transactionservice.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
+
+// Hot table: in-flight sagas plus terminal ones until the archiver moves them to TransactionHistory
 @Entity
+@Table(indexes = {@Index(name = "idx_transaction_status_updated", columnList = "status, updatedAt"),
+        @Index(name = "idx_transaction_batch", columnList = "batchId"),
+        @Index(name = "idx_transaction_settlement", columnList = "settlementId")})
 @AllArgsConstructor @NoArgsConstructor @Getter @Setter @ToString
 public class Transaction {
+    public static final String ID_SEQUENCE = "transaction_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence values, so bulk submissions can insert with JDBC batching
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     private String fromAccount;
     private String toAccount;
     private Double amount;
-    private String status; // PENDING, DEBITED, COMPLETED, FAILED
-}
\ No newline at end of file
+    @Enumerated(EnumType.ORDINAL)
+    @Column(nullable = false)
+    private TransactionStatus status;
+    @CreationTimestamp
+    private Instant createdAt;
+    @UpdateTimestamp
+    private Instant updatedAt;
+    // Set for transfers submitted together through POST /transactions/bulk
+    private String batchId;
+    // Set while the transfer is part of a netted settlement, see TransferNetting
+    private Long settlementId;
+}
@@ -0,0 +1,31 @@
+package com.hassani.transactionservice.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// Cold store of COMPLETED and FAILED transfers, keyed by the original transaction ID
+@Entity
+@Table(indexes = @Index(name = "idx_transaction_history_batch", columnList = "batchId"))
+@AllArgsConstructor @NoArgsConstructor @Getter @Setter @ToString
+public class TransactionHistory {
+    @Id
+    private Long id;
+    private String fromAccount;
+    private String toAccount;
+    private Double amount;
+    @Enumerated(EnumType.ORDINAL)
+    @Column(nullable = false)
+    private TransactionStatus status;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private Instant archivedAt;
+    private String batchId;
+    private Long settlementId;
+
+    // Read-only view for code paths that only ever see a terminal transaction
+    public Transaction toTransaction() {
+        return new Transaction(id, fromAccount, toAccount, amount, status, createdAt, updatedAt, batchId, settlementId);
+    }
+}
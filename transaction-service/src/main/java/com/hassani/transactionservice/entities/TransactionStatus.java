@@ -0,0 +1,13 @@
+package com.hassani.transactionservice.entities;
+
+// Stored by ordinal, so new statuses must be appended
+public enum TransactionStatus {
+    PENDING,
+    DEBITED,
+    COMPLETED,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
@@ -0,0 +1,98 @@
+package com.hassani.transactionservice.metrics;
+
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@Component
+public class SagaMetrics {
+    private final Timer completed;
+    private final Timer failed;
+    private final Counter compensations;
+    private final DistributionSummary sagaLogFlushes;
+    private final MeterRegistry registry;
+
+    public SagaMetrics(MeterRegistry registry, TransactionRepository transactionRepository) {
+        this.registry = registry;
+        this.completed = transferDuration(registry, "completed");
+        this.failed = transferDuration(registry, "failed");
+        this.compensations = Counter.builder("saga.compensations")
+                .description("revert-debit compensations issued after a failed credit")
+                .register(registry);
+        this.sagaLogFlushes = DistributionSummary.builder("saga.log.flush.transitions")
+                .description("Saga transitions written together by one group commit of the saga log")
+                .register(registry);
+        // Sampled from the table on scrape, so the gauge survives restarts and covers every dispatch mode
+        for (TransactionStatus status : List.of(TransactionStatus.PENDING, TransactionStatus.DEBITED)) {
+            Gauge.builder("saga.inflight", transactionRepository, repository -> repository.countByStatus(status))
+                    .description("Sagas that have not reached COMPLETED or FAILED")
+                    .tag("status", status.name())
+                    .register(registry);
+        }
+    }
+
+    private static Timer transferDuration(MeterRegistry registry, String outcome) {
+        return Timer.builder("saga.transfer.duration")
+                .description("Time from PENDING to a terminal status")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    public void recordOutcome(Transaction transaction) {
+        if (transaction.getCreatedAt() == null) {
+            return;
+        }
+        Timer timer = transaction.getStatus() == TransactionStatus.COMPLETED ? completed : failed;
+        timer.record(Duration.between(transaction.getCreatedAt(), Instant.now()));
+    }
+
+    public void sagaLogFlushed(int transitions) {
+        sagaLogFlushes.record(transitions);
+    }
+
+    public void compensationIssued() {
+        compensations.increment();
+    }
+
+    public void admissionRejected(String reason) {
+        Counter.builder("saga.admission.rejected")
+                .description("Transfers answered with 429 before a saga was created")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public void nettingSettled(boolean settled, int transfers) {
+        Counter.builder("saga.netting.transfers")
+                .description("Transfers resolved by a settle-net-transfer, settled net or sent back as separate sagas")
+                .tag("outcome", settled ? "settled" : "fallback")
+                .register(registry)
+                .increment(transfers);
+    }
+
+    public void unknownAccountRejected() {
+        Counter.builder("saga.directory.rejected")
+                .description("Transfers answered with 400 because an account is not in the account directory")
+                .register(registry)
+                .increment();
+    }
+
+    public void timeout(TransactionStatus status, String action) {
+        Counter.builder("saga.timeouts")
+                .description("Saga deadlines that expired, by status and the action taken")
+                .tag("status", status.name())
+                .tag("action", action)
+                .register(registry)
+                .increment();
+    }
+}
@@ -0,0 +1,21 @@
+package com.hassani.transactionservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchStatusResponse {
+    private String batchId;
+    private long total;
+    private long pending;
+    private long debited;
+    private long completed;
+    private long failed;
+
+    public boolean isFinished() {
+        return completed + failed == total;
+    }
+}
@@ -0,0 +1,20 @@
+package com.hassani.transactionservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkTransferResponse {
+    private String batchId;
+    // In submission order
+    private List<Long> transactionIds;
+    // Transfers started; fewer than submitted if a later chunk failed to insert
+    private int accepted;
+    private int submitted;
+    private String error;
+}
@@ -0,0 +1,40 @@
+package com.hassani.transactionservice.model;
+
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionHistory;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferResponse {
+    private Long transactionId;
+    private String fromAccount;
+    private String toAccount;
+    private Double amount;
+    private String status;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private String batchId;
+
+    public static TransferResponse from(Transaction transaction) {
+        return new TransferResponse(transaction.getId(), transaction.getFromAccount(), transaction.getToAccount(),
+                transaction.getAmount(), transaction.getStatus().name(), transaction.getCreatedAt(), transaction.getUpdatedAt(),
+                transaction.getBatchId());
+    }
+
+    public static TransferResponse from(TransactionHistory transaction) {
+        return new TransferResponse(transaction.getId(), transaction.getFromAccount(), transaction.getToAccount(),
+                transaction.getAmount(), transaction.getStatus().name(), transaction.getCreatedAt(), transaction.getUpdatedAt(),
+                transaction.getBatchId());
+    }
+
+    public boolean isTerminal() {
+        return status != null && TransactionStatus.valueOf(status).isTerminal();
+    }
+}
@@ -0,0 +1,17 @@
+package com.hassani.transactionservice.repository;
+
+import com.hassani.transactionservice.entities.SagaLogEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+@Repository
+public interface SagaLogRepository extends JpaRepository<SagaLogEntry, Long> {
+    @Modifying
+    @Query("delete from SagaLogEntry e where e.sagaName = :sagaName and e.sagaId in :sagaIds")
+    int deleteBySagaIds(@Param("sagaName") String sagaName, @Param("sagaIds") Collection<Long> sagaIds);
+}
@@ -0,0 +1,24 @@
+package com.hassani.transactionservice.repository;
+
+import com.hassani.transactionservice.entities.TransactionHistory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TransactionHistoryRepository extends JpaRepository<TransactionHistory, Long> {
+    @Modifying
+    @Query("insert into TransactionHistory (id, fromAccount, toAccount, amount, status, createdAt, updatedAt, archivedAt, batchId, settlementId) "
+            + "select t.id, t.fromAccount, t.toAccount, t.amount, t.status, t.createdAt, t.updatedAt, :archivedAt, t.batchId, t.settlementId "
+            + "from Transaction t where t.id in :ids")
+    int copyFromTransactions(@Param("ids") Collection<Long> ids, @Param("archivedAt") Instant archivedAt);
+
+    @Query("select h.status as status, count(h) as count from TransactionHistory h where h.batchId = :batchId group by h.status")
+    List<TransactionRepository.StatusCount> countByBatchIdGroupByStatus(@Param("batchId") String batchId);
+}
@@ -1,13 +1,62 @@
 package com.hassani.transactionservice.repository;
 
 import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    Optional<Transaction> findFirstByFromAccountAndStatusOrderByIdDesc(String fromAccount, String status);
-    Optional<Transaction> findFirstByToAccountAndStatusOrderByIdDesc(String toAccount, String status);
-}
\ No newline at end of file
+    interface StatusCount {
+        TransactionStatus getStatus();
+        long getCount();
+    }
+
+    interface AccountCount {
+        String getFromAccount();
+        long getCount();
+    }
+
+    long countByStatus(TransactionStatus status);
+
+    List<Transaction> findByStatusIn(Collection<TransactionStatus> statuses);
+
+    @Query("select t.id from Transaction t where t.status in :statuses and t.updatedAt < :cutoff order by t.id")
+    List<Long> findIdsByStatusInAndUpdatedAtBefore(@Param("statuses") Collection<TransactionStatus> statuses,
+                                                    @Param("cutoff") Instant cutoff, Pageable page);
+
+    @Query("select t.status as status, count(t) as count from Transaction t where t.batchId = :batchId group by t.status")
+    List<StatusCount> countByBatchIdGroupByStatus(@Param("batchId") String batchId);
+
+    List<Transaction> findBySettlementIdOrderById(Long settlementId);
+
+    @Modifying
+    @Query("update Transaction t set t.settlementId = :settlementId where t.id in :ids and t.settlementId is null "
+            + "and t.status = com.hassani.transactionservice.entities.TransactionStatus.PENDING")
+    int assignSettlement(@Param("ids") Collection<Long> ids, @Param("settlementId") Long settlementId);
+
+    @Modifying
+    @Query("update Transaction t set t.settlementId = null where t.id in :ids")
+    int clearSettlement(@Param("ids") Collection<Long> ids);
+
+    // Only the saga log writes statuses; a count below ids.size() means some row was not in the expected status
+    @Modifying
+    @Query("update Transaction t set t.status = :to, t.updatedAt = :updatedAt where t.id in :ids and t.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("from") TransactionStatus from,
+                     @Param("to") TransactionStatus to, @Param("updatedAt") Instant updatedAt);
+
+    @Query("select t.id from Transaction t where t.id in :ids and t.status = :status")
+    List<Long> findIdsInStatus(@Param("ids") Collection<Long> ids, @Param("status") TransactionStatus status);
+
+    @Query("select t.fromAccount as fromAccount, count(t) as count from Transaction t "
+            + "where t.status in :statuses and t.batchId is null group by t.fromAccount")
+    List<AccountCount> countUnbatchedByFromAccount(@Param("statuses") Collection<TransactionStatus> statuses);
+}
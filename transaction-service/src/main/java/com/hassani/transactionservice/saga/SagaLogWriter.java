@@ -0,0 +1,82 @@
+package com.hassani.transactionservice.saga;
+
+import com.hassani.commonlib.outbox.OutboxPublisher;
+import com.hassani.commonlib.saga.SagaCommand;
+import com.hassani.commonlib.saga.SagaTransition;
+import com.hassani.transactionservice.entities.SagaLogEntry;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.repository.SagaLogRepository;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.*;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SagaLogWriter {
+    private final SagaLogRepository sagaLogRepository;
+    private final TransactionRepository transactionRepository;
+    private final OutboxPublisher outboxPublisher;
+
+    /**
+     * Stores transfer saga transitions in one transaction, joining the caller's if there is one: the new
+     * Transaction statuses, the log entries and the commands as outbox events. Statuses are written with
+     * one update per distinct change, and a saga changed several times in the batch is updated once. A
+     * saga whose row is not in the status its first transition starts from is refused: none of its
+     * transitions are stored and its ID is returned, while the rest of the batch is.
+     */
+    @Transactional
+    public Set<Long> write(List<SagaTransition<TransactionStatus, Transfer>> transitions) {
+        Instant now = Instant.now();
+        Map<Long, TransactionStatus> firstStatus = new HashMap<>();
+        Map<Long, TransactionStatus> lastStatus = new HashMap<>();
+        for (SagaTransition<TransactionStatus, Transfer> transition : transitions) {
+            if (transition.from() != null && transition.changesState()) {
+                firstStatus.putIfAbsent(transition.sagaId(), transition.from());
+                lastStatus.put(transition.sagaId(), transition.to());
+            }
+        }
+
+        Map<List<TransactionStatus>, List<Long>> changes = new HashMap<>();
+        for (Map.Entry<Long, TransactionStatus> first : firstStatus.entrySet()) {
+            TransactionStatus last = lastStatus.get(first.getKey());
+            if (first.getValue() != last) {
+                changes.computeIfAbsent(List.of(first.getValue(), last), change -> new ArrayList<>()).add(first.getKey());
+            }
+        }
+        Set<Long> refused = new HashSet<>();
+        for (Map.Entry<List<TransactionStatus>, List<Long>> change : changes.entrySet()) {
+            List<Long> ids = change.getValue();
+            TransactionStatus from = change.getKey().get(0);
+            TransactionStatus to = change.getKey().get(1);
+            int updated = transactionRepository.updateStatus(ids, from, to, now);
+            if (updated != ids.size()) {
+                // A row that was already in the target status cannot be told apart from one moved here
+                Set<Long> moved = new HashSet<>(transactionRepository.findIdsInStatus(ids, to));
+                List<Long> stale = ids.stream().filter(id -> !moved.contains(id)).toList();
+                refused.addAll(stale);
+                log.warn("Refusing the transitions of transfers {} that were no longer {} when moving them to {}",
+                        stale, from, to);
+            }
+        }
+
+        List<SagaLogEntry> entries = new ArrayList<>(transitions.size());
+        for (SagaTransition<TransactionStatus, Transfer> transition : transitions) {
+            if (refused.contains(transition.sagaId())) {
+                continue;
+            }
+            entries.add(new SagaLogEntry(null, TransferSaga.NAME, transition.sagaId(), transition.from(),
+                    transition.to(), transition.trigger(), now));
+            for (SagaCommand command : transition.commands()) {
+                outboxPublisher.publish(command.topic(), command.key(), command.payload(), transition.trace());
+            }
+        }
+        sagaLogRepository.saveAll(entries);
+        return refused;
+    }
+}
@@ -0,0 +1,22 @@
+package com.hassani.transactionservice.saga;
+
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionStatus;
+
+import java.time.Instant;
+
+/**
+ * The immutable part of a transfer, kept in memory by the saga engine while the saga runs.
+ */
+public record Transfer(Long id, String fromAccount, String toAccount, Double amount, Instant createdAt, String batchId) {
+
+    public static Transfer of(Transaction transaction) {
+        return new Transfer(transaction.getId(), transaction.getFromAccount(), transaction.getToAccount(),
+                transaction.getAmount(), transaction.getCreatedAt(), transaction.getBatchId());
+    }
+
+    // For the completion, admission and metrics hooks, which take a Transaction
+    public Transaction toTransaction(TransactionStatus status, Instant updatedAt) {
+        return new Transaction(id, fromAccount, toAccount, amount, status, createdAt, updatedAt, batchId, null);
+    }
+}
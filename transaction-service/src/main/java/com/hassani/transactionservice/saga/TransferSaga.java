@@ -0,0 +1,148 @@
+package com.hassani.transactionservice.saga;
+
+import com.hassani.commonlib.event.*;
+import com.hassani.commonlib.saga.*;
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionHistory;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.metrics.SagaMetrics;
+import com.hassani.transactionservice.repository.TransactionHistoryRepository;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The transfer saga on the saga engine: debit the source account, then credit the target account,
+ * and revert the debit if the credit fails. A debit that lands after the saga failed is reverted too.
+ * The credit is past the point of no return, so its timeout only ever resends credit-account.
+ * <p>
+ * Transitions from Kafka replies and timeouts go through a group-commit log, so concurrent sagas share
+ * one database transaction; sagas started by a request are written in the request's own transaction.
+ */
+@Component
+public class TransferSaga {
+    public static final String NAME = "transfer";
+
+    static final SagaDefinition<TransactionStatus, Transfer> DEFINITION =
+            SagaDefinition.<TransactionStatus, Transfer>builder(NAME, TransactionStatus.class)
+                    .step(SagaStep.<TransactionStatus, Transfer>builder("debit", TransactionStatus.PENDING)
+                            .invoke("initiate-transfer", Transfer::fromAccount,
+                                    t -> new InitiateTransfer(t.id(), t.fromAccount(), t.toAccount(), t.amount()))
+                            .onSuccess("account-debited", AccountDebited.class, AccountDebited::getTransactionId)
+                            .onFailure("transfer-failed", TransferFailed.class, TransferFailed::getTransactionId)
+                            .compensateWith("revert-debit", Transfer::fromAccount,
+                                    t -> new RevertDebit(t.id(), t.fromAccount(), t.amount()))
+                            .build())
+                    .step(SagaStep.<TransactionStatus, Transfer>builder("credit", TransactionStatus.DEBITED)
+                            .invoke("credit-account", Transfer::toAccount,
+                                    t -> new CreditAccount(t.id(), t.toAccount(), t.amount()))
+                            .onSuccess("account-credited", AccountCredited.class, AccountCredited::getTransactionId)
+                            .onFailure("credit-failed", CreditFailed.class, CreditFailed::getTransactionId)
+                            .retryOnTimeout()
+                            .build())
+                    .completedIn(TransactionStatus.COMPLETED)
+                    .failedIn(TransactionStatus.FAILED)
+                    .build();
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final GroupCommitSagaLog<TransactionStatus, Transfer> sagaLog;
+    private final SagaEngine<TransactionStatus, Transfer> engine;
+    private final Duration writeTimeout;
+
+    public TransferSaga(TransactionRepository transactionRepository,
+                        TransactionHistoryRepository transactionHistoryRepository,
+                        SagaLogWriter sagaLogWriter,
+                        SagaMetrics sagaMetrics,
+                        @Value("${saga.log.max-batch:256}") int maxBatch,
+                        @Value("${saga.log.write-timeout:10s}") Duration writeTimeout) {
+        this.transactionRepository = transactionRepository;
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.sagaLog = new GroupCommitSagaLog<>(NAME, sagaLogWriter::write, maxBatch, sagaMetrics::sagaLogFlushed);
+        this.engine = new SagaEngine<>(DEFINITION, this::load, sagaLog);
+        this.writeTimeout = writeTimeout;
+    }
+
+    public String[] replyTopics() {
+        return DEFINITION.replyTopics().toArray(String[]::new);
+    }
+
+    /**
+     * The first transition of a saga whose PENDING row the caller has just saved. The caller writes it
+     * in its own transaction, and the saga is kept in memory once that commits.
+     */
+    public SagaTransition<TransactionStatus, Transfer> start(Transaction transaction) {
+        Transfer transfer = Transfer.of(transaction);
+        SagaTransition<TransactionStatus, Transfer> transition = DEFINITION.start(transfer.id(), transfer);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    engine.track(transfer.id(), transition.to(), transfer);
+                }
+            });
+        } else {
+            engine.track(transfer.id(), transition.to(), transfer);
+        }
+        return transition;
+    }
+
+    /**
+     * The command of the step the transfer waits in, for netting to send outside the engine.
+     */
+    public SagaCommand command(Transaction transaction) {
+        return DEFINITION.command(transaction.getStatus(), Transfer.of(transaction));
+    }
+
+    /**
+     * Applies a reply and waits until it is durable; null when it did not fit the saga's state.
+     */
+    public SagaTransition<TransactionStatus, Transfer> handle(Object event) {
+        return await(engine.handle(event));
+    }
+
+    public SagaTransition<TransactionStatus, Transfer> timeout(Long transactionId, boolean exhausted) {
+        return await(engine.timeout(transactionId, exhausted));
+    }
+
+    public CompletableFuture<SagaTransition<TransactionStatus, Transfer>> complete(Long transactionId, String trigger) {
+        return engine.complete(transactionId, trigger);
+    }
+
+    // A stalled log write fails the caller instead of holding a listener thread; the transition is still
+    // sent if the write lands later, and a redelivered reply is then ignored as not fitting the state
+    private SagaTransition<TransactionStatus, Transfer> await(
+            CompletableFuture<SagaTransition<TransactionStatus, Transfer>> durable) {
+        try {
+            return durable.get(writeTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Saga log did not write the transition within " + writeTimeout, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the saga log", e);
+        }
+    }
+
+    private SagaEngine.Snapshot<TransactionStatus, Transfer> load(Long transactionId) {
+        Transaction transaction = transactionRepository.findById(transactionId)
+                .or(() -> transactionHistoryRepository.findById(transactionId).map(TransactionHistory::toTransaction))
+                .orElse(null);
+        return transaction != null ? new SagaEngine.Snapshot<>(transaction.getStatus(), Transfer.of(transaction)) : null;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sagaLog.close();
+    }
+}
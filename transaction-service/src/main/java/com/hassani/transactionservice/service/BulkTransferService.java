@@ -0,0 +1,121 @@
+package com.hassani.transactionservice.service;
+
+import com.hassani.commonlib.saga.SagaTransition;
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.model.BatchStatusResponse;
+import com.hassani.transactionservice.model.BulkTransferResponse;
+import com.hassani.transactionservice.model.InitiateTransferRequest;
+import com.hassani.transactionservice.repository.TransactionHistoryRepository;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import com.hassani.transactionservice.saga.SagaLogWriter;
+import com.hassani.transactionservice.saga.Transfer;
+import com.hassani.transactionservice.saga.TransferSaga;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Starts many sagas under one batch ID. Each chunk of saga.bulk.chunk-size transfers is inserted in
+ * its own transaction; Transaction, OutboxEvent and SagaLogEntry take pooled sequence IDs, so Hibernate
+ * writes the rows in JDBC batches, and the outbox relay publishes the initiate-transfer events in
+ * pipelined batches.
+ */
+@Slf4j
+@Service
+public class BulkTransferService {
+    private final TransactionRepository transactionRepository;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final TransferSaga transferSaga;
+    private final SagaLogWriter sagaLogWriter;
+    private final SagaTimeoutScheduler sagaTimeouts;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public BulkTransferService(TransactionRepository transactionRepository,
+                               TransactionHistoryRepository transactionHistoryRepository,
+                               TransferSaga transferSaga,
+                               SagaLogWriter sagaLogWriter,
+                               SagaTimeoutScheduler sagaTimeouts,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${saga.bulk.chunk-size:1000}") int chunkSize) {
+        this.transactionRepository = transactionRepository;
+        this.transactionHistoryRepository = transactionHistoryRepository;
+        this.transferSaga = transferSaga;
+        this.sagaLogWriter = sagaLogWriter;
+        this.sagaTimeouts = sagaTimeouts;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Chunks commit independently: if one fails, the chunks before it are already running, so the
+     * response still carries the batch ID and says how many transfers were accepted. Only a failure
+     * of the first chunk, which leaves nothing behind, is thrown.
+     */
+    public BulkTransferResponse initiateBulk(List<InitiateTransferRequest> requests) {
+        String batchId = UUID.randomUUID().toString();
+        List<Long> transactionIds = new ArrayList<>(requests.size());
+        for (int from = 0; from < requests.size(); from += chunkSize) {
+            List<InitiateTransferRequest> chunk = requests.subList(from, Math.min(from + chunkSize, requests.size()));
+            try {
+                transactionIds.addAll(transactionTemplate.execute(status -> insertChunk(batchId, chunk)));
+            } catch (RuntimeException e) {
+                if (transactionIds.isEmpty()) {
+                    throw e;
+                }
+                log.error("Batch {} stopped after {} of {} transfers", batchId, transactionIds.size(), requests.size(), e);
+                return new BulkTransferResponse(batchId, transactionIds, transactionIds.size(), requests.size(),
+                        "Transfers from " + (from + 1) + " on were not started: " + e.getMessage());
+            }
+        }
+        log.info("Initiated batch {} with {} transfers", batchId, transactionIds.size());
+        return new BulkTransferResponse(batchId, transactionIds, transactionIds.size(), requests.size(), null);
+    }
+
+    private List<Long> insertChunk(String batchId, List<InitiateTransferRequest> chunk) {
+        List<Transaction> transactions = new ArrayList<>(chunk.size());
+        for (InitiateTransferRequest request : chunk) {
+            Transaction transaction = new Transaction();
+            transaction.setFromAccount(request.getFromAccount());
+            transaction.setToAccount(request.getToAccount());
+            transaction.setAmount(request.getAmount());
+            transaction.setStatus(TransactionStatus.PENDING);
+            transaction.setBatchId(batchId);
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+        List<SagaTransition<TransactionStatus, Transfer>> started = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            started.add(transferSaga.start(transaction));
+            sagaTimeouts.trackAfterCommit(transaction);
+        }
+        sagaLogWriter.write(started);
+        return transactions.stream().map(Transaction::getId).toList();
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<BatchStatusResponse> findBatch(String batchId) {
+        Map<TransactionStatus, Long> counts = new EnumMap<>(TransactionStatus.class);
+        for (TransactionRepository.StatusCount count : transactionRepository.countByBatchIdGroupByStatus(batchId)) {
+            counts.merge(count.getStatus(), count.getCount(), Long::sum);
+        }
+        for (TransactionRepository.StatusCount count : transactionHistoryRepository.countByBatchIdGroupByStatus(batchId)) {
+            counts.merge(count.getStatus(), count.getCount(), Long::sum);
+        }
+        if (counts.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new BatchStatusResponse(batchId,
+                counts.values().stream().mapToLong(Long::longValue).sum(),
+                counts.getOrDefault(TransactionStatus.PENDING, 0L),
+                counts.getOrDefault(TransactionStatus.DEBITED, 0L),
+                counts.getOrDefault(TransactionStatus.COMPLETED, 0L),
+                counts.getOrDefault(TransactionStatus.FAILED, 0L)));
+    }
+}
@@ -0,0 +1,128 @@
+package com.hassani.transactionservice.service;
+
+import com.hassani.commonlib.timer.HashedTimingWheel;
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Per-saga deadlines for PENDING and DEBITED transactions, held in a hashed timing wheel. Every
+ * status change re-arms or cancels the deadline in O(1) after commit, and the wheel is rebuilt from
+ * the in-flight rows once at startup, so the table is never polled. Expired deadlines are handed to
+ * {@link TransactionService#handleSagaTimeout} on a separate thread.
+ */
+@Slf4j
+@Component
+public class SagaTimeoutScheduler {
+    private final TransactionService transactionService;
+    private final TransactionRepository transactionRepository;
+    private final Duration pendingTimeout;
+    private final Duration debitedTimeout;
+    private final int maxResends;
+    private final Map<Long, Integer> attempts = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final HashedTimingWheel<Long> wheel;
+
+    public SagaTimeoutScheduler(@Lazy TransactionService transactionService,
+                                TransactionRepository transactionRepository,
+                                @Value("${saga.timeout.pending:30s}") Duration pendingTimeout,
+                                @Value("${saga.timeout.debited:30s}") Duration debitedTimeout,
+                                @Value("${saga.timeout.max-resends:2}") int maxResends,
+                                @Value("${saga.timeout.tick:100ms}") Duration tick,
+                                @Value("${saga.timeout.wheel-size:512}") int wheelSize) {
+        this.transactionService = transactionService;
+        this.transactionRepository = transactionRepository;
+        this.pendingTimeout = pendingTimeout;
+        this.debitedTimeout = debitedTimeout;
+        this.maxResends = maxResends;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "saga-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.wheel = new HashedTimingWheel<>("saga-timeouts", tick, wheelSize, id -> executor.execute(() -> expire(id)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Instant now = Instant.now();
+        int count = 0;
+        for (Transaction transaction : transactionRepository.findByStatusIn(
+                EnumSet.of(TransactionStatus.PENDING, TransactionStatus.DEBITED))) {
+            Instant since = transaction.getUpdatedAt() != null ? transaction.getUpdatedAt() : now;
+            wheel.schedule(transaction.getId(), timeoutFor(transaction.getStatus()).minus(Duration.between(since, now)));
+            count++;
+        }
+        log.info("Scheduled timeouts for {} in-flight sagas", count);
+    }
+
+    /**
+     * Re-arms the deadline for the transaction's new status, or cancels it once the saga is finished.
+     */
+    public void trackAfterCommit(Transaction transaction) {
+        Long id = transaction.getId();
+        TransactionStatus status = transaction.getStatus();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    track(id, status);
+                }
+            });
+        } else {
+            track(id, status);
+        }
+    }
+
+    private void track(Long id, TransactionStatus status) {
+        attempts.remove(id);
+        if (status.isTerminal()) {
+            wheel.cancel(id);
+        } else {
+            wheel.schedule(id, timeoutFor(status));
+        }
+    }
+
+    private void expire(Long id) {
+        int attempt = attempts.merge(id, 1, Integer::sum);
+        try {
+            TransactionStatus status = transactionService.handleSagaTimeout(id, attempt > maxResends);
+            if (status != null && !status.isTerminal()) {
+                // Back off while the other side stays silent, capped at 16 timeouts
+                wheel.schedule(id, timeoutFor(status).multipliedBy(1L << Math.min(attempt, 4)));
+            } else {
+                attempts.remove(id);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to handle timeout of transaction ID: {}: {}", id, e.getMessage());
+            wheel.schedule(id, pendingTimeout);
+        }
+    }
+
+    private Duration timeoutFor(TransactionStatus status) {
+        return status == TransactionStatus.DEBITED ? debitedTimeout : pendingTimeout;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        wheel.close();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,81 @@
+package com.hassani.transactionservice.service;
+
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.repository.SagaLogRepository;
+import com.hassani.transactionservice.repository.TransactionHistoryRepository;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import com.hassani.transactionservice.saga.TransferSaga;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves COMPLETED and FAILED transactions from the hot Transaction table into TransactionHistory,
+ * one insert-select and one bulk delete per batch, and deletes their saga log entries in the same
+ * transaction. Rows are left in place for min-age so late replies and waiting clients still find them
+ * in the hot table.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "saga.archive.enabled", havingValue = "true", matchIfMissing = true)
+public class TransactionArchiver {
+    private static final Set<TransactionStatus> TERMINAL = EnumSet.of(TransactionStatus.COMPLETED, TransactionStatus.FAILED);
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionHistoryRepository historyRepository;
+    private final SagaLogRepository sagaLogRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration minAge;
+    private final int batchSize;
+
+    public TransactionArchiver(TransactionRepository transactionRepository,
+                               TransactionHistoryRepository historyRepository,
+                               SagaLogRepository sagaLogRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${saga.archive.min-age:5m}") Duration minAge,
+                               @Value("${saga.archive.batch-size:1000}") int batchSize) {
+        this.transactionRepository = transactionRepository;
+        this.historyRepository = historyRepository;
+        this.sagaLogRepository = sagaLogRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.minAge = minAge;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${saga.archive.interval-ms:10000}")
+    public void archive() {
+        Instant cutoff = Instant.now().minus(minAge);
+        int total = 0;
+        int archived;
+        do {
+            archived = transactionTemplate.execute(status -> archiveBatch(cutoff));
+            total += archived;
+        } while (archived == batchSize);
+        if (total > 0) {
+            log.info("Archived {} finished transactions", total);
+        }
+    }
+
+    int archiveBatch(Instant cutoff) {
+        List<Long> ids = transactionRepository.findIdsByStatusInAndUpdatedAtBefore(TERMINAL, cutoff,
+                PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        historyRepository.copyFromTransactions(ids, Instant.now());
+        transactionRepository.deleteAllByIdInBatch(ids);
+        sagaLogRepository.deleteBySagaIds(TransferSaga.NAME, ids);
+        return ids.size();
+    }
+}
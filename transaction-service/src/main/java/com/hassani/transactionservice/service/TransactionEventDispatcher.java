@@ -0,0 +1,61 @@
+package com.hassani.transactionservice.service;
+
+import com.hassani.commonlib.dispatch.KeyOrderedDispatcher;
+import com.hassani.commonlib.trace.TraceContext;
+import com.hassani.commonlib.trace.TraceSpan;
+import com.hassani.commonlib.trace.Tracer;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "saga.kafka.dispatch-mode", havingValue = "ordered")
+public class TransactionEventDispatcher implements AutoCloseable {
+    private final TransactionService transactionService;
+    private final KeyOrderedDispatcher dispatcher;
+    private final Tracer tracer;
+
+    public TransactionEventDispatcher(TransactionService transactionService,
+                                      Tracer tracer,
+                                      @Value("${saga.kafka.dispatch-lanes:8}") int lanes) {
+        this.transactionService = transactionService;
+        this.dispatcher = new KeyOrderedDispatcher("transaction-dispatch", lanes);
+        this.tracer = tracer;
+    }
+
+    @Timed(value = "saga.handler", description = "Saga event handling per listener method")
+    @KafkaListener(topics = "#{@transferSaga.replyTopics()}", groupId = "transaction-service", batch = "true")
+    public void dispatch(List<ConsumerRecord<String, Object>> records) {
+        log.debug("Dispatching {} records across account lanes", records.size());
+        try {
+            dispatcher.dispatch(records, ConsumerRecord::key, this::route);
+        } catch (KeyOrderedDispatcher.DispatchException e) {
+            // Redelivers from the failed index, including records other lanes already applied
+            throw new BatchListenerFailedException(e.getMessage(), e.getCause(), e.getIndex());
+        }
+    }
+
+    private void route(ConsumerRecord<String, Object> record) {
+        try (TraceSpan span = tracer.startChild("handle " + record.topic(), TraceContext.fromHeaders(record.headers()))) {
+            try {
+                transactionService.handleSagaEvent(record.value());
+            } catch (RuntimeException e) {
+                span.markError();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        dispatcher.close();
+    }
+}
@@ -1,138 +1,213 @@
 package com.hassani.transactionservice.service;
 
-import com.hassani.commonlib.event.*;
+import com.hassani.commonlib.event.NetTransferSettled;
+import com.hassani.commonlib.event.SettleNetTransfer;
+import com.hassani.commonlib.outbox.OutboxPublisher;
+import com.hassani.commonlib.saga.SagaTransition;
 import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.metrics.SagaMetrics;
+import com.hassani.transactionservice.model.TransferResponse;
+import com.hassani.transactionservice.repository.TransactionHistoryRepository;
 import com.hassani.transactionservice.repository.TransactionRepository;
+import com.hassani.transactionservice.saga.SagaLogWriter;
+import com.hassani.transactionservice.saga.Transfer;
+import com.hassani.transactionservice.saga.TransferSaga;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    // Per-record listeners only run when no batch-level dispatch mode is configured
+    static final String RECORD_MODE =
+            "#{'${saga.kafka.dispatch-mode:record}' == 'record' && ${spring.kafka.listener.auto-startup:true}}";
+
     private final TransactionRepository transactionRepository;
+    private final TransactionHistoryRepository transactionHistoryRepository;
+    private final OutboxPublisher outboxPublisher;
+    private final TransferCompletionRegistry completionRegistry;
+    private final SagaMetrics sagaMetrics;
+    private final SagaTimeoutScheduler sagaTimeouts;
+    private final TransferAdmission transferAdmission;
+    private final TransferNetting transferNetting;
+    private final TransferSaga transferSaga;
+    private final SagaLogWriter sagaLogWriter;
 
     @Transactional
-    public void initiateTransfer(String fromAccount, String toAccount, Double amount) {
+    public Long initiateTransfer(String fromAccount, String toAccount, Double amount) {
         log.info("Initiating transfer: from={}, to={}, amount={}", fromAccount, toAccount, amount);
         Transaction transaction = new Transaction();
         transaction.setFromAccount(fromAccount);
         transaction.setToAccount(toAccount);
         transaction.setAmount(amount);
-        transaction.setStatus("PENDING");
+        transaction.setStatus(TransactionStatus.PENDING);
         transaction = transactionRepository.save(transaction);
+        sagaTimeouts.trackAfterCommit(transaction);
         log.info("Created transaction with ID: {}, status: {}", transaction.getId(), transaction.getStatus());
 
-        kafkaTemplate.send("initiate-transfer", new InitiateTransfer(fromAccount, toAccount, amount));
-        log.info("Sent initiate-transfer event for transaction ID: {}", transaction.getId());
+        SagaTransition<TransactionStatus, Transfer> started = transferSaga.start(transaction);
+        if (transferNetting.isEnabled()) {
+            sagaLogWriter.write(List.of(started.withoutCommands()));
+            transferNetting.offerAfterCommit(transaction);
+            log.info("Buffered transaction ID: {} for netting", transaction.getId());
+            return transaction.getId();
+        }
+        sagaLogWriter.write(List.of(started));
+        log.info("Queued initiate-transfer event for transaction ID: {}", transaction.getId());
+        return transaction.getId();
     }
 
-    @KafkaListener(topics = "account-debited", groupId = "transaction-service")
-    public void handleAccountDebited(AccountDebited event) {
-        log.info("Received account-debited event: account={}, amount={}",
-                event.getAccountNumber(), event.getAmount());
-
-        try {
-            Transaction transaction = transactionRepository
-                    .findFirstByFromAccountAndStatusOrderByIdDesc(event.getAccountNumber(), "PENDING")
-                    .orElseThrow(() -> new RuntimeException("No pending transaction found for account: " + event.getAccountNumber()));
-
-            log.info("Found transaction ID: {}, updating status to DEBITED", transaction.getId());
-            transaction.setStatus("DEBITED");
-            transactionRepository.save(transaction);
+    @Transactional(readOnly = true)
+    public Optional<TransferResponse> findTransfer(Long transactionId) {
+        Optional<TransferResponse> active = transactionRepository.findById(transactionId).map(TransferResponse::from);
+        return active.isPresent() ? active
+                : transactionHistoryRepository.findById(transactionId).map(TransferResponse::from);
+    }
 
-            kafkaTemplate.send("credit-account",
-                    new CreditAccount(transaction.getToAccount(), transaction.getAmount()));
-            log.info("Sent credit-account event for transaction ID: {}", transaction.getId());
-        } catch (Exception e) {
-            log.error("Error processing account-debited event: {}", e.getMessage());
-            throw new RuntimeException("Failed to process account-debited event", e);
-        }
+    @Timed(value = "saga.handler", description = "Saga event handling per listener method")
+    @KafkaListener(topics = "#{@transferSaga.replyTopics()}", groupId = "transaction-service", autoStartup = RECORD_MODE)
+    public void onSagaReply(ConsumerRecord<String, Object> record) {
+        handleSagaEvent(record.value());
     }
 
-    @KafkaListener(topics = "account-credited", groupId = "transaction-service")
-    public void handleAccountCredited(AccountCredited event) {
-        log.info("Received account-credited event: account={}, amount={}",
-                event.getAccountNumber(), event.getAmount());
+    /**
+     * Applies any reply of the transfer saga; the saga definition decides the next status and commands,
+     * and this returns once the transition is durable in the saga log.
+     */
+    public void handleSagaEvent(Object event) {
+        log.info("Received {} event: {}", event.getClass().getSimpleName(), event);
 
+        SagaTransition<TransactionStatus, Transfer> transition;
         try {
-            // First try to find a transaction where this account is the destination
-            Optional<Transaction> transactionOpt = transactionRepository
-                    .findFirstByToAccountAndStatusOrderByIdDesc(event.getAccountNumber(), "DEBITED");
+            transition = transferSaga.handle(event);
+        } catch (RuntimeException e) {
+            log.error("Error processing {} event: {}", event.getClass().getSimpleName(), e.getMessage());
+            throw new RuntimeException("Failed to process " + event.getClass().getSimpleName() + " event", e);
+        }
+        if (transition == null) {
+            log.warn("Ignoring {} event, its transaction is unknown or in another status", event.getClass().getSimpleName());
+            return;
+        }
+        afterTransition(transition);
+        if (transition.changesState()) {
+            log.info("Transaction ID: {} moved from {} to {}", transition.sagaId(), transition.from(), transition.to());
+        } else {
+            log.warn("Late {} for {} transaction ID: {}, queued {}", transition.trigger(), transition.to(),
+                    transition.sagaId(), transition.commands().get(0).topic());
+        }
+    }
 
-            if (transactionOpt.isPresent()) {
-                // Normal flow - completing a successful transfer
-                Transaction transaction = transactionOpt.get();
-                log.info("Found transaction ID: {}, updating status to COMPLETED", transaction.getId());
-                transaction.setStatus("COMPLETED");
-                transactionRepository.save(transaction);
-                log.info("Transaction ID: {} completed successfully", transaction.getId());
+    /**
+     * Resolves every transfer of a settlement together: all COMPLETED when account-service applied the
+     * net movement, otherwise each one is released from the settlement and started as its own saga.
+     * A settlement spans two accounts, so this listener runs in every dispatch mode.
+     */
+    @Timed(value = "saga.handler", description = "Saga event handling per listener method")
+    @KafkaListener(topics = "net-transfer-settled", groupId = "transaction-service",
+            autoStartup = "${spring.kafka.listener.auto-startup:true}")
+    public void handleNetTransferSettled(NetTransferSettled event) {
+        log.info("Received net-transfer-settled event: settlementId={}, accounts={}/{}, netAmount={}, settled={}",
+                event.getSettlementId(), event.getAccountA(), event.getAccountB(), event.getNetAmount(), event.isSettled());
+
+        List<Transaction> pending = new ArrayList<>();
+        for (Transaction transaction : transactionRepository.findBySettlementIdOrderById(event.getSettlementId())) {
+            if (transaction.getStatus() == TransactionStatus.PENDING) {
+                pending.add(transaction);
             } else {
-                // Check if this is a compensation credit (rollback)
-                transactionOpt = transactionRepository
-                        .findFirstByFromAccountAndStatusOrderByIdDesc(event.getAccountNumber(), "FAILED");
-
-                if (transactionOpt.isPresent()) {
-                    Transaction transaction = transactionOpt.get();
-                    log.info("Found failed transaction ID: {}, compensation completed", transaction.getId());
-                } else {
-                    log.warn("No matching transaction found for account-credited event: account={}",
-                            event.getAccountNumber());
+                log.warn("Ignoring net-transfer-settled event for transaction ID: {} in status {}",
+                        transaction.getId(), transaction.getStatus());
+            }
+        }
+        if (event.isSettled()) {
+            // Submitted together so the legs share one saga log flush
+            List<CompletableFuture<SagaTransition<TransactionStatus, Transfer>>> completions = pending.stream()
+                    .map(transaction -> transferSaga.complete(transaction.getId(), "net-transfer-settled"))
+                    .toList();
+            for (CompletableFuture<SagaTransition<TransactionStatus, Transfer>> completion : completions) {
+                SagaTransition<TransactionStatus, Transfer> transition = completion.join();
+                if (transition != null) {
+                    afterTransition(transition);
                 }
             }
-        } catch (Exception e) {
-            log.error("Error processing account-credited event: {}", e.getMessage());
-            throw new RuntimeException("Failed to process account-credited event", e);
+        } else {
+            transferNetting.release(pending);
+            pending.forEach(sagaTimeouts::trackAfterCommit);
         }
+        sagaMetrics.nettingSettled(event.isSettled(), pending.size());
+        log.info("Settlement ID: {} resolved {} transfers {}", event.getSettlementId(), pending.size(),
+                event.isSettled() ? "as COMPLETED" : "as separate sagas");
     }
 
-    @KafkaListener(topics = "transfer-failed", groupId = "transaction-service")
-    public void handleTransferFailed(TransferFailed event) {
-        log.info("Received transfer-failed event: account={}, amount={}",
-                event.getFromAccount(), event.getAmount());
-
-        try {
-            Transaction transaction = transactionRepository
-                    .findFirstByFromAccountAndStatusOrderByIdDesc(event.getFromAccount(), "PENDING")
-                    .orElseThrow(() -> new RuntimeException("No pending transaction found for account: " + event.getFromAccount()));
+    /**
+     * Acts on an expired saga deadline and returns the resulting status. The saga resends the command
+     * of the step it waits in; once the resends are exhausted a PENDING saga is marked FAILED, and a
+     * debit that lands afterwards is reverted. A DEBITED saga only ever gets its credit-account resent,
+     * since a credit that lands after a compensation could not be undone. A PENDING transfer inside a
+     * netting settlement gets the whole settle-net-transfer resent instead. All resends are dropped by
+     * account-service if the original was already applied.
+     */
+    public TransactionStatus handleSagaTimeout(Long transactionId, boolean exhausted) {
+        Transaction transaction = transactionRepository.findById(transactionId).orElse(null);
+        if (transaction == null) {
+            return null;
+        }
+        if (transaction.getStatus() == TransactionStatus.PENDING && transaction.getSettlementId() != null) {
+            // A settlement is applied whole or not at all, so its transfers are never failed by a timeout;
+            // the transfer whose ID names the settlement resends it for all of them
+            if (transaction.getId().equals(transaction.getSettlementId())) {
+                log.warn("Settlement ID: {} timed out, resending settle-net-transfer", transactionId);
+                SettleNetTransfer settlement = transferNetting.settlement(transactionId,
+                        transactionRepository.findBySettlementIdOrderById(transactionId));
+                outboxPublisher.publish("settle-net-transfer", settlement.getAccountA(), settlement);
+                sagaMetrics.timeout(TransactionStatus.PENDING, "resend");
+            }
+            return TransactionStatus.PENDING;
+        }
 
-            log.info("Found transaction ID: {}, updating status to FAILED", transaction.getId());
-            transaction.setStatus("FAILED");
-            transactionRepository.save(transaction);
-            log.info("Transaction ID: {} marked as failed", transaction.getId());
-        } catch (Exception e) {
-            log.error("Error processing transfer-failed event: {}", e.getMessage());
-            throw new RuntimeException("Failed to process transfer-failed event", e);
+        SagaTransition<TransactionStatus, Transfer> transition = transferSaga.timeout(transactionId, exhausted);
+        if (transition == null) {
+            return transaction.getStatus();
+        }
+        if (transition.changesState()) {
+            log.warn("Transaction ID: {} timed out in {}, marking as failed", transactionId, transition.from());
+        } else if (exhausted) {
+            log.error("Transaction ID: {} is stuck in {}, still resending {}", transactionId, transition.from(),
+                    transition.commands().get(0).topic());
+        } else {
+            log.warn("Transaction ID: {} timed out in {}, resending {}", transactionId, transition.from(),
+                    transition.commands().get(0).topic());
         }
+        sagaMetrics.timeout(transition.from(), transition.changesState() ? "failed" : "resend");
+        afterTransition(transition);
+        return transition.to();
     }
 
-    @KafkaListener(topics = "credit-failed", groupId = "transaction-service")
-    public void handleCreditFailed(CreditFailed event) {
-        log.info("Received credit-failed event: account={}, amount={}",
-                event.getAccountNumber(), event.getAmount());
-
-        try {
-            Transaction transaction = transactionRepository
-                    .findFirstByToAccountAndStatusOrderByIdDesc(event.getAccountNumber(), "DEBITED")
-                    .orElseThrow(() -> new RuntimeException("No debited transaction found for account: " + event.getAccountNumber()));
-
-            log.info("Found transaction ID: {}, updating status to FAILED", transaction.getId());
-            transaction.setStatus("FAILED");
-            transactionRepository.save(transaction);
-
-            kafkaTemplate.send("revert-debit",
-                    new RevertDebit(transaction.getFromAccount(), transaction.getAmount()));
-            log.info("Sent revert-debit event for transaction ID: {}", transaction.getId());
-        } catch (Exception e) {
-            log.error("Error processing credit-failed event: {}", e.getMessage());
-            throw new RuntimeException("Failed to process credit-failed event", e);
+    // Runs once the transition is durable, outside any transaction, so the hooks act immediately
+    private void afterTransition(SagaTransition<TransactionStatus, Transfer> transition) {
+        if (transition.changesState()) {
+            Transaction transaction = transition.data().toTransaction(transition.to(), Instant.now());
+            sagaTimeouts.trackAfterCommit(transaction);
+            if (transition.to().isTerminal()) {
+                completionRegistry.completeAfterCommit(transaction);
+                transferAdmission.releaseAfterCommit(transaction);
+                sagaMetrics.recordOutcome(transaction);
+            }
+        }
+        if (transition.compensates()) {
+            sagaMetrics.compensationIssued();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,158 @@
+package com.hassani.transactionservice.service;
+
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.metrics.SagaMetrics;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for POST /transactions/initiate, decided in memory before anything is written.
+ * A global token bucket caps the rate of new sagas, and a counter per source account caps its sagas
+ * in flight; the counter is released after commit once the saga reaches COMPLETED or FAILED.
+ * Transfers submitted through POST /transactions/bulk are not counted. Both limits are lock-free.
+ */
+@Slf4j
+@Component
+public class TransferAdmission {
+    private final TransactionRepository transactionRepository;
+    private final SagaMetrics sagaMetrics;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxInFlightPerAccount;
+    // Token bucket kept as the time the next token becomes available (GCRA), advanced by CAS
+    private final AtomicLong nextToken = new AtomicLong(System.nanoTime());
+    // -1 marks a counter that dropped to zero and is being removed; acquirers wait for its replacement
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public TransferAdmission(TransactionRepository transactionRepository,
+                             SagaMetrics sagaMetrics,
+                             @Value("${saga.admission.rate:1000}") int rate,
+                             @Value("${saga.admission.burst:200}") int burst,
+                             @Value("${saga.admission.max-inflight-per-account:50}") int maxInFlightPerAccount) {
+        this.transactionRepository = transactionRepository;
+        this.sagaMetrics = sagaMetrics;
+        this.intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        this.burstNanos = intervalNanos * Math.max(burst, 1);
+        this.maxInFlightPerAccount = maxInFlightPerAccount;
+    }
+
+    // Counts the sagas that were in flight before a restart, so their terminal events can release them
+    @PostConstruct
+    void rebuild() {
+        if (maxInFlightPerAccount <= 0) {
+            return;
+        }
+        for (TransactionRepository.AccountCount count : transactionRepository.countUnbatchedByFromAccount(
+                EnumSet.of(TransactionStatus.PENDING, TransactionStatus.DEBITED))) {
+            inFlight.put(count.getFromAccount(), new AtomicInteger((int) count.getCount()));
+        }
+        log.info("Admission counters rebuilt for {} accounts with sagas in flight", inFlight.size());
+    }
+
+    /**
+     * Returns false, without side effects, when the transfer has to be rejected.
+     */
+    public boolean tryAdmit(String fromAccount) {
+        if (!acquireAccount(fromAccount)) {
+            sagaMetrics.admissionRejected("account");
+            return false;
+        }
+        if (!takeToken()) {
+            releaseAccount(fromAccount);
+            sagaMetrics.admissionRejected("rate");
+            return false;
+        }
+        return true;
+    }
+
+    // For an admitted transfer whose saga was never created
+    public void cancel(String fromAccount) {
+        releaseAccount(fromAccount);
+    }
+
+    public void releaseAfterCommit(Transaction transaction) {
+        if (transaction.getBatchId() != null) {
+            return;
+        }
+        String fromAccount = transaction.getFromAccount();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    releaseAccount(fromAccount);
+                }
+            });
+        } else {
+            releaseAccount(fromAccount);
+        }
+    }
+
+    private boolean takeToken() {
+        if (intervalNanos == 0) {
+            return true;
+        }
+        while (true) {
+            long now = System.nanoTime();
+            long next = nextToken.get();
+            long advanced = Math.max(next, now) + intervalNanos;
+            if (advanced - now > burstNanos) {
+                return false;
+            }
+            if (nextToken.compareAndSet(next, advanced)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean acquireAccount(String fromAccount) {
+        if (maxInFlightPerAccount <= 0 || fromAccount == null) {
+            return true;
+        }
+        while (true) {
+            AtomicInteger counter = inFlight.computeIfAbsent(fromAccount, account -> new AtomicInteger());
+            int current = counter.get();
+            if (current >= maxInFlightPerAccount) {
+                return false;
+            }
+            if (current >= 0 && counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private void releaseAccount(String fromAccount) {
+        if (maxInFlightPerAccount <= 0 || fromAccount == null) {
+            return;
+        }
+        AtomicInteger counter = inFlight.get(fromAccount);
+        if (counter == null) {
+            return;
+        }
+        while (true) {
+            int current = counter.get();
+            if (current <= 0) {
+                return;
+            }
+            if (counter.compareAndSet(current, current - 1)) {
+                if (current == 1 && counter.compareAndSet(0, -1)) {
+                    inFlight.remove(fromAccount, counter);
+                }
+                return;
+            }
+        }
+    }
+}
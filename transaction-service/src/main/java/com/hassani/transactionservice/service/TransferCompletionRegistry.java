@@ -0,0 +1,60 @@
+package com.hassani.transactionservice.service;
+
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.model.TransferResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-memory registry of clients waiting for a transfer to reach COMPLETED or FAILED. The saga
+ * handlers push the final state in after commit, so waiting never touches the database.
+ */
+@Slf4j
+@Component
+public class TransferCompletionRegistry {
+    private final Map<Long, Set<Consumer<TransferResponse>>> waiters = new ConcurrentHashMap<>();
+
+    public Runnable register(Long transactionId, Consumer<TransferResponse> waiter) {
+        waiters.computeIfAbsent(transactionId, id -> ConcurrentHashMap.newKeySet()).add(waiter);
+        return () -> waiters.computeIfPresent(transactionId, (id, registered) -> {
+            registered.remove(waiter);
+            return registered.isEmpty() ? null : registered;
+        });
+    }
+
+    public void completeAfterCommit(Transaction transaction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    complete(TransferResponse.from(transaction));
+                }
+            });
+        } else {
+            complete(TransferResponse.from(transaction));
+        }
+    }
+
+    public void complete(TransferResponse response) {
+        Set<Consumer<TransferResponse>> registered = waiters.remove(response.getTransactionId());
+        if (registered == null) {
+            return;
+        }
+        log.debug("Notifying {} waiters of transaction ID: {} status {}",
+                registered.size(), response.getTransactionId(), response.getStatus());
+        for (Consumer<TransferResponse> waiter : registered) {
+            try {
+                waiter.accept(response);
+            } catch (RuntimeException e) {
+                log.warn("Failed to notify waiter of transaction ID: {}: {}", response.getTransactionId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.hassani.transactionservice.service;
+
+import com.hassani.commonlib.event.SettleNetTransfer;
+import com.hassani.commonlib.outbox.OutboxPublisher;
+import com.hassani.commonlib.saga.SagaCommand;
+import com.hassani.commonlib.timer.HashedTimingWheel;
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import com.hassani.transactionservice.saga.TransferSaga;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in netting stage in front of the transfer saga. New transfers are buffered per account pair, in
+ * either direction, for saga.netting.window or until saga.netting.max-transfers have arrived. A pair
+ * with a single transfer goes out as the saga's normal first command; otherwise all of them go out as one
+ * settle-net-transfer, which account-service either applies as one net movement or refuses, and then
+ * every transfer runs as its own saga. Buffered transfers are PENDING rows without an event yet, so
+ * after a crash their saga timeout resends them as normal sagas.
+ */
+@Slf4j
+@Component
+public class TransferNetting {
+    // Keeps the settle-net-transfer payload well inside the outbox payload column
+    private static final int MAX_TRANSFERS_LIMIT = 100;
+
+    private final TransactionRepository transactionRepository;
+    private final OutboxPublisher outboxPublisher;
+    private final TransferSaga transferSaga;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxTransfers;
+    private final Map<String, List<Transaction>> buffers = new HashMap<>();
+    private final ExecutorService executor;
+    private final HashedTimingWheel<String> wheel;
+
+    public TransferNetting(TransactionRepository transactionRepository,
+                           OutboxPublisher outboxPublisher,
+                           TransferSaga transferSaga,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${saga.netting.enabled:false}") boolean enabled,
+                           @Value("${saga.netting.window:20ms}") Duration window,
+                           @Value("${saga.netting.max-transfers:50}") int maxTransfers) {
+        this.transactionRepository = transactionRepository;
+        this.outboxPublisher = outboxPublisher;
+        this.transferSaga = transferSaga;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.window = window;
+        if (maxTransfers > MAX_TRANSFERS_LIMIT) {
+            log.warn("saga.netting.max-transfers={} exceeds {}, using {}", maxTransfers, MAX_TRANSFERS_LIMIT, MAX_TRANSFERS_LIMIT);
+        }
+        this.maxTransfers = Math.max(2, Math.min(maxTransfers, MAX_TRANSFERS_LIMIT));
+        if (enabled) {
+            this.executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "saga-netting");
+                thread.setDaemon(true);
+                return thread;
+            });
+            Duration tick = window.toMillis() < 4 ? Duration.ofMillis(1) : window.dividedBy(4);
+            this.wheel = new HashedTimingWheel<>("saga-netting", tick, 64, pair -> executor.execute(() -> expire(pair)));
+        } else {
+            this.executor = null;
+            this.wheel = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffers a transfer once the transaction that created its PENDING row has committed.
+     */
+    public void offerAfterCommit(Transaction transaction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(transaction);
+                }
+            });
+        } else {
+            offer(transaction);
+        }
+    }
+
+    private void offer(Transaction transaction) {
+        String pair = pairOf(transaction);
+        List<Transaction> full = null;
+        synchronized (buffers) {
+            List<Transaction> buffer = buffers.computeIfAbsent(pair, key -> {
+                wheel.schedule(key, window);
+                return new ArrayList<>();
+            });
+            buffer.add(transaction);
+            if (buffer.size() >= maxTransfers) {
+                full = buffers.remove(pair);
+                wheel.cancel(pair);
+            }
+        }
+        if (full != null) {
+            flush(full);
+        }
+    }
+
+    private void expire(String pair) {
+        List<Transaction> buffer;
+        synchronized (buffers) {
+            buffer = buffers.remove(pair);
+        }
+        if (buffer != null) {
+            flush(buffer);
+        }
+    }
+
+    // A failed flush leaves the rows PENDING without an event, and their saga timeout resends them one by one
+    private void flush(List<Transaction> transfers) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (transfers.size() == 1) {
+                    send(transferSaga.command(transfers.get(0)));
+                    return;
+                }
+                List<Transaction> legs = new ArrayList<>(transfers);
+                legs.sort(Comparator.comparing(Transaction::getId));
+                Long settlementId = legs.get(0).getId();
+                List<Long> ids = legs.stream().map(Transaction::getId).toList();
+                int assigned = transactionRepository.assignSettlement(ids, settlementId);
+                if (assigned != ids.size()) {
+                    throw new IllegalStateException(assigned + " of " + ids.size() + " transfers were still PENDING");
+                }
+                SettleNetTransfer settlement = settlement(settlementId, legs);
+                outboxPublisher.publish("settle-net-transfer", settlement.getAccountA(), settlement);
+                log.info("Queued settle-net-transfer for {} transfers between {} and {} under settlement ID: {}",
+                        legs.size(), settlement.getAccountA(), settlement.getAccountB(), settlementId);
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} netted transfers, leaving them to the saga timeout: {}",
+                    transfers.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Takes the PENDING transfers of a refused settlement out of it and sends each one's first saga command.
+     */
+    public void release(List<Transaction> transfers) {
+        if (transfers.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            transactionRepository.clearSettlement(transfers.stream().map(Transaction::getId).toList());
+            for (Transaction transaction : transfers) {
+                send(transferSaga.command(transaction));
+            }
+        });
+    }
+
+    private void send(SagaCommand command) {
+        outboxPublisher.publish(command.topic(), command.key(), command.payload());
+    }
+
+    /**
+     * Settlement event for legs in transaction ID order; accountA is the smaller account number of the pair.
+     */
+    public SettleNetTransfer settlement(Long settlementId, List<Transaction> legs) {
+        Transaction first = legs.get(0);
+        String accountA = first.getFromAccount().compareTo(first.getToAccount()) <= 0 ? first.getFromAccount() : first.getToAccount();
+        String accountB = accountA.equals(first.getFromAccount()) ? first.getToAccount() : first.getFromAccount();
+        long[] transactionIds = new long[legs.size()];
+        double[] amounts = new double[legs.size()];
+        for (int i = 0; i < legs.size(); i++) {
+            Transaction leg = legs.get(i);
+            transactionIds[i] = leg.getId();
+            amounts[i] = leg.getFromAccount().equals(accountA) ? leg.getAmount() : -leg.getAmount();
+        }
+        return new SettleNetTransfer(settlementId, accountA, accountB, transactionIds, amounts);
+    }
+
+    private static String pairOf(Transaction transaction) {
+        String from = transaction.getFromAccount();
+        String to = transaction.getToAccount();
+        return from.compareTo(to) <= 0 ? from + '\u0000' + to : to + '\u0000' + from;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (enabled) {
+            wheel.close();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.hassani.transactionservice;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {"spring.kafka.admin.auto-create=false", "spring.datasource.url=jdbc:h2:mem:transactiondb"})
 class TransactionServiceApplicationTests {
 
 	@Test
@@ -0,0 +1,63 @@
+package com.hassani.transactionservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hassani.transactionservice.directory.AccountDirectory;
+import com.hassani.transactionservice.metrics.SagaMetrics;
+import com.hassani.transactionservice.model.TransferResponse;
+import com.hassani.transactionservice.service.BulkTransferService;
+import com.hassani.transactionservice.service.TransactionService;
+import com.hassani.transactionservice.service.TransferAdmission;
+import com.hassani.transactionservice.service.TransferCompletionRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class TransferEventsTest {
+	private final TransactionService transactionService = mock(TransactionService.class);
+	private final MockMvc mockMvc;
+
+	TransferEventsTest() {
+		TransactionController controller = new TransactionController(transactionService, new TransferCompletionRegistry(),
+				mock(BulkTransferService.class), mock(TransferAdmission.class), mock(AccountDirectory.class),
+				mock(SagaMetrics.class), new ObjectMapper());
+		ReflectionTestUtils.setField(controller, "maxAwaitTimeout", Duration.ofSeconds(60));
+		mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+	}
+
+	@Test
+	void unknownTransferIsNotFound() throws Exception {
+		when(transactionService.findTransfer(42L)).thenReturn(Optional.empty());
+
+		mockMvc.perform(get("/transactions/42/events"))
+				.andExpect(status().isNotFound())
+				.andExpect(request().asyncNotStarted());
+	}
+
+	@Test
+	void finishedTransferStreamsItsStatusAndCloses() throws Exception {
+		when(transactionService.findTransfer(7L)).thenReturn(Optional.of(
+				new TransferResponse(7L, "1001", "7812", 25.0, "COMPLETED", Instant.now(), Instant.now(), null)));
+
+		MvcResult result = mockMvc.perform(get("/transactions/7/events"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		String body = mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertThat(body).contains("event:status").contains("\"status\":\"COMPLETED\"");
+		verify(transactionService, times(1)).findTransfer(7L);
+	}
+}
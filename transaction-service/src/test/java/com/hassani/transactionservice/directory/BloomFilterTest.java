@@ -0,0 +1,94 @@
+package com.hassani.transactionservice.directory;
+
+import com.hassani.commonlib.event.AccountClosed;
+import com.hassani.commonlib.event.AccountOpened;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.ConsumerFactory;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class BloomFilterTest {
+
+	@Test
+	void neverReportsAnInsertedKeyAsMissing() {
+		BloomFilter filter = new BloomFilter(10_000, 0.01);
+
+		IntStream.range(0, 10_000).forEach(i -> filter.put("ACC-" + i));
+
+		IntStream.range(0, 10_000).forEach(i -> assertThat(filter.mightContain("ACC-" + i)).as("ACC-%d", i).isTrue());
+	}
+
+	@Test
+	void keepsTheFalsePositiveRateNearTheTargetAtCapacity() {
+		BloomFilter filter = new BloomFilter(10_000, 0.01);
+		IntStream.range(0, 10_000).forEach(i -> filter.put("ACC-" + i));
+
+		long falsePositives = IntStream.range(0, 100_000).filter(i -> filter.mightContain("OTHER-" + i)).count();
+
+		// 1% of 100000 is 1000; allow for the variance of a single filter
+		assertThat(falsePositives).isLessThan(2_000);
+	}
+
+	@Test
+	void anEmptyFilterContainsNothing() {
+		BloomFilter filter = new BloomFilter(1, 0.01);
+
+		assertThat(filter.mightContain("1001")).isFalse();
+		assertThat(filter.mightContain("")).isFalse();
+	}
+
+	@Test
+	void theDirectoryGrowsItsFilterWithoutLosingAccounts() {
+		AccountDirectory directory = directory(100);
+		IntStream.range(0, 1_000).forEach(i -> directory.onDirectoryEvent(opened("ACC-" + i)));
+		directory.markCaughtUp();
+
+		assertThat(directory.size()).isEqualTo(1_000);
+		IntStream.range(0, 1_000).forEach(i -> assertThat(directory.isKnown("ACC-" + i)).as("ACC-%d", i).isTrue());
+		assertThat(directory.isKnown("ACC-1000")).isFalse();
+		assertThat(directory.isKnown(null)).isFalse();
+	}
+
+	@Test
+	void acceptsEveryAccountUntilCaughtUp() {
+		AccountDirectory directory = directory(100);
+		directory.onDirectoryEvent(opened("1001"));
+
+		assertThat(directory.isKnown("7812")).isTrue();
+
+		directory.markCaughtUp();
+		assertThat(directory.isKnown("1001")).isTrue();
+		assertThat(directory.isKnown("7812")).isFalse();
+	}
+
+	@Test
+	void closedAndTombstonedAccountsAreForgotten() {
+		AccountDirectory directory = directory(100);
+		directory.onDirectoryEvent(opened("1001"));
+		directory.onDirectoryEvent(opened("7812"));
+		directory.onDirectoryEvent(opened("5555"));
+		directory.onDirectoryEvent(record("1001", new AccountClosed("1001")));
+		directory.onDirectoryEvent(record("7812", null));
+		directory.markCaughtUp();
+
+		assertThat(directory.isKnown("1001")).isFalse();
+		assertThat(directory.isKnown("7812")).isFalse();
+		assertThat(directory.isKnown("5555")).isTrue();
+	}
+
+	private static AccountDirectory directory(long expectedAccounts) {
+		return new AccountDirectory(mock(ConsumerFactory.class), true, expectedAccounts, 0.01);
+	}
+
+	private static ConsumerRecord<String, Object> opened(String accountNumber) {
+		return record(accountNumber, new AccountOpened(accountNumber));
+	}
+
+	private static ConsumerRecord<String, Object> record(String key, Object value) {
+		return new ConsumerRecord<>(AccountDirectory.TOPIC, 0, 0, key, value);
+	}
+}
@@ -0,0 +1,70 @@
+package com.hassani.transactionservice.saga;
+
+import com.hassani.commonlib.outbox.OutboxEvent;
+import com.hassani.commonlib.outbox.OutboxRepository;
+import com.hassani.commonlib.saga.SagaCommand;
+import com.hassani.commonlib.saga.SagaTransition;
+import com.hassani.transactionservice.entities.SagaLogEntry;
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.repository.SagaLogRepository;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"spring.kafka.admin.auto-create=false", "spring.datasource.url=jdbc:h2:mem:sagalogdb",
+		"saga.outbox.relay.enabled=false", "spring.kafka.listener.auto-startup=false"})
+class SagaLogWriterTest {
+	@Autowired
+	private SagaLogWriter sagaLogWriter;
+	@Autowired
+	private TransactionRepository transactionRepository;
+	@Autowired
+	private SagaLogRepository sagaLogRepository;
+	@Autowired
+	private OutboxRepository outboxRepository;
+
+	@Test
+	void refusesOnlyTheSagaWhoseRowMovedOnAndStoresTheRest() {
+		Transaction current = save("W-1");
+		Transaction moved = save("W-2");
+		moved.setStatus(TransactionStatus.FAILED);
+		transactionRepository.save(moved);
+
+		assertThat(sagaLogWriter.write(List.of(debited(current), debited(moved)))).containsExactly(moved.getId());
+
+		assertThat(transactionRepository.findById(current.getId()).orElseThrow().getStatus()).isEqualTo(TransactionStatus.DEBITED);
+		assertThat(transactionRepository.findById(moved.getId()).orElseThrow().getStatus()).isEqualTo(TransactionStatus.FAILED);
+		assertThat(sagaLogRepository.findAll()).extracting(SagaLogEntry::getSagaId)
+				.contains(current.getId()).doesNotContain(moved.getId());
+		assertThat(outboxRepository.findAll()).extracting(OutboxEvent::getMessageKey)
+				.contains("W-1-to").doesNotContain("W-2-to");
+	}
+
+	@Test
+	void storesEveryTransitionWhenAllRowsAreWhereTheSagasLeftThem() {
+		Transaction first = save("W-3");
+		Transaction second = save("W-4");
+
+		assertThat(sagaLogWriter.write(List.of(debited(first), debited(second)))).isEmpty();
+
+		assertThat(transactionRepository.findById(first.getId()).orElseThrow().getStatus()).isEqualTo(TransactionStatus.DEBITED);
+		assertThat(transactionRepository.findById(second.getId()).orElseThrow().getStatus()).isEqualTo(TransactionStatus.DEBITED);
+	}
+
+	private Transaction save(String fromAccount) {
+		return transactionRepository.save(new Transaction(null, fromAccount, fromAccount + "-to", 10.0,
+				TransactionStatus.PENDING, null, null, null, null));
+	}
+
+	private static SagaTransition<TransactionStatus, Transfer> debited(Transaction transaction) {
+		SagaCommand credit = new SagaCommand("credit-account", transaction.getToAccount(), transaction.getId(), false);
+		return new SagaTransition<>(transaction.getId(), Transfer.of(transaction), TransactionStatus.PENDING,
+				TransactionStatus.DEBITED, "account-debited", List.of(credit), null);
+	}
+}
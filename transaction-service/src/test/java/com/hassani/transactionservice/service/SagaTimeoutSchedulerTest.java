@@ -0,0 +1,97 @@
+package com.hassani.transactionservice.service;
+
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.entities.TransactionStatus;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SagaTimeoutSchedulerTest {
+	private final TransactionService transactionService = mock(TransactionService.class);
+	private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+	private final SagaTimeoutScheduler scheduler = new SagaTimeoutScheduler(transactionService, transactionRepository,
+			Duration.ofMillis(30), Duration.ofMillis(50), 2, Duration.ofMillis(10), 8);
+
+	@AfterEach
+	void shutdown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	void resendsWithBackoffUntilTheResendsAreExhausted() {
+		when(transactionService.handleSagaTimeout(eq(1L), anyBoolean()))
+				.thenReturn(TransactionStatus.PENDING, TransactionStatus.PENDING, TransactionStatus.FAILED);
+
+		scheduler.trackAfterCommit(transaction(1L, TransactionStatus.PENDING, null));
+
+		// 30ms, then 60ms and 120ms of backoff
+		verify(transactionService, timeout(3000).times(3)).handleSagaTimeout(eq(1L), anyBoolean());
+		InOrder order = inOrder(transactionService);
+		order.verify(transactionService, times(2)).handleSagaTimeout(1L, false);
+		order.verify(transactionService).handleSagaTimeout(1L, true);
+		verify(transactionService, after(300).times(3)).handleSagaTimeout(eq(1L), anyBoolean());
+	}
+
+	@Test
+	void aFinishedSagaCancelsItsDeadline() {
+		scheduler.trackAfterCommit(transaction(2L, TransactionStatus.PENDING, null));
+		scheduler.trackAfterCommit(transaction(2L, TransactionStatus.COMPLETED, null));
+
+		verify(transactionService, after(200).never()).handleSagaTimeout(anyLong(), anyBoolean());
+	}
+
+	@Test
+	void aStatusChangeStartsTheDeadlineOfTheNewStatus() {
+		when(transactionService.handleSagaTimeout(3L, false)).thenReturn(TransactionStatus.COMPLETED);
+
+		scheduler.trackAfterCommit(transaction(3L, TransactionStatus.PENDING, null));
+		scheduler.trackAfterCommit(transaction(3L, TransactionStatus.DEBITED, null));
+
+		verify(transactionService, timeout(2000)).handleSagaTimeout(3L, false);
+		verify(transactionService, after(200).times(1)).handleSagaTimeout(anyLong(), anyBoolean());
+	}
+
+	@Test
+	void aFailingTimeoutHandlerIsRetried() {
+		when(transactionService.handleSagaTimeout(eq(4L), anyBoolean()))
+				.thenThrow(new IllegalStateException("database down"))
+				.thenReturn(TransactionStatus.FAILED);
+
+		scheduler.trackAfterCommit(transaction(4L, TransactionStatus.PENDING, null));
+
+		verify(transactionService, timeout(2000).times(2)).handleSagaTimeout(eq(4L), anyBoolean());
+	}
+
+	@Test
+	void rebuildsDeadlinesFromTheInFlightRows() {
+		Instant now = Instant.now();
+		when(transactionRepository.findByStatusIn(any())).thenReturn(List.of(
+				transaction(5L, TransactionStatus.PENDING, now.minus(Duration.ofHours(1))),
+				transaction(6L, TransactionStatus.DEBITED, now)));
+		when(transactionService.handleSagaTimeout(anyLong(), anyBoolean())).thenReturn(TransactionStatus.FAILED);
+
+		scheduler.rebuild();
+
+		// Long overdue, so it fires on the next tick
+		verify(transactionService, timeout(1000)).handleSagaTimeout(5L, false);
+		verify(transactionService, timeout(2000)).handleSagaTimeout(6L, false);
+	}
+
+	private static Transaction transaction(Long id, TransactionStatus status, Instant updatedAt) {
+		Transaction transaction = new Transaction();
+		transaction.setId(id);
+		transaction.setStatus(status);
+		transaction.setUpdatedAt(updatedAt);
+		return transaction;
+	}
+}
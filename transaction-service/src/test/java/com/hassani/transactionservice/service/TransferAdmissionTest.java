@@ -0,0 +1,172 @@
+package com.hassani.transactionservice.service;
+
+import com.hassani.transactionservice.entities.Transaction;
+import com.hassani.transactionservice.metrics.SagaMetrics;
+import com.hassani.transactionservice.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TransferAdmissionTest {
+	private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+	private final SagaMetrics sagaMetrics = mock(SagaMetrics.class);
+
+	@Test
+	void admitsABurstThenRejectsUntilTheNextToken() throws InterruptedException {
+		// One token every 100ms, five of them banked
+		TransferAdmission admission = admission(10, 5, 0);
+
+		for (int i = 0; i < 5; i++) {
+			assertThat(admission.tryAdmit("1001")).as("transfer %d of the burst", i + 1).isTrue();
+		}
+		assertThat(admission.tryAdmit("1001")).isFalse();
+		verify(sagaMetrics).admissionRejected("rate");
+
+		Thread.sleep(250);
+		assertThat(admission.tryAdmit("1001")).isTrue();
+	}
+
+	@Test
+	void aZeroRateDisablesTheBucket() {
+		TransferAdmission admission = admission(0, 1, 0);
+
+		for (int i = 0; i < 10_000; i++) {
+			assertThat(admission.tryAdmit("1001")).isTrue();
+		}
+		verifyNoInteractions(sagaMetrics);
+	}
+
+	@Test
+	void capsTheSagasInFlightPerAccount() {
+		TransferAdmission admission = admission(0, 1, 2);
+
+		assertThat(admission.tryAdmit("1001")).isTrue();
+		assertThat(admission.tryAdmit("1001")).isTrue();
+		assertThat(admission.tryAdmit("1001")).isFalse();
+		assertThat(admission.tryAdmit("7812")).isTrue();
+		verify(sagaMetrics).admissionRejected("account");
+
+		admission.cancel("1001");
+		assertThat(admission.tryAdmit("1001")).isTrue();
+		assertThat(admission.tryAdmit("1001")).isFalse();
+	}
+
+	@Test
+	void aRateRejectionGivesTheAccountSlotBack() throws InterruptedException {
+		TransferAdmission admission = admission(10, 1, 1);
+
+		assertThat(admission.tryAdmit("1001")).isTrue();
+		assertThat(admission.tryAdmit("7812")).isFalse();
+		verify(sagaMetrics).admissionRejected("rate");
+
+		// Had the rejection kept its slot, 7812 would now be over its cap of one
+		Thread.sleep(150);
+		assertThat(admission.tryAdmit("7812")).isTrue();
+		verify(sagaMetrics, never()).admissionRejected("account");
+	}
+
+	@Test
+	void releasingAnAccountWithoutSagasIsANoOp() {
+		TransferAdmission admission = admission(0, 1, 1);
+
+		admission.cancel("1001");
+		assertThat(admission.tryAdmit("1001")).isTrue();
+		admission.cancel("1001");
+		admission.cancel("1001");
+
+		assertThat(admission.tryAdmit("1001")).isTrue();
+		assertThat(admission.tryAdmit("1001")).isFalse();
+	}
+
+	@Test
+	void releasesOnlyTransfersSubmittedOneByOne() {
+		TransferAdmission admission = admission(0, 1, 1);
+		assertThat(admission.tryAdmit("1001")).isTrue();
+
+		admission.releaseAfterCommit(transaction("1001", "batch-1"));
+		assertThat(admission.tryAdmit("1001")).isFalse();
+
+		// No transaction is active, so the slot is released at once
+		admission.releaseAfterCommit(transaction("1001", null));
+		assertThat(admission.tryAdmit("1001")).isTrue();
+	}
+
+	@Test
+	void rebuildsTheCountersOfSagasInFlight() {
+		TransactionRepository.AccountCount count = mock(TransactionRepository.AccountCount.class);
+		when(count.getFromAccount()).thenReturn("1001");
+		when(count.getCount()).thenReturn(2L);
+		when(transactionRepository.countUnbatchedByFromAccount(any())).thenReturn(List.of(count));
+		TransferAdmission admission = admission(0, 1, 3);
+
+		admission.rebuild();
+
+		assertThat(admission.tryAdmit("1001")).isTrue();
+		assertThat(admission.tryAdmit("1001")).isFalse();
+		admission.releaseAfterCommit(transaction("1001", null));
+		assertThat(admission.tryAdmit("1001")).isTrue();
+	}
+
+	@Test
+	void neverAdmitsMoreThanTheCapWhileCountersAreRemovedAndRecreated() throws Exception {
+		// Every release drops the counter to zero, so it is marked -1 and removed while others acquire
+		TransferAdmission admission = admission(0, 1, 1);
+		int threads = 8;
+		AtomicInteger holding = new AtomicInteger();
+		AtomicInteger maxHolding = new AtomicInteger();
+		AtomicInteger admitted = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				workers.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < 20_000; i++) {
+						if (admission.tryAdmit("1001")) {
+							maxHolding.accumulateAndGet(holding.incrementAndGet(), Math::max);
+							admitted.incrementAndGet();
+							holding.decrementAndGet();
+							admission.cancel("1001");
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> worker : workers) {
+				worker.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(maxHolding.get()).isEqualTo(1);
+		assertThat(admitted.get()).isPositive();
+		// The counter ends released: exactly one more transfer fits
+		assertThat(admission.tryAdmit("1001")).isTrue();
+		assertThat(admission.tryAdmit("1001")).isFalse();
+	}
+
+	private TransferAdmission admission(int rate, int burst, int maxInFlightPerAccount) {
+		return new TransferAdmission(transactionRepository, sagaMetrics, rate, burst, maxInFlightPerAccount);
+	}
+
+	private static Transaction transaction(String fromAccount, String batchId) {
+		Transaction transaction = new Transaction();
+		transaction.setFromAccount(fromAccount);
+		transaction.setBatchId(batchId);
+		return transaction;
+	}
+}